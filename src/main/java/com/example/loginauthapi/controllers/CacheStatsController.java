@@ -0,0 +1,65 @@
+package com.example.loginauthapi.controllers;
+
+import com.example.loginauthapi.entities.User;
+import com.example.loginauthapi.services.ChatIdentityIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * ✅ NOVO: Estatísticas dos caches em memória (apenas administradores)
+ */
+@RestController
+@RequestMapping("/api/dev/caches")
+@RequiredArgsConstructor
+@Slf4j
+public class CacheStatsController {
+
+    private final ChatIdentityIndex chatIdentityIndex;
+
+    private User getAuthenticatedAdmin() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+
+        if (auth == null || !auth.isAuthenticated() || !(auth.getPrincipal() instanceof User)) {
+            throw new RuntimeException("Usuário não autenticado");
+        }
+
+        User user = (User) auth.getPrincipal();
+
+        if (!"ADMIN".equalsIgnoreCase(user.getRole())) {
+            throw new RuntimeException("Acesso negado: apenas administradores podem acessar esta rota");
+        }
+
+        return user;
+    }
+
+    /**
+     * Taxa de acerto e tamanho residente do índice de identidade de chats
+     * GET /api/dev/caches/chat-identity
+     */
+    @GetMapping("/chat-identity")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getChatIdentityStats() {
+        try {
+            getAuthenticatedAdmin();
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "stats", chatIdentityIndex.getStats()
+            ));
+
+        } catch (Exception e) {
+            log.error("Erro ao obter estatísticas do índice de chats", e);
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+}
@@ -1,23 +1,30 @@
 package com.example.loginauthapi.controllers;
 
 import com.example.loginauthapi.dto.AudioDTO;
+import com.example.loginauthapi.dto.ChatTimelinePageDTO;
 import com.example.loginauthapi.dto.DocumentDTO;
 import com.example.loginauthapi.dto.MessageDTO;
 import com.example.loginauthapi.dto.PhotoDTO;
 import com.example.loginauthapi.dto.ReplyDTO;
 import com.example.loginauthapi.dto.VideoDTO;
+import com.example.loginauthapi.dto.zapi.ZapiSendResponseDTO;
+import com.example.loginauthapi.entities.OutboundMessageSource;
 import com.example.loginauthapi.entities.Reply;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.exceptions.RateLimitException;
 import com.example.loginauthapi.repositories.WebInstanceRepository;
 import com.example.loginauthapi.entities.Chat;
 import com.example.loginauthapi.repositories.ChatRepository;
 import com.example.loginauthapi.services.AudioService;
+import com.example.loginauthapi.services.ChatTimelineService;
 import com.example.loginauthapi.services.DocumentService;
 import com.example.loginauthapi.services.MessageService;
 import com.example.loginauthapi.services.PhotoService;
 import com.example.loginauthapi.services.ReplyService;
 import com.example.loginauthapi.services.VideoService;
+import com.example.loginauthapi.services.outbox.OutboxRelay;
+import com.example.loginauthapi.services.outbox.OutboxService;
 import com.example.loginauthapi.services.zapi.ZapiMessageService;
 import com.example.loginauthapi.services.AudioConversionService;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +35,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -44,10 +52,13 @@ public class MessageController {
     private final VideoService videoService;
     private final DocumentService documentService;
     private final ZapiMessageService zapiMessageService;
+    private final OutboxService outboxService;
+    private final OutboxRelay outboxRelay;
     private final WebInstanceRepository webInstanceRepository;
     private final ChatRepository chatRepository;
     private final ReplyService replyService;
     private final AudioConversionService audioConversionService;
+    private final ChatTimelineService chatTimelineService;
 
     private User getAuthenticatedUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -88,6 +99,16 @@ public class MessageController {
         return instance;
     }
 
+    /**
+     * ✅ NOVO: Limite de envios da instância atingido → 429 na hora, sem prender a thread da requisição
+     */
+    private ResponseEntity<Map<String, Object>> rateLimited() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of(
+                "success", false,
+                "message", "Muitos envios em pouco tempo para este número. Tente novamente em alguns segundos"
+        ));
+    }
+
     /**
      * ✅ MODIFICADO: GET /dashboard/messages/{chatId}
      * Buscar mensagens, áudios, fotos, vídeos, documentos E replies de um chat
@@ -145,6 +166,41 @@ public class MessageController {
         }
     }
 
+    /**
+     * ✅ NOVO: GET /dashboard/messages/{chatId}/timeline?before=&size=
+     * Timeline paginada por cursor (mensagens, áudios, fotos, vídeos e documentos já intercalados)
+     */
+    @GetMapping("/{chatId}/timeline")
+    public ResponseEntity<Map<String, Object>> getTimeline(
+            @PathVariable String chatId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer size) {
+        try {
+            User user = getAuthenticatedUser();
+            ChatTimelinePageDTO page = chatTimelineService.getTimeline(chatId, before, size, user);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("items", page.getItems());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.getHasMore());
+            response.put("size", page.getSize());
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("❌ Erro ao buscar timeline - ChatId: {}, Erro: {}", chatId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
     /**
      * ✅ NOVO: POST /dashboard/messages/reply/{chatId}
      * Enviar uma mensagem de reply
@@ -176,7 +232,7 @@ public class MessageController {
             String phoneNumber = chat.getPhone();
 
             // Enviar reply via Z-API com o messageId de referência
-            Map<String, Object> zapiResponse = zapiMessageService.sendTextWithReply(
+            ZapiSendResponseDTO zapiResponse = zapiMessageService.sendTextWithReply(
                     instance,
                     phoneNumber,
                     content,
@@ -190,6 +246,9 @@ public class MessageController {
                     "zapiResponse", zapiResponse
             ));
 
+        } catch (RateLimitException e) {
+            log.warn("⏳ {}", e.getMessage());
+            return rateLimited();
         } catch (Exception e) {
             log.error("❌ Erro ao enviar reply", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -353,23 +412,23 @@ public class MessageController {
                 ));
             }
 
-            // ✅ PASSO 1: Salvar mensagem NO BANCO PRIMEIRO
+            // ✅ PASSO 1: Salvar mensagem NO BANCO e no outbox (mesma transação)
             log.info("💾 Salvando mensagem no banco antes de enviar");
-            MessageDTO savedMessage = messageService.saveOutgoingMessage(chatId, message, user);
+            OutboxService.Queued<MessageDTO> queued = outboxService.enqueueText(
+                    instance, chatId, phone, message, user, OutboundMessageSource.MANUAL, null, false);
+            MessageDTO savedMessage = queued.saved();
 
-            // ✅ PASSO 2: Enviar via Z-API
+            // ✅ PASSO 2: Enviar via Z-API na hora (o relay reconcilia o messageId real no banco)
             log.info("📨 Enviando mensagem via Z-API - Phone: {}, Instance: {}",
                     phone, instance.getSuaInstancia());
 
-            Map<String, Object> zapiResult = zapiMessageService.sendTextMessageWithRetry(instance, phone, message, false);
+            ZapiSendResponseDTO zapiResult = outboxRelay.sendNow(instance, queued.outboxId()).orElse(null);
 
-            // ✅ PASSO 3: Atualizar com o messageId real do WhatsApp
-            if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                String realMessageId = (String) zapiResult.get("messageId");
-                messageService.updateMessageIdAfterSend(savedMessage.getMessageId(), realMessageId, "SENT");
-                savedMessage.setMessageId(realMessageId);
+            // ✅ PASSO 3: Refletir o messageId real do WhatsApp na resposta
+            if (zapiResult != null && zapiResult.getMessageId() != null) {
+                savedMessage.setMessageId(zapiResult.getMessageId());
                 savedMessage.setStatus("SENT");
-                log.info("✅ MessageId atualizado: {}", realMessageId);
+                log.info("✅ MessageId atualizado: {}", zapiResult.getMessageId());
             }
 
             log.info("✅ Mensagem enviada e salva com sucesso");
@@ -377,7 +436,7 @@ public class MessageController {
             // ✅ PASSO 4: Retornar a mensagem salva para o frontend
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "Mensagem enviada com sucesso",
+                    "message", zapiResult != null ? "Mensagem enviada com sucesso" : "Mensagem na fila de envio",
                     "data", savedMessage,
                     "zapiResponse", zapiResult != null ? zapiResult : Map.of()
             ));
@@ -438,13 +497,13 @@ public class MessageController {
 
             // ✅ PASSO 2: Enviar via Z-API
             log.info("📨 Enviando áudio OGG/Opus via Z-API - Phone: {}", phone);
-            Map<String, Object> zapiResult = zapiMessageService.sendAudio(
+            ZapiSendResponseDTO zapiResult = zapiMessageService.sendAudio(
                     instance, phone, convertedAudio, waveform
             );
 
             // ✅ PASSO 3: Atualizar com messageId real e audioUrl
-            if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                String realMessageId = (String) zapiResult.get("messageId");
+            if (zapiResult != null && zapiResult.getMessageId() != null) {
+                String realMessageId = zapiResult.getMessageId();
 
                 // ✅ MODIFICADO: Usar audioService ao invés de messageService
                 audioService.updateAudioIdAfterSend(
@@ -455,8 +514,8 @@ public class MessageController {
                 savedAudio.setStatus("SENT");
 
                 // Se a Z-API retornar a URL do áudio, atualizar também
-                if (zapiResult.containsKey("audioUrl")) {
-                    savedAudio.setAudioUrl((String) zapiResult.get("audioUrl"));
+                if (zapiResult.getAudioUrl() != null) {
+                    savedAudio.setAudioUrl(zapiResult.getAudioUrl());
                 }
             }
 
@@ -467,6 +526,9 @@ public class MessageController {
                     "message", "Áudio enviado com sucesso",
                     "data", savedAudio
             ));
+        } catch (RateLimitException e) {
+            log.warn("⏳ {}", e.getMessage());
+            return rateLimited();
         } catch (Exception e) {
             log.error("❌ Erro ao enviar áudio: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -500,23 +562,19 @@ public class MessageController {
                 ));
             }
 
-            // ✅ PASSO 1: Salvar foto no banco antes de enviar
+            // ✅ PASSO 1: Salvar foto no banco e no outbox (mesma transação)
             log.info("💾 Salvando foto no banco antes de enviar");
-            PhotoDTO savedPhoto = photoService.saveOutgoingPhoto(chatId, phone, image, instance.getId(), photoId);
+            OutboxService.Queued<PhotoDTO> queued = outboxService.enqueueImage(
+                    instance, chatId, phone, image, photoId, OutboundMessageSource.MANUAL, null, false);
+            PhotoDTO savedPhoto = queued.saved();
 
-            // ✅ PASSO 2: Enviar via Z-API (SEM CAPTION)
+            // ✅ PASSO 2: Enviar via Z-API na hora (SEM CAPTION; o relay reconcilia o messageId real no banco)
             log.info("📨 Enviando imagem via Z-API - Phone: {}", phone);
-            Map<String, Object> zapiResult = zapiMessageService.sendImageWithRetry(
-                    instance, phone, image, false
-            );
+            ZapiSendResponseDTO zapiResult = outboxRelay.sendNow(instance, queued.outboxId()).orElse(null);
 
-            // ✅ PASSO 3: Atualizar com messageId real
-            if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                String realMessageId = (String) zapiResult.get("messageId");
-                photoService.updatePhotoIdAfterSend(
-                        savedPhoto.getMessageId(), realMessageId, "SENT"
-                );
-                savedPhoto.setMessageId(realMessageId);
+            // ✅ PASSO 3: Refletir o messageId real na resposta
+            if (zapiResult != null && zapiResult.getMessageId() != null) {
+                savedPhoto.setMessageId(zapiResult.getMessageId());
                 savedPhoto.setStatus("SENT");
             }
 
@@ -524,7 +582,7 @@ public class MessageController {
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "Imagem enviada com sucesso",
+                    "message", zapiResult != null ? "Imagem enviada com sucesso" : "Imagem na fila de envio",
                     "data", savedPhoto
             ));
         } catch (Exception e) {
@@ -560,23 +618,19 @@ public class MessageController {
                 ));
             }
 
-            // ✅ PASSO 1: Salvar vídeo no banco antes de enviar
+            // ✅ PASSO 1: Salvar vídeo no banco e no outbox (mesma transação)
             log.info("💾 Salvando vídeo no banco antes de enviar");
-            VideoDTO savedVideo = videoService.saveOutgoingVideo(chatId, phone, video, instance.getId(), videoId);
+            OutboxService.Queued<VideoDTO> queued = outboxService.enqueueVideo(
+                    instance, chatId, phone, video, videoId, OutboundMessageSource.MANUAL, null, false);
+            VideoDTO savedVideo = queued.saved();
 
-            // ✅ PASSO 2: Enviar via Z-API (SEM CAPTION)
+            // ✅ PASSO 2: Enviar via Z-API na hora (SEM CAPTION; o relay reconcilia o messageId real no banco)
             log.info("📨 Enviando vídeo via Z-API - Phone: {}", phone);
-            Map<String, Object> zapiResult = zapiMessageService.sendVideoWithRetry(
-                    instance, phone, video, false
-            );
+            ZapiSendResponseDTO zapiResult = outboxRelay.sendNow(instance, queued.outboxId()).orElse(null);
 
-            // ✅ PASSO 3: Atualizar com messageId real
-            if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                String realMessageId = (String) zapiResult.get("messageId");
-                videoService.updateVideoIdAfterSend(
-                        savedVideo.getMessageId(), realMessageId, "SENT"
-                );
-                savedVideo.setMessageId(realMessageId);
+            // ✅ PASSO 3: Refletir o messageId real na resposta
+            if (zapiResult != null && zapiResult.getMessageId() != null) {
+                savedVideo.setMessageId(zapiResult.getMessageId());
                 savedVideo.setStatus("SENT");
             }
 
@@ -584,7 +638,7 @@ public class MessageController {
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "Vídeo enviado com sucesso",
+                    "message", zapiResult != null ? "Vídeo enviado com sucesso" : "Vídeo na fila de envio",
                     "data", savedVideo
             ));
         } catch (Exception e) {
@@ -619,23 +673,19 @@ public class MessageController {
                 ));
             }
 
-            // ✅ PASSO 1: Salvar foto para upload direto (sem chatId)
+            // ✅ PASSO 1: Salvar foto para upload direto (sem chatId) e no outbox (mesma transação)
             log.info("💾 Salvando foto para upload direto - Phone: {}", phone);
-            PhotoDTO savedPhoto = photoService.saveUploadPhoto(phone, image, instance.getId(), user);
+            OutboxService.Queued<PhotoDTO> queued = outboxService.enqueueUploadImage(
+                    instance, phone, image, user, OutboundMessageSource.MANUAL);
+            PhotoDTO savedPhoto = queued.saved();
 
-            // ✅ PASSO 2: Enviar via Z-API
+            // ✅ PASSO 2: Enviar via Z-API na hora (o relay reconcilia o messageId real no banco)
             log.info("📨 Enviando imagem via Z-API - Phone: {}", phone);
-            Map<String, Object> zapiResult = zapiMessageService.sendImageWithRetry(
-                    instance, phone, image, false
-            );
+            ZapiSendResponseDTO zapiResult = outboxRelay.sendNow(instance, queued.outboxId()).orElse(null);
 
-            // ✅ PASSO 3: Atualizar com messageId real
-            if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                String realMessageId = (String) zapiResult.get("messageId");
-                photoService.updatePhotoIdAfterSend(
-                        savedPhoto.getMessageId(), realMessageId, "SENT"
-                );
-                savedPhoto.setMessageId(realMessageId);
+            // ✅ PASSO 3: Refletir o messageId real na resposta
+            if (zapiResult != null && zapiResult.getMessageId() != null) {
+                savedPhoto.setMessageId(zapiResult.getMessageId());
                 savedPhoto.setStatus("SENT");
             }
 
@@ -643,9 +693,12 @@ public class MessageController {
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "Imagem enviada com sucesso",
+                    "message", zapiResult != null ? "Imagem enviada com sucesso" : "Imagem na fila de envio",
                     "data", savedPhoto
             ));
+        } catch (RateLimitException e) {
+            log.warn("⏳ {}", e.getMessage());
+            return rateLimited();
         } catch (Exception e) {
             log.error("❌ Erro ao fazer upload de imagem: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -677,23 +730,19 @@ public class MessageController {
                 ));
             }
 
-            // ✅ PASSO 1: Salvar vídeo para upload direto
+            // ✅ PASSO 1: Salvar vídeo para upload direto e no outbox (mesma transação)
             log.info("💾 Salvando vídeo para upload direto - Phone: {}", phone);
-            VideoDTO savedVideo = videoService.saveUploadVideo(phone, video, instance.getId(), user);
+            OutboxService.Queued<VideoDTO> queued = outboxService.enqueueUploadVideo(
+                    instance, phone, video, user, OutboundMessageSource.MANUAL);
+            VideoDTO savedVideo = queued.saved();
 
-            // ✅ PASSO 2: Enviar via Z-API
+            // ✅ PASSO 2: Enviar via Z-API na hora (o relay reconcilia o messageId real no banco)
             log.info("📨 Enviando vídeo via Z-API - Phone: {}", phone);
-            Map<String, Object> zapiResult = zapiMessageService.sendVideoWithRetry(
-                    instance, phone, video, false
-            );
+            ZapiSendResponseDTO zapiResult = outboxRelay.sendNow(instance, queued.outboxId()).orElse(null);
 
-            // ✅ PASSO 3: Atualizar com messageId real
-            if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                String realMessageId = (String) zapiResult.get("messageId");
-                videoService.updateVideoIdAfterSend(
-                        savedVideo.getMessageId(), realMessageId, "SENT"
-                );
-                savedVideo.setMessageId(realMessageId);
+            // ✅ PASSO 3: Refletir o messageId real na resposta
+            if (zapiResult != null && zapiResult.getMessageId() != null) {
+                savedVideo.setMessageId(zapiResult.getMessageId());
                 savedVideo.setStatus("SENT");
             }
 
@@ -701,9 +750,12 @@ public class MessageController {
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "message", "Vídeo enviado com sucesso",
+                    "message", zapiResult != null ? "Vídeo enviado com sucesso" : "Vídeo na fila de envio",
                     "data", savedVideo
             ));
+        } catch (RateLimitException e) {
+            log.warn("⏳ {}", e.getMessage());
+            return rateLimited();
         } catch (Exception e) {
             log.error("❌ Erro ao fazer upload de vídeo: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -740,7 +792,7 @@ public class MessageController {
 
             log.info("📝 Editando mensagem via Z-API - MessageId: {}", editMessageId);
 
-            Map<String, Object> result = zapiMessageService.editMessage(
+            ZapiSendResponseDTO result = zapiMessageService.editMessage(
                     instance, phone, editMessageId, newMessage
             );
 
@@ -753,6 +805,9 @@ public class MessageController {
                     "message", "Mensagem editada com sucesso",
                     "data", result
             ));
+        } catch (RateLimitException e) {
+            log.warn("⏳ {}", e.getMessage());
+            return rateLimited();
         } catch (Exception e) {
             log.error("❌ Erro ao editar mensagem - Erro: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -897,7 +952,7 @@ public class MessageController {
             // Enviar via Z-API (SEM extensão no fileName pois Z-API adiciona automaticamente)
             log.info("📨 Enviando documento via Z-API - Phone: {}, FileName: {}, Extension: {}",
                     phone, fileNameWithoutExtension, extension);
-            Map<String, Object> zapiResult = zapiMessageService.sendDocument(
+            ZapiSendResponseDTO zapiResult = zapiMessageService.sendDocument(
                     instance, phone, document, fileNameWithoutExtension, caption, extension
             );
 
@@ -906,11 +961,14 @@ public class MessageController {
             return ResponseEntity.ok(Map.of(
                     "success", true,
                     "message", "Documento enviado com sucesso",
-                    "messageId", zapiResult != null && zapiResult.containsKey("messageId")
-                            ? zapiResult.get("messageId")
+                    "messageId", zapiResult != null && zapiResult.getMessageId() != null
+                            ? zapiResult.getMessageId()
                             : null
             ));
 
+        } catch (RateLimitException e) {
+            log.warn("⏳ {}", e.getMessage());
+            return rateLimited();
         } catch (Exception e) {
             log.error("❌ Erro ao fazer upload de documento: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
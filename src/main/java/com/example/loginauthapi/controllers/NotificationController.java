@@ -9,7 +9,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -24,9 +26,14 @@ public class NotificationController {
     /**
      * Endpoint SSE para receber notificações em tempo real
      * GET /api/notifications/stream
+     *
+     * ✅ NOVO: Na reconexão o EventSource envia o header Last-Event-ID e recebe apenas os eventos perdidos.
+     * O parâmetro lastEventId permite retomar também ao recriar o EventSource manualmente.
      */
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public ResponseEntity<SseEmitter> streamNotifications() {
+    public ResponseEntity<SseEmitter> streamNotifications(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
         try {
             // Obter usuário autenticado
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -42,10 +49,11 @@ public class NotificationController {
             }
 
             User user = (User) auth.getPrincipal();
-            log.info("🔔 Nova conexão SSE - Usuário: {}", user.getEmail());
+            String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+            log.info("🔔 Nova conexão SSE - Usuário: {}, Last-Event-ID: {}", user.getEmail(), lastEventId);
 
             // Criar e retornar emitter
-            SseEmitter emitter = notificationService.createEmitter(user.getId());
+            SseEmitter emitter = notificationService.createEmitter(user.getId(), lastEventId);
             return ResponseEntity.ok(emitter);
 
         } catch (Exception e) {
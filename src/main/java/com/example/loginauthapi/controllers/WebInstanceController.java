@@ -5,6 +5,7 @@ import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.entities.WebInstance;
 import com.example.loginauthapi.repositories.UserRepository;
 import com.example.loginauthapi.repositories.WebInstanceRepository;
+import com.example.loginauthapi.services.WebInstanceRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +28,8 @@ public class WebInstanceController {
 
     private final WebInstanceRepository webInstanceRepository;
     private final UserRepository userRepository;
+    // ✅ NOVO: Cache de roteamento de webhooks, invalidado em toda escrita de instância
+    private final WebInstanceRegistry webInstanceRegistry;
 
     private User getAuthenticatedAdmin() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -183,6 +186,7 @@ public class WebInstanceController {
             }
 
             WebInstance saved = webInstanceRepository.save(instance);
+            webInstanceRegistry.invalidateAll();
 
             log.info("WebInstance criada com sucesso: {} | Status: {} | Expira em: {}",
                     saved.getId(), saved.getStatus(), saved.getExpiraEm());
@@ -249,6 +253,7 @@ public class WebInstanceController {
             }
 
             WebInstance updated = webInstanceRepository.save(instance);
+            webInstanceRegistry.invalidateAll();
 
             log.info("WebInstance atualizada com sucesso: {} | Novo status: {}", id, updated.getStatus());
 
@@ -291,6 +296,7 @@ public class WebInstanceController {
             }
 
             webInstanceRepository.delete(instance);
+            webInstanceRegistry.invalidateAll();
 
             log.info("WebInstance deletada com sucesso: {}", id);
 
@@ -333,6 +339,7 @@ public class WebInstanceController {
 
             instance.setStatus(newStatus);
             WebInstance updated = webInstanceRepository.save(instance);
+            webInstanceRegistry.invalidateAll();
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
@@ -1,6 +1,7 @@
 package com.example.loginauthapi.controllers;
 
-import com.example.loginauthapi.services.WebhookService;
+import com.example.loginauthapi.entities.WebhookInbox;
+import com.example.loginauthapi.services.webhook.WebhookInboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -14,11 +15,15 @@ import java.util.Map;
 @Slf4j
 public class WebhookController {
 
-    private final WebhookService webhookService;
+    private final WebhookInboxService webhookInboxService;
 
     /**
      * ✅ NOVO: Endpoint único para receber TODAS as mensagens (enviadas e recebidas)
      * Processa tanto mensagens incoming quanto outcoming através do campo 'fromMe'
+     *
+     * ✅ MODIFICADO: O payload é apenas persistido na inbox e processado de forma assíncrona.
+     * Responde 202 assim que o webhook está gravado; se a gravação falhar responde 500
+     * para que a Z-API reenvie.
      */
     @PostMapping("/message")
     public ResponseEntity<Map<String, Object>> handleMessage(@RequestBody Map<String, Object> payload) {
@@ -26,12 +31,13 @@ public class WebhookController {
             log.info("📨 Webhook de mensagem recebido");
             log.debug("Payload: {}", payload);
 
-            // Processar a mensagem (incoming ou outcoming baseado em fromMe)
-            webhookService.processMessage(payload);
+            // Persistir e enfileirar (incoming ou outcoming baseado em fromMe)
+            WebhookInbox entry = webhookInboxService.accept(payload);
 
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.accepted().body(Map.of(
                     "success", true,
-                    "message", "Mensagem processada com sucesso"
+                    "message", "Mensagem recebida para processamento",
+                    "inboxId", entry.getId()
             ));
         } catch (Exception e) {
             log.error("❌ Erro ao processar webhook de mensagem", e);
@@ -21,6 +21,10 @@ public class ChatInfoResponseDTO {
     // ✅ NOVO: Conteúdo da última mensagem
     private String lastMessageContent;
 
+    // ✅ NOVO: Tipo e autoria da última mensagem
+    private String lastMessageType;
+    private Boolean lastMessageFromMe;
+
     private Boolean isGroup;
     private Integer unread;
     private String profileThumbnail;
@@ -0,0 +1,24 @@
+package com.example.loginauthapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * ✅ NOVO: Página da timeline de um chat
+ * Itens em ordem cronológica; nextCursor aponta para as mensagens mais antigas
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatTimelinePageDTO {
+    private String chatId;
+    private List<TimelineItemDTO> items;
+    private String nextCursor;
+    private Boolean hasMore;
+    private Integer size;
+}
@@ -0,0 +1,26 @@
+package com.example.loginauthapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ✅ NOVO: Item da timeline paginada de um chat
+ * O campo data carrega o DTO específico do tipo (MessageDTO, AudioDTO, PhotoDTO, VideoDTO ou DocumentDTO)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TimelineItemDTO {
+    private String type; // text, audio, image, video, document
+    private String id;
+    private String messageId;
+    private Boolean fromMe;
+    private String timestamp;
+    private Object data;
+
+    // Reply associado a este item (quando ele responde outra mensagem)
+    private ReplyDTO reply;
+}
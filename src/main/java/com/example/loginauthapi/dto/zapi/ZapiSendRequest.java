@@ -0,0 +1,75 @@
+package com.example.loginauthapi.dto.zapi;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * ✅ NOVO: Corpo das requisições de envio da Z-API
+ *
+ * Serializado diretamente pelo ZapiGateway (campos null não são enviados).
+ * {@link #path()} é o endpoint relativo à instância (ex.: "send-text").
+ */
+public sealed interface ZapiSendRequest {
+
+    String phone();
+
+    @JsonIgnore
+    String path();
+
+    /**
+     * send-text: texto simples, reply (messageId) ou edição (editMessageId)
+     */
+    record Text(String phone, String message, Integer delayTyping, Integer delayMessage,
+                String messageId, String editMessageId) implements ZapiSendRequest {
+
+        public static Text of(String phone, String message, int delay) {
+            return new Text(phone, message, delay, delay, null, null);
+        }
+
+        public static Text reply(String phone, String message, String replyToMessageId) {
+            return new Text(phone, message, null, null, replyToMessageId, null);
+        }
+
+        public static Text edit(String phone, String message, String editMessageId) {
+            return new Text(phone, message, null, null, null, editMessageId);
+        }
+
+        @Override
+        public String path() {
+            return "send-text";
+        }
+    }
+
+    record Audio(String phone, String audio, boolean viewOnce, boolean waveform) implements ZapiSendRequest {
+        @Override
+        public String path() {
+            return "send-audio";
+        }
+    }
+
+    record Image(String phone, String image, Integer delayTyping, Integer delayMessage,
+                 boolean viewOnce) implements ZapiSendRequest {
+        @Override
+        public String path() {
+            return "send-image";
+        }
+    }
+
+    record Video(String phone, String video, Integer delayTyping, Integer delayMessage,
+                 boolean viewOnce) implements ZapiSendRequest {
+        @Override
+        public String path() {
+            return "send-video";
+        }
+    }
+
+    /**
+     * send-document/{extension}: a extensão vai na URL, não no corpo
+     */
+    record Document(String phone, String document, String fileName, String caption,
+                    @JsonIgnore String extension) implements ZapiSendRequest {
+        @Override
+        public String path() {
+            return "send-document/" + extension;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.loginauthapi.dto.zapi;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * ✅ NOVO: Resposta dos endpoints de envio da Z-API
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ZapiSendResponseDTO {
+    private String zaapId;
+    private String messageId;
+    private String id;
+    private String audioUrl;
+}
@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "audios", indexes = {
-        @Index(name = "idx_audio_chat_id", columnList = "chat_id"),
+        @Index(name = "idx_audios_chat_timestamp", columnList = "chat_id, timestamp DESC, id DESC"),
         @Index(name = "idx_audio_message_id", columnList = "message_id"),
         @Index(name = "idx_audio_timestamp", columnList = "timestamp")
 })
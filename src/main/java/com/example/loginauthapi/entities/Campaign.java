@@ -7,8 +7,6 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 @Getter
 @Setter
@@ -48,7 +46,9 @@ public class Campaign {
     @Column(name = "total_chats", nullable = false)
     private Integer totalChats = 0;
 
-    @Column(name = "dispatched_chats", nullable = false)
+    // ✅ MODIFICADO: Mantido pelo claim/release em CampaignRecipientRepository (+1/-1 por destinatário);
+    // não é regravado ao salvar a entidade
+    @Column(name = "dispatched_chats", nullable = false, updatable = false)
     private Integer dispatchedChats = 0;
 
     @Column(name = "next_dispatch_time")
@@ -70,13 +70,6 @@ public class Campaign {
     @Column(name = "video_ids", columnDefinition = "TEXT")
     private String videoIds;
 
-    // Armazena os IDs dos chats que já receberam a mensagem
-    @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(name = "campaign_dispatched_chats",
-            joinColumns = @JoinColumn(name = "campaign_id"))
-    @Column(name = "chat_id")
-    private Set<String> dispatchedChatIds = new HashSet<>();
-
     @Column(name = "criado_em", nullable = false, updatable = false)
     private LocalDateTime criadoEm;
 
@@ -92,35 +85,6 @@ public class Campaign {
     @PreUpdate
     public void preUpdate() {
         this.atualizadoEm = LocalDateTime.now();
-        // ✅ CRÍTICO: Sempre sincronizar dispatched_chats antes de salvar
-        syncDispatchedChats();
-    }
-
-    @PostLoad
-    public void postLoad() {
-        // ✅ CRÍTICO: Sempre sincronizar dispatched_chats após carregar do banco
-        syncDispatchedChats();
-    }
-
-    /**
-     * ✅ NOVO: Sincroniza o campo dispatched_chats com o tamanho real da lista
-     * Este método garante que o contador sempre reflita a realidade
-     */
-    public void syncDispatchedChats() {
-        if (this.dispatchedChatIds != null) {
-            this.dispatchedChats = this.dispatchedChatIds.size();
-        }
-    }
-
-    /**
-     * ✅ MODIFICADO: Getter que sempre retorna o tamanho real da lista
-     * Ignora o valor do campo e calcula em tempo real
-     */
-    public Integer getDispatchedChats() {
-        if (this.dispatchedChatIds != null) {
-            return this.dispatchedChatIds.size();
-        }
-        return this.dispatchedChats;
     }
 
     // Método auxiliar para calcular a porcentagem de conclusão
@@ -0,0 +1,8 @@
+package com.example.loginauthapi.entities;
+
+public enum CampaignRecipientStatus {
+    PENDING, // Aguardando envio
+    CLAIMED, // Reivindicado por um passo do lote (liberado de volta se não for enfileirado)
+    SENT,    // Conteúdo da campanha gravado no outbox de envios
+    FAILED   // Excedeu o número máximo de tentativas
+}
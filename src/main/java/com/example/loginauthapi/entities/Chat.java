@@ -54,6 +54,15 @@ public class Chat {
     @Column(name = "last_message_content", columnDefinition = "TEXT")
     private String lastMessageContent;
 
+    // ✅ NOVO: Tipo da última mensagem (text, audio, image, video, document ou none)
+    // Mantido pelo ChatSummaryService junto com lastMessageContent/lastMessageTime
+    @Column(name = "last_message_type", length = 20)
+    private String lastMessageType;
+
+    // ✅ NOVO: Se a última mensagem foi enviada por nós
+    @Column(name = "last_message_from_me")
+    private Boolean lastMessageFromMe;
+
     @Column(name = "is_group", nullable = false)
     private Boolean isGroup = false;
 
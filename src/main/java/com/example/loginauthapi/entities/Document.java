@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "documents", indexes = {
-        @Index(name = "idx_document_chat_id", columnList = "chat_id"),
+        @Index(name = "idx_documents_chat_timestamp", columnList = "chat_id, timestamp DESC, id DESC"),
         @Index(name = "idx_document_message_id", columnList = "message_id"),
         @Index(name = "idx_document_timestamp", columnList = "timestamp")
 })
@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "messages", indexes = {
-        @Index(name = "idx_chat_id", columnList = "chat_id"),
+        @Index(name = "idx_messages_chat_timestamp", columnList = "chat_id, timestamp DESC, id DESC"),
         @Index(name = "idx_message_id", columnList = "message_id"),
         @Index(name = "idx_timestamp", columnList = "timestamp")
 })
@@ -0,0 +1,87 @@
+package com.example.loginauthapi.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * ✅ NOVO: Envio para a Z-API gravado no outbox
+ * Criado na mesma transação da mensagem local; enviado e reconciliado pelo OutboxRelay
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "outbound_messages")
+public class OutboundMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "web_instance_id", nullable = false)
+    private String webInstanceId;
+
+    @Column(name = "chat_id")
+    private String chatId;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private OutboundMessageKind kind;
+
+    // ZapiSendRequest serializado
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    // messageId temporário da mensagem/foto/vídeo local
+    @Column(name = "local_message_id")
+    private String localMessageId;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private OutboundMessageSource source;
+
+    @Column(name = "dedup_key", unique = true)
+    private String dedupKey;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private OutboundMessageStatus status = OutboundMessageStatus.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "zapi_message_id")
+    private String zapiMessageId;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "reconciled_at")
+    private LocalDateTime reconciledAt;
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = LocalDateTime.now();
+        if (this.nextAttemptAt == null) {
+            this.nextAttemptAt = this.createdAt;
+        }
+    }
+}
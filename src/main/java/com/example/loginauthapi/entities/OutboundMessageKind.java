@@ -0,0 +1,7 @@
+package com.example.loginauthapi.entities;
+
+public enum OutboundMessageKind {
+    TEXT,  // send-text  → messages
+    IMAGE, // send-image → photos
+    VIDEO  // send-video → videos
+}
@@ -0,0 +1,8 @@
+package com.example.loginauthapi.entities;
+
+public enum OutboundMessageSource {
+    CAMPAIGN,
+    ROUTINE,
+    TASK,
+    MANUAL
+}
@@ -0,0 +1,9 @@
+package com.example.loginauthapi.entities;
+
+public enum OutboundMessageStatus {
+    PENDING, // Gravado no outbox, aguardando o relay
+    SENDING, // Reivindicado pelo relay, chamada à Z-API em andamento
+    SENT,    // Aceito pela Z-API (zapi_message_id gravado)
+    FAILED,  // Recusado pela Z-API ou excedeu o número máximo de tentativas
+    UNKNOWN  // Restart durante o envio: a Z-API pode ter recebido; não é reenviado
+}
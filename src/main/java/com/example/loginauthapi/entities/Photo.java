@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "photos", indexes = {
-        @Index(name = "idx_photo_chat_id", columnList = "chat_id"),
+        @Index(name = "idx_photos_chat_timestamp", columnList = "chat_id, timestamp DESC, id DESC"),
         @Index(name = "idx_photo_message_id", columnList = "message_id"),
         @Index(name = "idx_photo_timestamp", columnList = "timestamp"),
         @Index(name = "idx_photo_saved_in_gallery", columnList = "saved_in_gallery")
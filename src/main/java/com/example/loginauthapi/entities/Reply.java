@@ -16,7 +16,7 @@ import java.time.LocalDateTime;
 @Table(name = "replies", indexes = {
         @Index(name = "idx_message_id", columnList = "message_id"),
         @Index(name = "idx_reference_message_id", columnList = "reference_message_id"),
-        @Index(name = "idx_chat_id", columnList = "chat_id")
+        @Index(name = "idx_replies_chat_timestamp", columnList = "chat_id, timestamp DESC, id DESC")
 })
 public class Reply {
 
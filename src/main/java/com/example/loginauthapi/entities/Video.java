@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "videos", indexes = {
-        @Index(name = "idx_video_chat_id", columnList = "chat_id"),
+        @Index(name = "idx_videos_chat_timestamp", columnList = "chat_id, timestamp DESC, id DESC"),
         @Index(name = "idx_video_message_id", columnList = "message_id"),
         @Index(name = "idx_video_timestamp", columnList = "timestamp"),
         @Index(name = "idx_video_saved_in_gallery", columnList = "saved_in_gallery")
@@ -0,0 +1,82 @@
+package com.example.loginauthapi.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * ✅ NOVO: Payload de webhook da Z-API persistido antes do processamento
+ * O controller apenas grava esta linha e responde 202; os workers fazem o resto
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "webhook_inbox")
+public class WebhookInbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    // Campos extraídos do payload para roteamento/diagnóstico sem desserializar o JSON
+    @Column(name = "instance_id")
+    private String instanceId;
+
+    @Column(name = "connected_phone", length = 50)
+    private String connectedPhone;
+
+    private String phone;
+
+    @Column(name = "chat_lid")
+    private String chatLid;
+
+    @Column(name = "message_id")
+    private String messageId;
+
+    private Long momment;
+
+    // ✅ NOVO: Chave da lane do chat (ver WebhookInboxService.laneKey), usada na verificação de ordem
+    @Column(name = "lane_key", columnDefinition = "TEXT")
+    private String laneKey;
+
+    // Payload original em JSON
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private WebhookInboxStatus status = WebhookInboxStatus.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    // ✅ NOVO: Início da reivindicação por um worker (lease do PROCESSING)
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    public void prePersist() {
+        this.receivedAt = LocalDateTime.now();
+        if (this.status == null) {
+            this.status = WebhookInboxStatus.PENDING;
+        }
+        if (this.attempts == null) {
+            this.attempts = 0;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.loginauthapi.entities;
+
+public enum WebhookInboxStatus {
+    PENDING,    // Recebido e persistido, aguardando um worker
+    PROCESSING, // Sendo processado agora por um worker
+    DONE,       // Processado com sucesso
+    FAILED      // Excedeu o número máximo de tentativas
+}
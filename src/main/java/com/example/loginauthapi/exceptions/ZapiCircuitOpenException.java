@@ -0,0 +1,10 @@
+package com.example.loginauthapi.exceptions;
+
+/**
+ * ✅ NOVO: Chamada à Z-API recusada porque o circuito da instância está aberto
+ */
+public class ZapiCircuitOpenException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ZapiCircuitOpenException(String message) { super(message); }
+}
@@ -3,8 +3,11 @@ package com.example.loginauthapi.repositories;
 import com.example.loginauthapi.entities.Audio;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,10 +17,22 @@ public interface AudioRepository extends JpaRepository<Audio, String> {
     Optional<Audio> findByMessageId(String messageId);
 
     // ✅ NOVO: Buscar o último áudio de um chat
-    Optional<Audio> findTopByChatIdOrderByTimestampDesc(String chatId);
+    Optional<Audio> findTopByChatIdOrderByTimestampDescIdDesc(String chatId);
 
-    List<Audio> findByChatIdOrderByTimestampAsc(String chatId);
+    List<Audio> findByChatIdOrderByTimestampAscIdAsc(String chatId);
 
     @Query("SELECT a FROM Audio a WHERE a.chat.id = :chatId ORDER BY a.timestamp ASC")
     List<Audio> findAudiosByChatId(String chatId);
+
+    // ✅ NOVO: Paginação por cursor (timestamp, id) para a timeline do chat - mais recentes primeiro
+    @Query("SELECT x FROM Audio x WHERE x.chat.id = :chatId ORDER BY x.timestamp DESC, x.id DESC")
+    List<Audio> findTimelineFirstPage(@Param("chatId") String chatId, Pageable pageable);
+
+    @Query("SELECT x FROM Audio x WHERE x.chat.id = :chatId " +
+            "AND (x.timestamp < :beforeTs OR (x.timestamp = :beforeTs AND x.id < :beforeId)) " +
+            "ORDER BY x.timestamp DESC, x.id DESC")
+    List<Audio> findTimelinePageBefore(@Param("chatId") String chatId,
+                                       @Param("beforeTs") LocalDateTime beforeTs,
+                                       @Param("beforeId") String beforeId,
+                                       Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.example.loginauthapi.repositories;
+
+import com.example.loginauthapi.entities.CampaignRecipient;
+import com.example.loginauthapi.entities.CampaignRecipientStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CampaignRecipientRepository extends JpaRepository<CampaignRecipient, Long> {
+
+    /**
+     * Destinatário reivindicado, já com os dados do chat necessários para o envio
+     */
+    /**
+     * ✅ NOVO: Destinatário p (chat ch) ainda elegível para a campanha cp: chat confiável e ativo, e
+     * "todos os confiáveis" ou alguma das tags atuais da campanha (mesmo critério da materialização)
+     */
+    String ELIGIBLE = "ch.is_trustworthy = TRUE AND ch.active_in_zapi = TRUE AND (cp.all_trustworthy = TRUE " +
+            "OR EXISTS (SELECT 1 FROM chat_tags ct " +
+            "WHERE ct.chat_id = ch.id AND ct.tag_id = ANY(string_to_array(cp.tag_ids, ','))))";
+
+    interface ClaimedRecipient {
+        String getChatId();
+        String getName();
+        String getPhone();
+    }
+
+    /**
+     * ✅ Materializar todos os chats confiáveis do usuário que ainda não são destinatários (anti-join)
+     * @return quantidade de destinatários novos
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO campaign_recipients (campaign_id, chat_id, status, attempts, created_at) " +
+            "SELECT :campaignId, c.id, 'PENDING', 0, NOW() FROM chats c " +
+            "JOIN web_instances wi ON wi.id = c.web_instance_id " +
+            "WHERE wi.user_id = :userId AND c.is_trustworthy = TRUE AND c.active_in_zapi = TRUE " +
+            "AND NOT EXISTS (SELECT 1 FROM campaign_recipients r " +
+            "WHERE r.campaign_id = :campaignId AND r.chat_id = c.id) " +
+            "ON CONFLICT (campaign_id, chat_id) DO NOTHING", nativeQuery = true)
+    int materializeAllTrustworthy(@Param("campaignId") String campaignId, @Param("userId") String userId);
+
+    /**
+     * ✅ Materializar os chats confiáveis com alguma das tags que ainda não são destinatários (anti-join)
+     * @return quantidade de destinatários novos
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO campaign_recipients (campaign_id, chat_id, status, attempts, created_at) " +
+            "SELECT DISTINCT :campaignId, c.id, 'PENDING', 0, NOW() FROM chats c " +
+            "JOIN web_instances wi ON wi.id = c.web_instance_id " +
+            "JOIN chat_tags ct ON ct.chat_id = c.id " +
+            "WHERE wi.user_id = :userId AND c.is_trustworthy = TRUE AND c.active_in_zapi = TRUE " +
+            "AND ct.tag_id IN (:tagIds) " +
+            "AND NOT EXISTS (SELECT 1 FROM campaign_recipients r " +
+            "WHERE r.campaign_id = :campaignId AND r.chat_id = c.id) " +
+            "ON CONFLICT (campaign_id, chat_id) DO NOTHING", nativeQuery = true)
+    int materializeByTags(@Param("campaignId") String campaignId,
+                          @Param("userId") String userId,
+                          @Param("tagIds") List<String> tagIds);
+
+    /**
+     * ✅ Reivindicar o próximo destinatário pendente em uma única instrução
+     * SKIP LOCKED: duas réplicas (ou dois passos) nunca pegam o mesmo chat
+     * ✅ MODIFICADO: Incrementa campaigns.dispatched_chats na mesma instrução (sem recontar os destinatários)
+     * ✅ MODIFICADO: Só reivindica destinatários ainda elegíveis ({@link #ELIGIBLE}): chat marcado como não
+     * confiável ou tags da campanha editadas depois da materialização não recebem o envio
+     */
+    @Transactional
+    @Query(value = "WITH claimed AS (" +
+            "UPDATE campaign_recipients r " +
+            "SET status = 'CLAIMED', claimed_at = NOW(), attempts = r.attempts + 1 " +
+            "FROM chats c " +
+            "WHERE c.id = r.chat_id AND r.id = (" +
+            "SELECT p.id FROM campaign_recipients p " +
+            "JOIN campaigns cp ON cp.id = p.campaign_id " +
+            "JOIN chats ch ON ch.id = p.chat_id " +
+            "WHERE p.campaign_id = :campaignId AND p.status = 'PENDING' AND " + ELIGIBLE + " " +
+            "ORDER BY p.attempts, p.id LIMIT 1 FOR UPDATE OF p SKIP LOCKED) " +
+            "RETURNING r.campaign_id, r.chat_id, c.name, c.phone), " +
+            "counted AS (" +
+            "UPDATE campaigns SET dispatched_chats = dispatched_chats + 1 " +
+            "WHERE id IN (SELECT campaign_id FROM claimed)) " +
+            "SELECT chat_id AS \"chatId\", name AS \"name\", phone AS \"phone\" FROM claimed", nativeQuery = true)
+    Optional<ClaimedRecipient> claimNext(@Param("campaignId") String campaignId);
+
+    /**
+     * ✅ MODIFICADO: Conteúdo do chat gravado no outbox (na mesma transação do enfileiramento)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignRecipient r SET r.status = 'SENT', r.sentAt = CURRENT_TIMESTAMP, r.lastError = NULL " +
+            "WHERE r.campaignId = :campaignId AND r.chatId = :chatId")
+    int markSent(@Param("campaignId") String campaignId, @Param("chatId") String chatId);
+
+    /**
+     * Envio falhou antes de ser enfileirado: volta para a fila ou vira FAILED após maxAttempts
+     * ✅ MODIFICADO: Só libera reivindicações (CLAIMED) e decrementa campaigns.dispatched_chats na mesma instrução
+     * @return 1 se o destinatário foi liberado; 0 se ele não estava mais reivindicado
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "WITH released AS (" +
+            "UPDATE campaign_recipients SET last_error = :error, " +
+            "status = CASE WHEN attempts >= :maxAttempts THEN 'FAILED' ELSE 'PENDING' END " +
+            "WHERE campaign_id = :campaignId AND chat_id = :chatId AND status = 'CLAIMED' " +
+            "RETURNING campaign_id) " +
+            "UPDATE campaigns SET dispatched_chats = GREATEST(dispatched_chats - 1, 0) " +
+            "WHERE id IN (SELECT campaign_id FROM released)", nativeQuery = true)
+    int release(@Param("campaignId") String campaignId,
+                @Param("chatId") String chatId,
+                @Param("error") String error,
+                @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * ✅ NOVO: Devolver para a fila reivindicações antigas que nunca chegaram ao outbox
+     * Seguro porque o destinatário só vira SENT na mesma transação que grava os envios
+     * Quem chama desconta as liberadas de campaigns.dispatched_chats (CampaignRepository#decrementDispatchedChats)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE campaign_recipients SET status = 'PENDING' " +
+            "WHERE campaign_id = :campaignId AND status = 'CLAIMED' AND claimed_at < :before", nativeQuery = true)
+    int releaseStaleClaims(@Param("campaignId") String campaignId, @Param("before") LocalDateTime before);
+
+    /**
+     * ✅ NOVO: Remover pendentes que deixaram de ser elegíveis ({@link #ELIGIBLE}), para a campanha
+     * poder concluir (o claim já os ignora)
+     * @return quantidade de destinatários removidos
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM campaign_recipients p USING campaigns cp, chats ch " +
+            "WHERE p.campaign_id = :campaignId AND p.status = 'PENDING' " +
+            "AND cp.id = p.campaign_id AND ch.id = p.chat_id AND NOT (" + ELIGIBLE + ")", nativeQuery = true)
+    int deleteIneligiblePending(@Param("campaignId") String campaignId);
+
+    long countByCampaignIdAndStatus(String campaignId, CampaignRecipientStatus status);
+
+    long countByCampaignId(String campaignId);
+}
@@ -3,11 +3,14 @@ package com.example.loginauthapi.repositories;
 import com.example.loginauthapi.entities.Campaign;
 import com.example.loginauthapi.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CampaignRepository extends JpaRepository<Campaign, String> {
@@ -18,4 +21,29 @@ public interface CampaignRepository extends JpaRepository<Campaign, String> {
     List<Campaign> findCampaignsReadyForDispatch(LocalDateTime now);
 
     List<Campaign> findByUserAndStatusIn(User user, List<String> statuses);
+
+    // ✅ NOVO: Status atual sem carregar a entidade (checado entre os envios de um lote)
+    @Query("SELECT c.status FROM Campaign c WHERE c.id = :id")
+    Optional<String> findStatusById(String id);
+
+    /**
+     * ✅ NOVO: Reivindicar o disparo da campanha: só uma réplica/ciclo consegue mover o próximo disparo
+     * (já reserva o seguinte, now + interval_minutes)
+     * @return 1 se reivindicou; 0 se outra réplica já pegou, a campanha não está mais em andamento ou ainda não é a hora
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE campaigns SET next_dispatch_time = CAST(:now AS timestamp) + interval_minutes * INTERVAL '1 minute' " +
+            "WHERE id = :id AND status = 'EM_ANDAMENTO' AND next_dispatch_time <= :now", nativeQuery = true)
+    int claimDispatch(String id, LocalDateTime now);
+
+    /**
+     * ✅ NOVO: Desconta de dispatched_chats reivindicações devolvidas para a fila
+     * (o incremento acontece em CampaignRecipientRepository#claimNext)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE campaigns SET dispatched_chats = GREATEST(dispatched_chats - :count, 0) WHERE id = :id",
+            nativeQuery = true)
+    int decrementDispatchedChats(String id, int count);
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -54,6 +55,26 @@ public interface ChatRepository extends JpaRepository<Chat, String> {
      */
     List<Chat> findByWebInstanceIdAndActiveInZapiTrueOrderByLastMessageTimeDesc(String webInstanceId);
 
+    /**
+     * ✅ NOVO: Tags de todos os chats ativos de uma instância em uma única consulta
+     * Usado junto com a consulta acima para montar a lista de chats sem N+1 em chat.getTags()
+     */
+    @Query("SELECT c.id AS chatId, t.id AS tagId, t.name AS name, t.color AS color, " +
+            "t.criadoEm AS criadoEm, t.atualizadoEm AS atualizadoEm " +
+            "FROM Chat c JOIN c.tags t " +
+            "WHERE c.webInstance.id = :webInstanceId AND c.activeInZapi = true " +
+            "ORDER BY t.name")
+    List<ChatTagRow> findActiveChatTagsByWebInstanceId(@Param("webInstanceId") String webInstanceId);
+
+    interface ChatTagRow {
+        String getChatId();
+        String getTagId();
+        String getName();
+        String getColor();
+        LocalDateTime getCriadoEm();
+        LocalDateTime getAtualizadoEm();
+    }
+
     /**
      * Desativar todos os chats de uma instância
      * Define active_in_zapi = false para todos os chats da instância
@@ -158,19 +179,27 @@ public interface ChatRepository extends JpaRepository<Chat, String> {
     // ============================================
 
     /**
-     * Buscar todos os chats confiáveis de um usuário
-     * Usado para disparo de campanhas com "todos os chats"
+     * ✅ MODIFICADO: Contar os chats confiáveis de um usuário (total de campanhas com "todos os chats")
      */
-    @Query("SELECT c FROM Chat c WHERE c.webInstance.user = :user AND c.isTrustworthy = true AND c.activeInZapi = true")
-    List<Chat> findByWebInstance_UserAndIsTrustworthyTrue(@Param("user") User user);
+    @Query("SELECT COUNT(c) FROM Chat c WHERE c.webInstance.user = :user AND c.isTrustworthy = true AND c.activeInZapi = true")
+    long countTrustworthyByUser(@Param("user") User user);
 
     /**
-     * Buscar chats confiáveis com tags específicas
-     * Usado para disparo de campanhas filtradas por tags
+     * ✅ MODIFICADO: Contar os chats confiáveis com alguma das tags (total de campanhas filtradas por tags)
      */
-    @Query("SELECT DISTINCT c FROM Chat c JOIN c.tags t WHERE c.webInstance.user = :user AND t.id IN :tagIds AND c.isTrustworthy = true AND c.activeInZapi = true")
-    List<Chat> findByWebInstance_UserAndTagsIdInAndIsTrustworthyTrue(
+    @Query("SELECT COUNT(DISTINCT c) FROM Chat c JOIN c.tags t WHERE c.webInstance.user = :user AND t.id IN :tagIds AND c.isTrustworthy = true AND c.activeInZapi = true")
+    long countTrustworthyByUserAndTags(
             @Param("user") User user,
             @Param("tagIds") List<String> tagIds
     );
-}
\ No newline at end of file
+
+    /**
+     * ✅ NOVO: IDs de chats sem resumo da última mensagem calculado (backfill), em ordem de id
+     */
+    // ✅ NOVO: Chats cujo resumo aponta para uma mensagem de texto anterior ao corte (limpeza de mensagens antigas)
+    @Query("SELECT c.id FROM Chat c WHERE c.lastMessageType = :type AND c.lastMessageTime < :before")
+    List<String> findIdsWithLastMessageBefore(@Param("type") String type, @Param("before") LocalDateTime before);
+
+    @Query("SELECT c.id FROM Chat c WHERE c.lastMessageType IS NULL AND c.id > :afterId ORDER BY c.id")
+    List<String> findIdsWithoutLastMessageSummary(@Param("afterId") String afterId, Pageable pageable);
+}
@@ -3,18 +3,34 @@ package com.example.loginauthapi.repositories;
 import com.example.loginauthapi.entities.Chat;
 import com.example.loginauthapi.entities.Document;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, String> {
-    List<Document> findByChatOrderByTimestampAsc(Chat chat);
+    List<Document> findByChatOrderByTimestampAscIdAsc(Chat chat);
     Optional<Document> findByMessageId(String messageId);
-    Optional<Document> findTopByChatIdOrderByTimestampDesc(String chatId);
-    List<Document> findByChatIdOrderByTimestampDesc(String chatId);
+    Optional<Document> findTopByChatIdOrderByTimestampDescIdDesc(String chatId);
+    List<Document> findByChatIdOrderByTimestampDescIdDesc(String chatId);
 
     // ✅ NOVO MÉTODO NECESSÁRIO: Buscar documentos ordenados por timestamp ascendente
-    List<Document> findByChatIdOrderByTimestampAsc(String chatId);
+    List<Document> findByChatIdOrderByTimestampAscIdAsc(String chatId);
+
+    // ✅ NOVO: Paginação por cursor (timestamp, id) para a timeline do chat - mais recentes primeiro
+    @Query("SELECT x FROM Document x WHERE x.chat.id = :chatId ORDER BY x.timestamp DESC, x.id DESC")
+    List<Document> findTimelineFirstPage(@Param("chatId") String chatId, Pageable pageable);
+
+    @Query("SELECT x FROM Document x WHERE x.chat.id = :chatId " +
+            "AND (x.timestamp < :beforeTs OR (x.timestamp = :beforeTs AND x.id < :beforeId)) " +
+            "ORDER BY x.timestamp DESC, x.id DESC")
+    List<Document> findTimelinePageBefore(@Param("chatId") String chatId,
+                                          @Param("beforeTs") LocalDateTime beforeTs,
+                                          @Param("beforeId") String beforeId,
+                                          Pageable pageable);
 }
\ No newline at end of file
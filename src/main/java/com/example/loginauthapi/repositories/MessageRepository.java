@@ -1,6 +1,7 @@
 package com.example.loginauthapi.repositories;
 
 import com.example.loginauthapi.entities.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -15,10 +16,10 @@ import java.util.Optional;
 public interface MessageRepository extends JpaRepository<Message, String> {
 
     // Buscar mensagens de um chat ordenadas por timestamp
-    List<Message> findByChatIdOrderByTimestampAsc(String chatId);
+    List<Message> findByChatIdOrderByTimestampAscIdAsc(String chatId);
 
-    // ✅ NOVO: Buscar a última mensagem de um chat
-    Optional<Message> findTopByChatIdOrderByTimestampDesc(String chatId);
+    // ✅ NOVO: Buscar a última mensagem de um chat (id desempata timestamps iguais, mesma ordem do índice)
+    Optional<Message> findTopByChatIdOrderByTimestampDescIdDesc(String chatId);
 
     // Buscar mensagem pelo messageId do WhatsApp
     Optional<Message> findByMessageId(String messageId);
@@ -27,13 +28,14 @@ public interface MessageRepository extends JpaRepository<Message, String> {
 
     /**
      * Buscar última mensagem fromMe=true de um chat
+     * Atendida pelo índice parcial idx_messages_chat_timestamp_from_me (V38)
      */
-    Optional<Message> findFirstByChatIdAndFromMeTrueOrderByTimestampDesc(String chatId);
+    Optional<Message> findFirstByChatIdAndFromMeTrueOrderByTimestampDescIdDesc(String chatId);
 
     /**
      * Buscar mensagens de um chat ordenadas por timestamp descendente
      */
-    List<Message> findByChatIdOrderByTimestampDesc(String chatId);
+    List<Message> findByChatIdOrderByTimestampDescIdDesc(String chatId);
 
     // Deletar mensagens antigas (mais de 60 dias)
     @Modifying
@@ -42,4 +44,36 @@ public interface MessageRepository extends JpaRepository<Message, String> {
 
     // Contar mensagens de um chat
     long countByChatId(String chatId);
+
+    /**
+     * ✅ NOVO: Tipo de mídia de um messageId em uma única consulta
+     * Cada ramo usa o índice único de message_id da tabela e não lê colunas de URL/base64.
+     * Vazio quando o messageId não é foto, áudio, vídeo nem documento (→ texto)
+     */
+    @Query(value = "SELECT kind FROM (" +
+            "SELECT 'image' AS kind, 1 AS priority FROM photos WHERE message_id = :messageId " +
+            "UNION ALL SELECT 'audio', 2 FROM audios WHERE message_id = :messageId " +
+            "UNION ALL SELECT 'video', 3 FROM videos WHERE message_id = :messageId " +
+            "UNION ALL SELECT 'document', 4 FROM documents WHERE message_id = :messageId" +
+            ") media ORDER BY priority LIMIT 1", nativeQuery = true)
+    Optional<String> findMediaTypeByMessageId(@Param("messageId") String messageId);
+
+    /**
+     * ✅ NOVO: messageIds das mensagens recebidas desde um instante (mais recentes primeiro)
+     * Usado para aquecer o cache de deduplicação de webhooks
+     */
+    @Query("SELECT m.messageId FROM Message m WHERE m.fromMe = false AND m.createdAt >= :since ORDER BY m.createdAt DESC")
+    List<String> findIncomingMessageIdsCreatedSince(@Param("since") LocalDateTime since, Pageable pageable);
+
+    // ✅ NOVO: Paginação por cursor (timestamp, id) para a timeline do chat - mais recentes primeiro
+    @Query("SELECT x FROM Message x WHERE x.chat.id = :chatId ORDER BY x.timestamp DESC, x.id DESC")
+    List<Message> findTimelineFirstPage(@Param("chatId") String chatId, Pageable pageable);
+
+    @Query("SELECT x FROM Message x WHERE x.chat.id = :chatId " +
+            "AND (x.timestamp < :beforeTs OR (x.timestamp = :beforeTs AND x.id < :beforeId)) " +
+            "ORDER BY x.timestamp DESC, x.id DESC")
+    List<Message> findTimelinePageBefore(@Param("chatId") String chatId,
+                                         @Param("beforeTs") LocalDateTime beforeTs,
+                                         @Param("beforeId") String beforeId,
+                                         Pageable pageable);
 }
\ No newline at end of file
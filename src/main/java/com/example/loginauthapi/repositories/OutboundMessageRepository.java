@@ -0,0 +1,156 @@
+package com.example.loginauthapi.repositories;
+
+import com.example.loginauthapi.entities.OutboundMessage;
+import com.example.loginauthapi.entities.OutboundMessageStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboundMessageRepository extends JpaRepository<OutboundMessage, Long> {
+
+    /**
+     * ✅ Gravar um envio no outbox (participa da transação de quem chama)
+     * @return id da linha, ou vazio se a dedupKey já existe (envio já enfileirado)
+     */
+    @Transactional
+    @Query(value = "INSERT INTO outbound_messages (web_instance_id, chat_id, kind, payload, local_message_id, " +
+            "source, dedup_key, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (:webInstanceId, :chatId, :kind, :payload, :localMessageId, " +
+            ":source, :dedupKey, 'PENDING', 0, NOW(), NOW()) " +
+            "ON CONFLICT (dedup_key) DO NOTHING RETURNING id", nativeQuery = true)
+    Optional<Long> insert(@Param("webInstanceId") String webInstanceId,
+                          @Param("chatId") String chatId,
+                          @Param("kind") String kind,
+                          @Param("payload") String payload,
+                          @Param("localMessageId") String localMessageId,
+                          @Param("source") String source,
+                          @Param("dedupKey") String dedupKey);
+
+    // ✅ NOVO: Checado antes de salvar o registro local de um envio com dedupKey
+    boolean existsByDedupKey(String dedupKey);
+
+    /**
+     * Instâncias com envio pendente já liberado para tentativa
+     */
+    @Query(value = "SELECT DISTINCT o.web_instance_id FROM outbound_messages o " +
+            "WHERE o.status = 'PENDING' AND o.next_attempt_at <= NOW()", nativeQuery = true)
+    List<String> findInstancesWithDueMessages();
+
+    /**
+     * ✅ NOVO: Lock de transação da instância (pg_try_advisory_xact_lock), liberado no commit
+     * Tomado antes do {@link #claimNext}: a próxima instrução já enxerga o SENDING de outra réplica
+     * @return false se outra réplica está reivindicando um envio da mesma instância agora
+     */
+    @Transactional
+    @Query(value = "SELECT pg_try_advisory_xact_lock(hashtext(:webInstanceId))", nativeQuery = true)
+    boolean tryLockInstance(@Param("webInstanceId") String webInstanceId);
+
+    /**
+     * ✅ Reivindicar o próximo envio da instância, em ordem de gravação
+     * - Só o primeiro pendente da fila: se ele aguarda nova tentativa, a instância espera (texto antes das mídias)
+     * - ✅ MODIFICADO: Envios manuais furam a fila (à frente de campanhas/rotinas/tarefas, em ordem entre si)
+     * - Nada é reivindicado enquanto outro envio da mesma instância está em SENDING
+     * - SKIP LOCKED: duas réplicas nunca pegam a mesma linha
+     * - ✅ MODIFICADO: Chamado sob {@link #tryLockInstance} (OutboxRelay#claimNext); sozinho, o NOT EXISTS
+     *   usa o snapshot do início da instrução e duas réplicas poderiam pegar o 1º e o 2º pendentes
+     */
+    @Transactional
+    @Query(value = "UPDATE outbound_messages o " +
+            "SET status = 'SENDING', claimed_at = NOW(), attempts = o.attempts + 1 " +
+            "WHERE o.id = (" +
+            "SELECT p.id FROM outbound_messages p " +
+            "WHERE p.web_instance_id = :webInstanceId AND p.status = 'PENDING' " +
+            "ORDER BY (p.source = 'MANUAL') DESC, p.id LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+            "AND o.next_attempt_at <= NOW() " +
+            "AND NOT EXISTS (SELECT 1 FROM outbound_messages s " +
+            "WHERE s.web_instance_id = :webInstanceId AND s.status = 'SENDING') " +
+            "RETURNING o.*", nativeQuery = true)
+    Optional<OutboundMessage> claimNext(@Param("webInstanceId") String webInstanceId);
+
+    /**
+     * ✅ Reivindicar um envio específico (envio manual, fora da ordem da fila)
+     * ✅ MODIFICADO: Também sob {@link #tryLockInstance} e só sem outro envio da instância em SENDING
+     * (um envio em andamento por instância); senão a linha fica na fila, à frente dos não manuais
+     */
+    @Transactional
+    @Query(value = "UPDATE outbound_messages o " +
+            "SET status = 'SENDING', claimed_at = NOW(), attempts = o.attempts + 1 " +
+            "WHERE o.id = :id AND o.web_instance_id = :webInstanceId AND o.status = 'PENDING' " +
+            "AND NOT EXISTS (SELECT 1 FROM outbound_messages s " +
+            "WHERE s.web_instance_id = :webInstanceId AND s.status = 'SENDING') " +
+            "RETURNING o.*", nativeQuery = true)
+    Optional<OutboundMessage> claimById(@Param("webInstanceId") String webInstanceId, @Param("id") Long id);
+
+    /**
+     * Aceito pela Z-API: grava o messageId real antes de qualquer reconciliação
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_messages SET status = 'SENT', zapi_message_id = :zapiMessageId, " +
+            "completed_at = NOW(), last_error = NULL WHERE id = :id", nativeQuery = true)
+    int markSent(@Param("id") Long id, @Param("zapiMessageId") String zapiMessageId);
+
+    /**
+     * Envio não chegou à Z-API: volta para a fila em nextAttemptAt ou vira FAILED após maxAttempts
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_messages SET last_error = :error, next_attempt_at = :nextAttemptAt, " +
+            "status = CASE WHEN attempts >= :maxAttempts THEN 'FAILED' ELSE 'PENDING' END, " +
+            "completed_at = CASE WHEN attempts >= :maxAttempts THEN NOW() ELSE NULL END " +
+            "WHERE id = :id", nativeQuery = true)
+    int retryLater(@Param("id") Long id,
+                   @Param("error") String error,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_messages SET status = 'FAILED', last_error = :error, completed_at = NOW() " +
+            "WHERE id = :id", nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+
+    /**
+     * Envios que ficaram em SENDING além do prazo (restart no meio da chamada): resultado incerto,
+     * marcados como UNKNOWN em vez de reenviados
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_messages SET status = 'UNKNOWN', completed_at = NOW(), " +
+            "last_error = 'Envio interrompido; a Z-API pode ter recebido a mensagem' " +
+            "WHERE status = 'SENDING' AND claimed_at < :before", nativeQuery = true)
+    int markStaleSendingUnknown(@Param("before") LocalDateTime before);
+
+    /**
+     * Envios concluídos cujo resultado ainda não voltou para a mensagem local
+     */
+    @Query("SELECT o FROM OutboundMessage o WHERE o.status IN :statuses " +
+            "AND o.localMessageId IS NOT NULL AND o.reconciledAt IS NULL AND o.completedAt < :before " +
+            "ORDER BY o.completedAt ASC")
+    List<OutboundMessage> findUnreconciled(@Param("statuses") List<OutboundMessageStatus> statuses,
+                                           @Param("before") LocalDateTime before,
+                                           Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE outbound_messages SET reconciled_at = NOW() WHERE id = :id", nativeQuery = true)
+    int markReconciled(@Param("id") Long id);
+
+    /**
+     * Remover envios concluídos há mais de N dias
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM outbound_messages WHERE status IN ('SENT', 'FAILED', 'UNKNOWN') " +
+            "AND completed_at < :cutoff", nativeQuery = true)
+    int deleteCompletedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -2,17 +2,36 @@ package com.example.loginauthapi.repositories;
 
 import com.example.loginauthapi.entities.Photo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PhotoRepository extends JpaRepository<Photo, String> {
     Optional<Photo> findByMessageId(String messageId);
-    List<Photo> findByChatIdOrderByTimestampAsc(String chatId);
+    List<Photo> findByChatIdOrderByTimestampAscIdAsc(String chatId);
     List<Photo> findByChatWebInstanceUserIdAndSavedInGalleryTrueOrderByTimestampDesc(String userId);
 
     // ✅ NOVO: Buscar última foto de um chat (para syncLastMessageContent)
-    Optional<Photo> findTopByChatIdOrderByTimestampDesc(String chatId);
+    Optional<Photo> findTopByChatIdOrderByTimestampDescIdDesc(String chatId);
+
+    // ✅ NOVO: Última foto ainda visível no chat (resumo do chat; ignora as removidas do chat e mantidas na galeria)
+    Optional<Photo> findTopByChatIdAndDeletedFromChatFalseOrderByTimestampDescIdDesc(String chatId);
+
+    // ✅ NOVO: Paginação por cursor (timestamp, id) para a timeline do chat - mais recentes primeiro
+    @Query("SELECT x FROM Photo x WHERE x.chat.id = :chatId AND (x.deletedFromChat IS NULL OR x.deletedFromChat = false) AND x.status = 'SENT' ORDER BY x.timestamp DESC, x.id DESC")
+    List<Photo> findTimelineFirstPage(@Param("chatId") String chatId, Pageable pageable);
+
+    @Query("SELECT x FROM Photo x WHERE x.chat.id = :chatId AND (x.deletedFromChat IS NULL OR x.deletedFromChat = false) AND x.status = 'SENT' " +
+            "AND (x.timestamp < :beforeTs OR (x.timestamp = :beforeTs AND x.id < :beforeId)) " +
+            "ORDER BY x.timestamp DESC, x.id DESC")
+    List<Photo> findTimelinePageBefore(@Param("chatId") String chatId,
+                                       @Param("beforeTs") LocalDateTime beforeTs,
+                                       @Param("beforeId") String beforeId,
+                                       Pageable pageable);
 }
\ No newline at end of file
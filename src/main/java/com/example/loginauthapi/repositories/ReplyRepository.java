@@ -3,8 +3,10 @@ package com.example.loginauthapi.repositories;
 import com.example.loginauthapi.entities.Reply;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,11 +15,15 @@ public interface ReplyRepository extends JpaRepository<Reply, String> {
 
     Optional<Reply> findByMessageId(String messageId);
 
-    List<Reply> findByChatIdOrderByTimestampAsc(String chatId);
+    List<Reply> findByChatIdOrderByTimestampAscIdAsc(String chatId);
 
     @Query("SELECT r FROM Reply r WHERE r.message.messageId = :messageId")
     Optional<Reply> findByMessageMessageId(String messageId);
 
     @Query("SELECT r FROM Reply r WHERE r.referenceMessageId = :referenceMessageId")
     List<Reply> findByReferenceMessageId(String referenceMessageId);
+
+    // ✅ NOVO: Replies das mensagens de uma página da timeline
+    @Query("SELECT r FROM Reply r WHERE r.message.messageId IN :messageIds")
+    List<Reply> findByMessageMessageIdIn(@Param("messageIds") Collection<String> messageIds);
 }
\ No newline at end of file
@@ -2,15 +2,34 @@ package com.example.loginauthapi.repositories;
 
 import com.example.loginauthapi.entities.Video;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface VideoRepository extends JpaRepository<Video, String> {
     Optional<Video> findByMessageId(String messageId);
-    List<Video> findByChatIdOrderByTimestampAsc(String chatId);
+    List<Video> findByChatIdOrderByTimestampAscIdAsc(String chatId);
     List<Video> findByChatWebInstanceUserIdAndSavedInGalleryTrueOrderByTimestampDesc(String userId);
-    Optional<Video> findTopByChatIdOrderByTimestampDesc(String chatId);
+    Optional<Video> findTopByChatIdOrderByTimestampDescIdDesc(String chatId);
+
+    // ✅ NOVO: Último vídeo ainda visível no chat (resumo do chat; ignora os removidos do chat e mantidos na galeria)
+    Optional<Video> findTopByChatIdAndDeletedFromChatFalseOrderByTimestampDescIdDesc(String chatId);
+
+    // ✅ NOVO: Paginação por cursor (timestamp, id) para a timeline do chat - mais recentes primeiro
+    @Query("SELECT x FROM Video x WHERE x.chat.id = :chatId AND (x.deletedFromChat IS NULL OR x.deletedFromChat = false) ORDER BY x.timestamp DESC, x.id DESC")
+    List<Video> findTimelineFirstPage(@Param("chatId") String chatId, Pageable pageable);
+
+    @Query("SELECT x FROM Video x WHERE x.chat.id = :chatId AND (x.deletedFromChat IS NULL OR x.deletedFromChat = false) " +
+            "AND (x.timestamp < :beforeTs OR (x.timestamp = :beforeTs AND x.id < :beforeId)) " +
+            "ORDER BY x.timestamp DESC, x.id DESC")
+    List<Video> findTimelinePageBefore(@Param("chatId") String chatId,
+                                       @Param("beforeTs") LocalDateTime beforeTs,
+                                       @Param("beforeId") String beforeId,
+                                       Pageable pageable);
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.example.loginauthapi.repositories;
 
 import com.example.loginauthapi.entities.WebInstance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -39,4 +41,16 @@ public interface WebInstanceRepository extends JpaRepository<WebInstance, String
 
     List<WebInstance> findByUserIdAndStatus(String userId, String status);
 
+    // ✅ NOVOS MÉTODOS para o cache de roteamento de webhooks (User carregado junto)
+
+    @Query("SELECT w FROM WebInstance w JOIN FETCH w.user WHERE w.suaInstancia = :suaInstancia")
+    Optional<WebInstance> findBySuaInstanciaWithUser(@Param("suaInstancia") String suaInstancia);
+
+    @Query("SELECT w FROM WebInstance w JOIN FETCH w.user WHERE w.connectedPhone = :connectedPhone")
+    Optional<WebInstance> findByConnectedPhoneWithUser(@Param("connectedPhone") String connectedPhone);
+
+    // Instâncias ACTIVE primeiro, para prevalecerem quando houver suaInstancia/connectedPhone repetido
+    @Query("SELECT w FROM WebInstance w JOIN FETCH w.user ORDER BY CASE WHEN w.status = 'ACTIVE' THEN 0 ELSE 1 END")
+    List<WebInstance> findAllWithUser();
+
 }
\ No newline at end of file
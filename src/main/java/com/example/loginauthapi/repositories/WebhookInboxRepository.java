@@ -0,0 +1,104 @@
+package com.example.loginauthapi.repositories;
+
+import com.example.loginauthapi.entities.WebhookInbox;
+import com.example.loginauthapi.entities.WebhookInboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInbox, String> {
+
+    /**
+     * Projeção leve (sem o payload) usada para reenfileirar webhooks na lane correta
+     */
+    interface PendingWebhook {
+        String getId();
+        String getInstanceId();
+        String getConnectedPhone();
+        String getChatLid();
+        String getPhone();
+    }
+
+    /**
+     * Buscar webhooks ainda não concluídos recebidos antes de um instante
+     * Usado pela varredura de recuperação (lane cheia, falha transitória ou restart)
+     */
+    @Query("SELECT w.id AS id, w.instanceId AS instanceId, w.connectedPhone AS connectedPhone, " +
+            "w.chatLid AS chatLid, w.phone AS phone FROM WebhookInbox w " +
+            "WHERE w.status = :status AND w.receivedAt < :before " +
+            "ORDER BY w.receivedAt ASC, w.id ASC")
+    List<PendingWebhook> findPendingReceivedBefore(@Param("status") WebhookInboxStatus status,
+                                                   @Param("before") LocalDateTime before,
+                                                   Pageable pageable);
+
+    /**
+     * ✅ MODIFICADO: Há webhook anterior na mesma lane (lane_key) ainda não concluído?
+     * Usado para segurar os eventos seguintes até a cabeça da fila do chat terminar.
+     * "Anterior" = ordem de chegada (received_at, id), a mesma de {@link #findPendingReceivedBefore}
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM webhook_inbox w " +
+            "WHERE w.lane_key = :laneKey AND w.status IN ('PENDING', 'PROCESSING') " +
+            "AND (w.received_at, w.id) < (:receivedAt, :id))",
+            nativeQuery = true)
+    boolean existsOlderUnfinished(@Param("laneKey") String laneKey,
+                                  @Param("receivedAt") LocalDateTime receivedAt,
+                                  @Param("id") String id);
+
+    /**
+     * ✅ NOVO: Reivindicar um webhook para processamento (PENDING → PROCESSING)
+     * Atômico: se duas réplicas tentarem a mesma linha, só uma recebe 1
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE webhook_inbox SET status = 'PROCESSING', claimed_at = NOW(), attempts = attempts + 1 " +
+            "WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int claim(@Param("id") String id);
+
+    /**
+     * ✅ NOVO: Concluir um webhook reivindicado (UPDATE direcionado; não regrava claimed_at/attempts)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE webhook_inbox SET status = 'DONE', processed_at = NOW(), last_error = NULL " +
+            "WHERE id = :id AND status = 'PROCESSING'", nativeQuery = true)
+    int markDone(@Param("id") String id);
+
+    /**
+     * ✅ NOVO: Registrar a falha de um webhook reivindicado: volta para PENDING ou,
+     * esgotadas as tentativas, FAILED
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE webhook_inbox SET status = CASE WHEN attempts >= :maxAttempts " +
+            "THEN 'FAILED' ELSE 'PENDING' END, last_error = :error " +
+            "WHERE id = :id AND status = 'PROCESSING'", nativeQuery = true)
+    int markFailed(@Param("id") String id, @Param("maxAttempts") int maxAttempts, @Param("error") String error);
+
+    /**
+     * ✅ MODIFICADO: Devolver para PENDING apenas os webhooks em PROCESSING com o prazo vencido
+     * (restart no meio do processamento); os que outra réplica ainda processa ficam com ela
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE webhook_inbox SET status = 'PENDING' " +
+            "WHERE status = 'PROCESSING' AND claimed_at < :before", nativeQuery = true)
+    int resetExpiredProcessing(@Param("before") LocalDateTime before);
+
+    /**
+     * Remover webhooks já processados há mais de N dias
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WebhookInbox w WHERE w.status = 'DONE' AND w.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    long countByStatus(WebhookInboxStatus status);
+}
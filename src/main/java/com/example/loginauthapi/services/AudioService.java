@@ -24,6 +24,7 @@ public class AudioService {
 
     private final AudioRepository audioRepository;
     private final ChatRepository chatRepository;
+    private final ChatSummaryService chatSummaryService;
 
     /**
      * ✅ MODIFICADO: Salvar áudio recebido via webhook
@@ -72,6 +73,7 @@ public class AudioService {
             audio.setStatus(status != null ? status : audio.getStatus());
 
             Audio updated = audioRepository.save(audio);
+            chatSummaryService.recordAudio(updated);
 
             log.info("✅ Áudio atualizado com sucesso!");
             log.info("   AudioUrl final: {}", updated.getAudioUrl());
@@ -102,6 +104,7 @@ public class AudioService {
         audio.setStatus(status != null ? status : "PENDING");
 
         Audio saved = audioRepository.save(audio);
+        chatSummaryService.recordAudio(saved);
         log.info("✅ Áudio criado - MessageId: {}, ChatId: {}, Seconds: {}, AudioUrl: {}",
                 messageId, chatId, saved.getSeconds(), saved.getAudioUrl());
 
@@ -135,10 +138,9 @@ public class AudioService {
         audio.setStatus("PENDING");
 
         Audio saved = audioRepository.save(audio);
+        chatSummaryService.recordAudio(saved);
 
-        // ✅ NOVO: Atualizar o chat com lastMessageContent, lastMessageTime e zerar unread
-        chat.setLastMessageContent("Mensagem de Áudio");
-        chat.setLastMessageTime(LocalDateTime.now());
+        // ✅ Resumo da última mensagem já atualizado acima; apenas zerar unread
         chat.setUnread(0);
         chatRepository.save(chat);
 
@@ -176,7 +178,7 @@ public class AudioService {
             throw new RuntimeException("Chat não encontrado");
         }
 
-        List<Audio> audios = audioRepository.findByChatIdOrderByTimestampAsc(chatId);
+        List<Audio> audios = audioRepository.findByChatIdOrderByTimestampAscIdAsc(chatId);
 
         return audios.stream()
                 .map(this::convertToDTO)
@@ -195,6 +197,7 @@ public class AudioService {
 
             if (audioOpt.isPresent()) {
                 audioRepository.delete(audioOpt.get());
+                chatSummaryService.rebuild(audioOpt.get().getChat().getId());
                 log.info("Audio Excluido do Banco - MessageId: {}", messageId);
             } else {
                 log.warn("Audio não encontrado no banco - MessageId: {}", messageId);
@@ -216,7 +219,7 @@ public class AudioService {
     /**
      * Converter para DTO
      */
-    private AudioDTO convertToDTO(Audio audio) {
+    public AudioDTO convertToDTO(Audio audio) {
         return AudioDTO.builder()
                 .id(audio.getId())
                 .messageId(audio.getMessageId())
@@ -1,54 +1,189 @@
 package com.example.loginauthapi.services;
 
-import com.example.loginauthapi.dto.MessageDTO;
-import com.example.loginauthapi.dto.PhotoDTO;
-import com.example.loginauthapi.dto.VideoDTO;
 import com.example.loginauthapi.entities.Campaign;
-import com.example.loginauthapi.entities.Chat;
+import com.example.loginauthapi.entities.CampaignRecipientStatus;
+import com.example.loginauthapi.entities.OutboundMessageSource;
 import com.example.loginauthapi.entities.Photo;
 import com.example.loginauthapi.entities.Video;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.entities.WebInstance;
 import com.example.loginauthapi.repositories.CampaignRepository;
-import com.example.loginauthapi.repositories.ChatRepository;
+import com.example.loginauthapi.repositories.CampaignRecipientRepository;
+import com.example.loginauthapi.repositories.CampaignRecipientRepository.ClaimedRecipient;
 import com.example.loginauthapi.repositories.PhotoRepository;
 import com.example.loginauthapi.repositories.VideoRepository;
 import com.example.loginauthapi.repositories.WebInstanceRepository;
-import com.example.loginauthapi.services.zapi.ZapiMessageService;
-import lombok.RequiredArgsConstructor;
+import com.example.loginauthapi.services.outbox.OutboxService;
+import com.example.loginauthapi.services.zapi.ZapiCircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disparo de campanhas
+ *
+ * ✅ MODIFICADO: O lote não roda mais dentro de uma transação única com Thread.sleep entre os envios.
+ * - {@link #prepareCampaignBatch} (transação curta) define o tamanho do lote e já agenda o próximo
+ *   disparo, para a campanha não ser escolhida de novo enquanto o lote roda (nem perdida num restart)
+ *   ✅ MODIFICADO: o agendamento é um UPDATE condicional (next_dispatch_time <= now); com várias
+ *   réplicas, só a que atualizou a linha dispara o lote
+ * - Cada chat vira uma tarefa atrasada no executor "Campaign-Dispatcher-": reivindica o próximo
+ *   destinatário (transação própria), grava texto/fotos/vídeos no outbox e agenda o próximo passo após
+ *   campaign.dispatcher.send-gap-ms. O ritmo real por número fica com o ZapiSendRateLimiter
+ * - {@link #completeCampaignBatch} (transação curta) fecha o lote: conclui a campanha ou agenda o próximo
+ *
+ * ✅ NOVO: Escalonamento justo
+ * - Uma fila (lane) por instância Z-API: números diferentes (e portanto usuários diferentes)
+ *   disparam em paralelo, cada um com no máximo um envio em andamento
+ * - Dentro da lane, os lotes ativos se revezam chat a chat (round-robin): uma campanha grande
+ *   não segura as outras campanhas do mesmo usuário até terminar
+ * - campaign.dispatcher.threads limita quantos envios de campanha rodam ao mesmo tempo no total;
+ *   lanes prontas são atendidas por ordem de horário agendado
+ *
+ * ✅ NOVO: Destinatários em campaign_recipients
+ * - Os chats elegíveis são materializados por SQL (anti-join: só entram chats ainda sem linha)
+ *   quando a campanha não tem mais pendentes, o que também inclui chats que ficaram elegíveis depois
+ * - Cada envio reivindica um destinatário com um UPDATE ... RETURNING de uma linha (SKIP LOCKED)
+ * - Sem linhas pendentes e sem novos elegíveis, a campanha é concluída
+ *
+ * ✅ NOVO: Outbox de envios
+ * - Cada passo grava texto/fotos/vídeos no outbox e marca o destinatário como SENT numa transação só
+ *   ({@link #enqueueCampaignChat}); o OutboxRelay faz as chamadas à Z-API e devolve o messageId real
+ * - Um restart no meio do lote não duplica nem perde envios: o que foi gravado é enviado pelo relay,
+ *   o que não foi volta para a fila
+ *
+ * Nenhuma conexão do banco nem thread fica presa entre um envio e outro.
+ *
+ * Métricas: campaign.dispatch.chat (duração e vazão dos envios por chat),
+ * campaign.dispatch.batches.active e campaign.dispatch.lanes.active.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CampaignDispatcherService {
 
+    // Tentativas de envio por destinatário antes de marcá-lo como FAILED
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    // Destinatário CLAIMED há mais tempo que isso não está sendo enfileirado por ninguém
+    private static final long STALE_CLAIM_MINUTES = 10;
+
     private final CampaignRepository campaignRepository;
-    private final ChatRepository chatRepository;
+    private final CampaignRecipientRepository campaignRecipientRepository;
     private final WebInstanceRepository webInstanceRepository;
-    private final ZapiMessageService zapiMessageService;
-    private final MessageService messageService;
-    private final PhotoService photoService;
-    private final VideoService videoService;
+    private final ZapiCircuitBreaker zapiCircuitBreaker;
+    private final OutboxService outboxService;
     private final PhotoRepository photoRepository;
     private final VideoRepository videoRepository;
 
     @Autowired
     private ApplicationContext applicationContext;
 
+    // ✅ NOVO: Execução dos lotes, um passo (chat) por tarefa
+    private final ScheduledExecutorService dispatcherExecutor;
+    private final long sendGapMs;
+
+    // Campanhas com lote em andamento nesta réplica
+    private final Set<String> runningBatches = ConcurrentHashMap.newKeySet();
+
+    // ✅ NOVO: Lanes por instância Z-API (suaInstancia)
+    private final Map<String, CampaignLane> lanes = new ConcurrentHashMap<>();
+    private final Timer chatDispatchTimer;
+
     /**
-     * Executa a cada minuto para verificar campanhas que precisam ser disparadas
+     * ✅ NOVO: Lotes ativos de uma instância; no máximo um passo agendado/em execução por vez
+     */
+    private static final class CampaignLane {
+        // Protegidos pelo lock da própria lane
+        private final Deque<BatchCursor> batches = new ArrayDeque<>();
+        private boolean scheduled;
+    }
+
+    private static final class BatchCursor {
+        private final CampaignBatch batch;
+        private int dispatched;
+
+        private BatchCursor(CampaignBatch batch) {
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * ✅ NOVO: Dados do lote capturados na transação de preparo (nada lazy é acessado depois)
+     * Os chats não são escolhidos aqui: cada passo reivindica o próximo destinatário pendente
+     */
+    public record CampaignBatch(String campaignId,
+                                User user,
+                                WebInstance instance,
+                                String message,
+                                int size,
+                                List<String> photoUrls,
+                                List<String> videoUrls) {
+    }
+
+    public CampaignDispatcherService(CampaignRepository campaignRepository,
+                                     CampaignRecipientRepository campaignRecipientRepository,
+                                     WebInstanceRepository webInstanceRepository,
+                                     ZapiCircuitBreaker zapiCircuitBreaker,
+                                     OutboxService outboxService,
+                                     PhotoRepository photoRepository,
+                                     VideoRepository videoRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${campaign.dispatcher.threads:4}") int dispatcherThreads,
+                                     @Value("${campaign.dispatcher.send-gap-ms:2000}") long sendGapMs) {
+        this.campaignRepository = campaignRepository;
+        this.campaignRecipientRepository = campaignRecipientRepository;
+        this.webInstanceRepository = webInstanceRepository;
+        this.zapiCircuitBreaker = zapiCircuitBreaker;
+        this.outboxService = outboxService;
+        this.photoRepository = photoRepository;
+        this.videoRepository = videoRepository;
+        this.sendGapMs = sendGapMs;
+        this.dispatcherExecutor = Executors.newScheduledThreadPool(dispatcherThreads,
+                new CustomizableThreadFactory("Campaign-Dispatcher-"));
+
+        this.chatDispatchTimer = Timer.builder("campaign.dispatch.chat")
+                .description("Enfileiramento de uma campanha para um chat (texto + mídias)")
+                .register(meterRegistry);
+        Gauge.builder("campaign.dispatch.batches.active", runningBatches, Set::size)
+                .description("Lotes de campanha em andamento")
+                .register(meterRegistry);
+        Gauge.builder("campaign.dispatch.lanes.active", lanes, map -> map.values().stream()
+                        .filter(lane -> {
+                            synchronized (lane) {
+                                return lane.scheduled;
+                            }
+                        })
+                        .count())
+                .description("Instâncias Z-API com lotes de campanha em andamento")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcherExecutor.shutdownNow();
+    }
+
+    /**
+     * Executa a cada 30 segundos para verificar campanhas que precisam ser disparadas
+     * ✅ MODIFICADO: Só prepara e agenda os lotes; os envios rodam no dispatcherExecutor
      */
     @Scheduled(fixedDelay = 30000) // 30 segundos
     public void processCampaigns() {
@@ -62,14 +197,23 @@ public class CampaignDispatcherService {
 
             log.info("📢 Processando {} campanhas prontas para disparo", campaigns.size());
 
-            // Obter proxy do próprio serviço para garantir que @Transactional funcione
-            CampaignDispatcherService self = applicationContext.getBean(CampaignDispatcherService.class);
-
             for (Campaign campaign : campaigns) {
+                String campaignId = campaign.getId();
+                if (!runningBatches.add(campaignId)) {
+                    log.debug("Lote da campanha {} ainda em andamento", campaignId);
+                    continue;
+                }
+
                 try {
-                    self.dispatchCampaignBatch(campaign.getId());
+                    CampaignBatch batch = self().prepareCampaignBatch(campaignId);
+                    if (batch == null) {
+                        runningBatches.remove(campaignId);
+                        continue;
+                    }
+                    enqueue(batch);
                 } catch (Exception e) {
-                    log.error("❌ Erro ao processar campanha {}: {}", campaign.getId(), e.getMessage(), e);
+                    runningBatches.remove(campaignId);
+                    log.error("❌ Erro ao processar campanha {}: {}", campaignId, e.getMessage(), e);
                 }
             }
         } catch (Exception e) {
@@ -77,36 +221,68 @@ public class CampaignDispatcherService {
         }
     }
 
+    /**
+     * ✅ NOVO: Prepara o lote em uma transação curta
+     * @return lote a enviar, ou null se não há o que enviar agora
+     */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void dispatchCampaignBatch(String campaignId) {
-        Campaign campaign = campaignRepository.findById(campaignId).orElse(null);
-        if (campaign == null) return;
+    public CampaignBatch prepareCampaignBatch(String campaignId) {
+        // ✅ NOVO: Reivindica o disparo (e reserva o próximo); 0 linhas = outra réplica já pegou este ciclo
+        LocalDateTime now = LocalDateTime.now();
+        if (campaignRepository.claimDispatch(campaignId, now) == 0) {
+            log.debug("Disparo da campanha {} já reivindicado", campaignId);
+            return null;
+        }
 
-        // Inicializar coleção lazy dentro da transação
-        campaign.getDispatchedChatIds().size();
+        Campaign campaign = campaignRepository.findById(campaignId).orElse(null);
+        if (campaign == null) return null;
 
         log.info("📤 Disparando lote da campanha: {} ({}/{})",
                 campaign.getName(), campaign.getDispatchedChats(), campaign.getTotalChats());
 
-        User user = campaign.getUser();
+        User user = (User) Hibernate.unproxy(campaign.getUser());
+
+        // Obter instância ativa do usuário
+        List<WebInstance> instances = webInstanceRepository.findByUserIdAndStatus(user.getId(), "ACTIVE");
+
+        // ✅ NOVO: Circuito aberto → pula o lote sem montar a lista de elegíveis;
+        // devolve o horário reivindicado para ela voltar a ser avaliada no próximo ciclo
+        if (!instances.isEmpty() && zapiCircuitBreaker.isOpen(instances.get(0))) {
+            log.warn("🔌 Instância Z-API indisponível (circuito aberto). Lote da campanha {} adiado", campaign.getId());
+            campaign.setNextDispatchTime(now);
+            campaignRepository.save(campaign);
+            return null;
+        }
+
+        // ✅ NOVO: Reivindicações sem enfileiramento (restart entre o claim e o commit) voltam para a fila
+        int released = campaignRecipientRepository.releaseStaleClaims(campaignId,
+                LocalDateTime.now().minusMinutes(STALE_CLAIM_MINUTES));
+        if (released > 0) {
+            campaignRepository.decrementDispatchedChats(campaignId, released);
+            log.info("♻️ {} destinatário(s) reivindicado(s) sem envio devolvido(s) para a fila da campanha {}",
+                    released, campaignId);
+        }
+
+        // ✅ NOVO: Pendentes que deixaram de ser elegíveis (chat não confiável, tags editadas) saem da fila
+        int ineligible = campaignRecipientRepository.deleteIneligiblePending(campaignId);
+        if (ineligible > 0) {
+            log.info("🚫 {} destinatário(s) pendente(s) não elegível(is) removido(s) da campanha {}", ineligible, campaignId);
+            campaign.setTotalChats((int) campaignRecipientRepository.countByCampaignId(campaignId));
+        }
 
-        // Obter chats elegíveis que ainda não receberam a mensagem
-        List<Chat> eligibleChats = getEligibleChatsForCampaign(campaign, user);
+        // ✅ MODIFICADO: Destinatários pendentes (materializa os elegíveis novos quando acabam)
+        long pending = countPendingRecipients(campaign, user.getId());
 
-        if (eligibleChats.isEmpty()) {
+        if (pending == 0) {
             log.info("✅ Campanha {} concluída - todos os chats foram processados", campaign.getId());
             campaign.setStatus("CONCLUIDA");
             campaign.setNextDispatchTime(null);
             campaignRepository.save(campaign);
-            return;
+            return null;
         }
 
         // Determinar quantos chats enviar neste lote
-        int chatsToDispatch = Math.min(campaign.getChatsPerDispatch(), eligibleChats.size());
-        List<Chat> batchChats = eligibleChats.subList(0, chatsToDispatch);
-
-        // Obter instância ativa do usuário
-        List<WebInstance> instances = webInstanceRepository.findByUserIdAndStatus(user.getId(), "ACTIVE");
+        int chatsToDispatch = (int) Math.min(campaign.getChatsPerDispatch(), pending);
 
         if (instances.isEmpty()) {
             log.warn("⚠️ Nenhuma instância ativa para o usuário {}. Pausando campanha {}",
@@ -114,197 +290,171 @@ public class CampaignDispatcherService {
             campaign.setStatus("PAUSADA");
             campaign.setNextDispatchTime(null);
             campaignRepository.save(campaign);
-            return;
+            return null;
         }
 
-        WebInstance instance = instances.get(0);
+        // O próximo disparo já foi reservado por claimDispatch; completeCampaignBatch recalcula ao final
 
         // ✅ NOVO: Obter listas de fotos e vídeos da campanha
-        List<Photo> campaignPhotos = getCampaignPhotos(campaign);
-        List<Video> campaignVideos = getCampaignVideos(campaign);
-
-        // Obter proxy para chamar método com nova transação
-        CampaignDispatcherService self = applicationContext.getBean(CampaignDispatcherService.class);
+        List<String> photoUrls = getCampaignPhotos(campaign).stream().map(Photo::getImageUrl).toList();
+        List<String> videoUrls = getCampaignVideos(campaign).stream().map(Video::getVideoUrl).toList();
 
-        // Enviar mensagens + mídias
-        for (Chat chat : batchChats) {
-            boolean messageSentViaZapi = false;
-
-            try {
-                // ✅ CRÍTICO: Marcar chat como disparado em TRANSAÇÃO SEPARADA
-                boolean wasMarked = self.markChatAsDispatched(campaignId, chat.getId());
+        return new CampaignBatch(campaignId, user, instances.get(0), campaign.getMessage(),
+                chatsToDispatch, photoUrls, videoUrls);
+    }
 
-                if (!wasMarked) {
-                    log.warn("⚠️ Chat {} já foi processado anteriormente, pulando...", chat.getId());
-                    continue;
-                }
+    /**
+     * ✅ NOVO: Coloca o lote no fim da lane da instância e acorda a lane se estiver parada
+     */
+    private void enqueue(CampaignBatch batch) {
+        String key = batch.instance().getSuaInstancia() != null ? batch.instance().getSuaInstancia() : "unknown";
+        CampaignLane lane = lanes.computeIfAbsent(key, k -> new CampaignLane());
+
+        boolean wakeUp;
+        synchronized (lane) {
+            lane.batches.addLast(new BatchCursor(batch));
+            wakeUp = !lane.scheduled;
+            lane.scheduled = true;
+        }
+        if (wakeUp) {
+            scheduleLane(lane, 0);
+        }
+    }
 
-                log.info("💬 Enviando conteúdo da campanha para: {} ({})", chat.getName(), chat.getPhone());
+    private void scheduleLane(CampaignLane lane, long delayMs) {
+        dispatcherExecutor.schedule(() -> runLane(lane), delayMs, TimeUnit.MILLISECONDS);
+    }
 
-                // ===== PASSO 1: Enviar mensagem de texto =====
-                try {
-                    // Tentar salvar no banco (ignorar erros de duplicação)
-                    MessageDTO savedMessage = null;
-                    try {
-                        savedMessage = messageService.saveOutgoingMessage(chat.getId(), campaign.getMessage(), user);
-                    } catch (DataIntegrityViolationException e) {
-                        log.warn("⚠️ Erro de duplicação ao salvar mensagem no banco. Continuando...");
-                    }
+    /**
+     * ✅ NOVO: Um passo da lane: envia o próximo chat do lote da frente e devolve o lote
+     * para o fim da fila (round-robin entre as campanhas da mesma instância)
+     */
+    private void runLane(CampaignLane lane) {
+        BatchCursor cursor;
+        synchronized (lane) {
+            cursor = lane.batches.pollFirst();
+            if (cursor == null) {
+                lane.scheduled = false;
+                return;
+            }
+        }
 
-                    // Enviar via Z-API (CRÍTICO)
-                    Map<String, Object> zapiResult = zapiMessageService.sendTextMessageWithRetry(
-                            instance,
-                            chat.getPhone(),
-                            campaign.getMessage(),
-                            false
-                    );
-
-                    if (zapiResult != null && zapiResult.containsKey("messageId")) {
-                        String realMessageId = (String) zapiResult.get("messageId");
-                        messageSentViaZapi = true;
-                        log.info("✅ Mensagem de texto enviada via Z-API - MessageId: {}", realMessageId);
-
-                        // Tentar atualizar no banco (ignorar erros de duplicação)
-                        if (savedMessage != null) {
-                            try {
-                                messageService.updateMessageIdAfterSend(savedMessage.getMessageId(), realMessageId, "SENT");
-                            } catch (DataIntegrityViolationException e) {
-                                log.warn("⚠️ Erro de duplicação ao atualizar messageId. Ignorando.");
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    log.error("❌ Erro ao enviar mensagem de texto: {}", e.getMessage());
-                    if (!messageSentViaZapi) {
-                        throw e; // Re-lançar apenas se não enviou via Z-API
-                    }
-                }
+        boolean hasMore = false;
+        try {
+            hasMore = runStep(cursor.batch, cursor.dispatched++);
+        } catch (Exception e) {
+            log.error("❌ Erro no lote da campanha {}: {}", cursor.batch.campaignId(), e.getMessage(), e);
+        }
 
-                // Delay entre mensagem e fotos
-                Thread.sleep(2000);
-
-                // ===== PASSO 2: Enviar fotos (se houver) =====
-                if (!campaignPhotos.isEmpty()) {
-                    log.info("📷 Enviando {} foto(s) para {}", campaignPhotos.size(), chat.getName());
-                    for (Photo photo : campaignPhotos) {
-                        try {
-                            PhotoDTO savedPhoto = null;
-                            try {
-                                savedPhoto = photoService.saveOutgoingPhoto(
-                                        chat.getId(),
-                                        chat.getPhone(),
-                                        photo.getImageUrl(),
-                                        instance.getId(),
-                                        null
-                                );
-                            } catch (DataIntegrityViolationException e) {
-                                log.warn("⚠️ Erro de duplicação ao salvar foto. Continuando...");
-                            }
+        if (!hasMore) {
+            finishBatch(cursor.batch.campaignId());
+        }
 
-                            Map<String, Object> photoResult = zapiMessageService.sendImageWithRetry(
-                                    instance,
-                                    chat.getPhone(),
-                                    photo.getImageUrl(),
-                                    false
-                            );
-
-                            if (photoResult != null && photoResult.containsKey("messageId")) {
-                                String photoMessageId = (String) photoResult.get("messageId");
-                                log.info("✅ Foto enviada via Z-API - MessageId: {}", photoMessageId);
-
-                                if (savedPhoto != null) {
-                                    try {
-                                        photoService.updatePhotoIdAfterSend(savedPhoto.getMessageId(), photoMessageId, "SENT");
-                                    } catch (DataIntegrityViolationException e) {
-                                        log.warn("⚠️ Erro de duplicação ao atualizar photo messageId. Ignorando.");
-                                    }
-                                }
-                            }
+        synchronized (lane) {
+            if (hasMore) {
+                lane.batches.addLast(cursor);
+            }
+            if (lane.batches.isEmpty()) {
+                lane.scheduled = false;
+                return;
+            }
+        }
+        scheduleLane(lane, sendGapMs);
+    }
 
-                            Thread.sleep(2000);
+    /**
+     * Envio completo para um chat do lote
+     * @return true se o lote ainda tem chats a enviar
+     */
+    private boolean runStep(CampaignBatch batch, int index) {
+        if (index >= batch.size()) {
+            return false;
+        }
 
-                        } catch (Exception e) {
-                            log.error("❌ Erro ao enviar foto: {}", e.getMessage());
-                        }
-                    }
-                }
+        // Campanha pausada/cancelada durante o lote → para aqui
+        if (!"EM_ANDAMENTO".equals(campaignRepository.findStatusById(batch.campaignId()).orElse(null))) {
+            log.info("⏹️ Campanha {} não está mais em andamento. Interrompendo lote", batch.campaignId());
+            return false;
+        }
 
-                // ===== PASSO 3: Enviar vídeos (se houver) =====
-                if (!campaignVideos.isEmpty()) {
-                    log.info("🎥 Enviando {} vídeo(s) para {}", campaignVideos.size(), chat.getName());
-                    for (Video video : campaignVideos) {
-                        try {
-                            VideoDTO savedVideo = null;
-                            try {
-                                savedVideo = videoService.saveOutgoingVideo(
-                                        chat.getId(),
-                                        chat.getPhone(),
-                                        video.getVideoUrl(),
-                                        instance.getId(),
-                                        null
-                                );
-                            } catch (DataIntegrityViolationException e) {
-                                log.warn("⚠️ Erro de duplicação ao salvar vídeo. Continuando...");
-                            }
+        // ✅ NOVO: Circuito abriu no meio do lote → para aqui; os chats restantes ficam para o próximo disparo
+        if (zapiCircuitBreaker.isOpen(batch.instance())) {
+            log.warn("🔌 Circuito da instância Z-API abriu durante o lote da campanha {}. Interrompendo lote",
+                    batch.campaignId());
+            return false;
+        }
 
-                            Map<String, Object> videoResult = zapiMessageService.sendVideoWithRetry(
-                                    instance,
-                                    chat.getPhone(),
-                                    video.getVideoUrl(),
-                                    false
-                            );
-
-                            if (videoResult != null && videoResult.containsKey("messageId")) {
-                                String videoMessageId = (String) videoResult.get("messageId");
-                                log.info("✅ Vídeo enviado via Z-API - MessageId: {}", videoMessageId);
-
-                                if (savedVideo != null) {
-                                    try {
-                                        videoService.updateVideoIdAfterSend(savedVideo.getMessageId(), videoMessageId, "SENT");
-                                    } catch (DataIntegrityViolationException e) {
-                                        log.warn("⚠️ Erro de duplicação ao atualizar video messageId. Ignorando.");
-                                    }
-                                }
-                            }
+        // ✅ NOVO: Reivindica o próximo destinatário (UPDATE ... RETURNING, transação própria)
+        // ✅ MODIFICADO: O mesmo UPDATE incrementa dispatched_chats
+        Optional<ClaimedRecipient> claimed = campaignRecipientRepository.claimNext(batch.campaignId());
+        if (claimed.isEmpty()) {
+            return false;
+        }
 
-                            Thread.sleep(3000);
+        chatDispatchTimer.record(() -> sendToChat(batch, claimed.get()));
+        return index + 1 < batch.size();
+    }
 
-                        } catch (Exception e) {
-                            log.error("❌ Erro ao enviar vídeo: {}", e.getMessage());
-                        }
-                    }
-                }
+    private void finishBatch(String campaignId) {
+        try {
+            self().completeCampaignBatch(campaignId);
+        } catch (Exception e) {
+            log.error("❌ Erro ao finalizar lote da campanha {}: {}", campaignId, e.getMessage(), e);
+        } finally {
+            runningBatches.remove(campaignId);
+        }
+    }
 
-                log.info("✅ Campanha enviada completamente para: {} ({})", chat.getName(), chat.getPhone());
+    /**
+     * ✅ MODIFICADO: Grava texto, fotos e vídeos do chat no outbox; o OutboxRelay faz as chamadas à Z-API
+     * Falha ao gravar → nada foi enfileirado nem enviado, o destinatário volta para a fila
+     */
+    private void sendToChat(CampaignBatch batch, ClaimedRecipient chat) {
+        String campaignId = batch.campaignId();
+        try {
+            self().enqueueCampaignChat(batch, chat.getChatId(), chat.getPhone());
+            log.info("📤 Campanha enfileirada para: {} ({}) - {} foto(s), {} vídeo(s)",
+                    chat.getName(), chat.getPhone(), batch.photoUrls().size(), batch.videoUrls().size());
+        } catch (Exception e) {
+            log.error("❌ Erro ao enfileirar campanha para o chat {}: {}", chat.getChatId(), e.getMessage());
+            campaignRecipientRepository.release(campaignId, chat.getChatId(), e.getMessage(), MAX_SEND_ATTEMPTS);
+        }
+    }
 
-                // Delay entre chats
-                Thread.sleep(2000);
+    /**
+     * ✅ NOVO: Mensagens locais, linhas do outbox e destinatário SENT na mesma transação
+     * Um restart antes do commit não deixa rastro (o destinatário CLAIMED é liberado pela
+     * {@link CampaignRecipientRepository#releaseStaleClaims}); depois do commit o relay garante o envio
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void enqueueCampaignChat(CampaignBatch batch, String chatId, String phone) {
+        outboxService.enqueueChatContent(batch.instance(), chatId, phone, batch.message(), batch.user(),
+                batch.photoUrls(), batch.videoUrls(), OutboundMessageSource.CAMPAIGN,
+                "campaign:" + batch.campaignId() + ":" + chatId, false);
+        campaignRecipientRepository.markSent(batch.campaignId(), chatId);
+    }
 
-            } catch (Exception e) {
-                log.error("❌ Erro CRÍTICO ao processar chat {}: {}", chat.getId(), e.getMessage());
+    /**
+     * ✅ NOVO: Fecha o lote em uma transação curta: conclui a campanha ou agenda o próximo disparo
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void completeCampaignBatch(String campaignId) {
+        Campaign campaign = campaignRepository.findById(campaignId).orElse(null);
+        if (campaign == null) return;
 
-                // ✅ DECISÃO: Apenas desmarcar se NÃO enviou via Z-API
-                if (!messageSentViaZapi) {
-                    log.warn("⚠️ Mensagem NÃO foi enviada. Desmarcando chat {} para nova tentativa.", chat.getId());
-                    self.unmarkChatAsDispatched(campaignId, chat.getId());
-                } else {
-                    log.info("ℹ️ Mensagem foi enviada via Z-API. Mantendo chat {} como disparado.", chat.getId());
-                }
-            }
+        // Pausada/cancelada durante o lote: mantém o que o usuário definiu
+        if (!"EM_ANDAMENTO".equals(campaign.getStatus())) {
+            return;
         }
 
-        // ✅ Recarregar campanha para atualizar status
-        campaign = campaignRepository.findById(campaignId).orElse(campaign);
-        campaign.getDispatchedChatIds().size(); // Inicializar lazy
-
-        // O contador dispatched_chats é automaticamente sincronizado pelo getter
+        // ✅ MODIFICADO: dispatched_chats é mantido pelo claim/release de cada destinatário
         log.info("📊 Status da campanha: {}/{} disparos ({}%)",
                 campaign.getDispatchedChats(),
                 campaign.getTotalChats(),
                 String.format("%.1f", campaign.getProgressPercentage()));
 
-        // Verificar se a campanha foi concluída
-        if (campaign.getDispatchedChats() >= campaign.getTotalChats()) {
+        // Verificar se a campanha foi concluída (sem pendentes e sem novos elegíveis)
+        if (countPendingRecipients(campaign, campaign.getUser().getId()) == 0) {
             log.info("✅ Campanha {} concluída", campaign.getId());
             campaign.setStatus("CONCLUIDA");
             campaign.setNextDispatchTime(null);
@@ -318,46 +468,9 @@ public class CampaignDispatcherService {
         campaignRepository.save(campaign);
     }
 
-    /**
-     * ✅ Marca o chat como disparado em uma transação SEPARADA
-     * Retorna true se conseguiu marcar, false se já estava marcado
-     */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public boolean markChatAsDispatched(String campaignId, String chatId) {
-        Campaign campaign = campaignRepository.findById(campaignId).orElse(null);
-        if (campaign == null) return false;
-
-        // Inicializar coleção lazy
-        campaign.getDispatchedChatIds().size();
-
-        // Verificar se já foi processado
-        if (campaign.getDispatchedChatIds().contains(chatId)) {
-            log.debug("Chat {} já está na lista de disparados", chatId);
-            return false;
-        }
-
-        // Adicionar à lista
-        campaign.getDispatchedChatIds().add(chatId);
-        campaignRepository.saveAndFlush(campaign);
-
-        log.info("🔒 Chat {} adicionado à lista de disparados (transação commitada)", chatId);
-        return true;
-    }
-
-    /**
-     * ✅ Remove o chat da lista de disparados em caso de erro ANTES do envio
-     */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void unmarkChatAsDispatched(String campaignId, String chatId) {
-        Campaign campaign = campaignRepository.findById(campaignId).orElse(null);
-        if (campaign == null) return;
-
-        campaign.getDispatchedChatIds().size();
-
-        if (campaign.getDispatchedChatIds().remove(chatId)) {
-            campaignRepository.saveAndFlush(campaign);
-            log.warn("🔓 Chat {} removido da lista de disparados devido a erro", chatId);
-        }
+    // Obter proxy do próprio serviço para garantir que @Transactional funcione
+    private CampaignDispatcherService self() {
+        return applicationContext.getBean(CampaignDispatcherService.class);
     }
 
     // ✅ NOVO: Obter fotos da galeria para a campanha
@@ -380,24 +493,32 @@ public class CampaignDispatcherService {
         return videoRepository.findAllById(videoIds);
     }
 
-    private List<Chat> getEligibleChatsForCampaign(Campaign campaign, User user) {
-        List<Chat> allEligibleChats;
+    /**
+     * ✅ NOVO: Pendentes da campanha; se acabaram, materializa os chats elegíveis que ainda não são
+     * destinatários (anti-join no banco) e atualiza o total
+     */
+    private long countPendingRecipients(Campaign campaign, String userId) {
+        long pending = campaignRecipientRepository.countByCampaignIdAndStatus(campaign.getId(), CampaignRecipientStatus.PENDING);
+        if (pending > 0) {
+            return pending;
+        }
 
+        int added;
         if (campaign.getAllTrustworthy()) {
             // Todos os chats confiáveis do usuário
-            allEligibleChats = chatRepository.findByWebInstance_UserAndIsTrustworthyTrue(user);
+            added = campaignRecipientRepository.materializeAllTrustworthy(campaign.getId(), userId);
         } else if (campaign.getTagIds() != null && !campaign.getTagIds().isEmpty()) {
             // Chats com tags específicas e is_trustworthy=true
             List<String> tagIds = Arrays.asList(campaign.getTagIds().split(","));
-            allEligibleChats = chatRepository.findByWebInstance_UserAndTagsIdInAndIsTrustworthyTrue(user, tagIds);
+            added = campaignRecipientRepository.materializeByTags(campaign.getId(), userId, tagIds);
         } else {
-            allEligibleChats = new ArrayList<>();
+            added = 0;
         }
 
-        // Filtrar chats que já receberam a mensagem
-        Set<String> dispatchedIds = campaign.getDispatchedChatIds();
-        return allEligibleChats.stream()
-                .filter(chat -> !dispatchedIds.contains(chat.getId()))
-                .collect(Collectors.toList());
+        if (added > 0) {
+            log.info("👥 {} destinatário(s) novo(s) na campanha {}", added, campaign.getId());
+            campaign.setTotalChats((int) campaignRecipientRepository.countByCampaignId(campaign.getId()));
+        }
+        return added;
     }
-}
\ No newline at end of file
+}
@@ -3,7 +3,6 @@ package com.example.loginauthapi.services;
 import com.example.loginauthapi.dto.CampaignDTO;
 import com.example.loginauthapi.dto.CampaignRequestDTO;
 import com.example.loginauthapi.entities.Campaign;
-import com.example.loginauthapi.entities.Chat;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.repositories.CampaignRepository;
 import com.example.loginauthapi.repositories.ChatRepository;
@@ -14,7 +13,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -57,8 +55,7 @@ public class CampaignService {
         }
 
         // Calcular total de chats elegíveis
-        List<Chat> eligibleChats = getEligibleChats(user, request.tagIds(), campaign.getAllTrustworthy());
-        campaign.setTotalChats(eligibleChats.size());
+        campaign.setTotalChats(countEligibleChats(user, request.tagIds(), campaign.getAllTrustworthy()));
         campaign.setDispatchedChats(0);
 
         Campaign saved = campaignRepository.save(campaign);
@@ -134,8 +131,7 @@ public class CampaignService {
 
         // Recalcular total de chats se necessário
         if (!campaign.getStatus().equals("EM_ANDAMENTO")) {
-            List<Chat> eligibleChats = getEligibleChats(user, request.tagIds(), campaign.getAllTrustworthy());
-            campaign.setTotalChats(eligibleChats.size());
+            campaign.setTotalChats(countEligibleChats(user, request.tagIds(), campaign.getAllTrustworthy()));
         }
 
         Campaign saved = campaignRepository.save(campaign);
@@ -228,16 +224,16 @@ public class CampaignService {
         return convertToDTO(saved);
     }
 
-    // Método auxiliar para obter chats elegíveis
-    private List<Chat> getEligibleChats(User user, List<String> tagIds, Boolean allTrustworthy) {
+    // ✅ MODIFICADO: Método auxiliar para contar chats elegíveis (COUNT no banco, sem carregar os chats)
+    private int countEligibleChats(User user, List<String> tagIds, Boolean allTrustworthy) {
         if (allTrustworthy != null && allTrustworthy) {
             // Todos os chats confiáveis do usuário
-            return chatRepository.findByWebInstance_UserAndIsTrustworthyTrue(user);
+            return (int) chatRepository.countTrustworthyByUser(user);
         } else if (tagIds != null && !tagIds.isEmpty()) {
             // Chats com tags específicas e is_trustworthy=true
-            return chatRepository.findByWebInstance_UserAndTagsIdInAndIsTrustworthyTrue(user, tagIds);
+            return (int) chatRepository.countTrustworthyByUserAndTags(user, tagIds);
         } else {
-            return new ArrayList<>();
+            return 0;
         }
     }
 
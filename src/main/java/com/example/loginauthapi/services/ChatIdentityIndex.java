@@ -0,0 +1,179 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.entities.Chat;
+import com.example.loginauthapi.repositories.ChatRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * ✅ NOVO: Índice em memória da identidade dos chats por instância
+ *
+ * Mapeia phone → chatId e chatLid → chatId para cada WebInstance, evitando as buscas
+ * por chat_lid/phone a cada webhook.
+ *
+ * ✅ MODIFICADO: Cache Caffeine limitado (chat-identity.max-size), e um acerto não lê o banco:
+ * devolve uma referência ao chat (getReferenceById), carregada só se o chamador usar os campos.
+ * A entrada é validada apenas quando a escrita falha: se a transação que usou o acerto sofrer
+ * rollback (chat removido por outra réplica, FK inválida), a entrada é descartada e a próxima
+ * tentativa volta para o banco.
+ *
+ * Quem altera phone/chatLid ou funde chats (revelação de LID) deve chamar
+ * {@link #record(String, Chat)} / {@link #forget(String, Chat)} para manter o índice coerente.
+ */
+@Service
+@Slf4j
+public class ChatIdentityIndex {
+
+    private final ChatRepository chatRepository;
+
+    private final Cache<String, String> byPhone;
+    private final Cache<String, String> byChatLid;
+
+    public ChatIdentityIndex(ChatRepository chatRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${chat-identity.max-size:100000}") long maxSize) {
+        this.chatRepository = chatRepository;
+        this.byPhone = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.byChatLid = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byPhone, "chat.identity.phone");
+        CaffeineCacheMetrics.monitor(meterRegistry, byChatLid, "chat.identity.lid");
+    }
+
+    /**
+     * Buscar chat por chatLid (índice → referência, ou banco em caso de miss)
+     */
+    public Optional<Chat> findByChatLid(String webInstanceId, String chatLid) {
+        String key = key(webInstanceId, chatLid);
+        Optional<Chat> cached = fromIndex(byChatLid, key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        Optional<Chat> chat = chatRepository.findByWebInstanceIdAndChatLid(webInstanceId, chatLid);
+        chat.ifPresent(c -> record(webInstanceId, c));
+        return chat;
+    }
+
+    /**
+     * Buscar chat por phone (índice → referência, ou banco em caso de miss)
+     */
+    public Optional<Chat> findByPhone(String webInstanceId, String phone) {
+        String key = key(webInstanceId, phone);
+        Optional<Chat> cached = fromIndex(byPhone, key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        Optional<Chat> chat = chatRepository.findByWebInstanceIdAndPhone(webInstanceId, phone);
+        chat.ifPresent(c -> record(webInstanceId, c));
+        return chat;
+    }
+
+    /**
+     * Registrar (ou atualizar) a identidade atual de um chat
+     */
+    public void record(String webInstanceId, Chat chat) {
+        if (chat.getId() == null) {
+            return;
+        }
+        if (chat.getPhone() != null) {
+            byPhone.put(key(webInstanceId, chat.getPhone()), chat.getId());
+        }
+        if (chat.getChatLid() != null) {
+            byChatLid.put(key(webInstanceId, chat.getChatLid()), chat.getId());
+        }
+    }
+
+    /**
+     * Remover um phone que deixou de pertencer ao chat (ex: phone @lid substituído pelo número real)
+     */
+    public void forgetPhone(String webInstanceId, String phone, String chatId) {
+        if (phone != null) {
+            byPhone.asMap().remove(key(webInstanceId, phone), chatId);
+        }
+    }
+
+    /**
+     * Remover todas as entradas de um chat (ex: chat temporário fundido e deletado)
+     */
+    public void forget(String webInstanceId, Chat chat) {
+        if (chat.getPhone() != null) {
+            byPhone.asMap().remove(key(webInstanceId, chat.getPhone()), chat.getId());
+        }
+        if (chat.getChatLid() != null) {
+            byChatLid.asMap().remove(key(webInstanceId, chat.getChatLid()), chat.getId());
+        }
+    }
+
+    /**
+     * Estatísticas do índice: taxa de acerto e tamanho residente
+     */
+    public Map<String, Object> getStats() {
+        CacheStats phoneStats = byPhone.stats();
+        CacheStats lidStats = byChatLid.stats();
+        long hitCount = phoneStats.hitCount() + lidStats.hitCount();
+        long missCount = phoneStats.missCount() + lidStats.missCount();
+        long total = hitCount + missCount;
+        long phoneEntries = byPhone.estimatedSize();
+        long lidEntries = byChatLid.estimatedSize();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("evictions", phoneStats.evictionCount() + lidStats.evictionCount());
+        stats.put("phoneEntries", phoneEntries);
+        stats.put("chatLidEntries", lidEntries);
+        stats.put("residentSize", phoneEntries + lidEntries);
+        return stats;
+    }
+
+    /**
+     * Acerto no índice → referência ao chat, sem SELECT
+     * Fora de transação a referência não poderia ser carregada depois, então o acerto é ignorado
+     */
+    private Optional<Chat> fromIndex(Cache<String, String> cache, String key) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Optional.empty();
+        }
+
+        String chatId = cache.getIfPresent(key);
+        if (chatId == null) {
+            return Optional.empty();
+        }
+
+        // Escrita falhou com a entrada em uso → pode estar desatualizada; a próxima tentativa vai ao banco
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK && cache.asMap().remove(key, chatId)) {
+                    log.debug("🔄 Entrada do índice de chats descartada após rollback - Chave: {}", key);
+                }
+            }
+        });
+        return Optional.of(chatRepository.getReferenceById(chatId));
+    }
+
+    private static String key(String webInstanceId, String value) {
+        return webInstanceId + "|" + value;
+    }
+}
@@ -6,16 +6,10 @@ import com.example.loginauthapi.dto.TagDTO;
 import com.example.loginauthapi.dto.zapi.ZapiChatDetailResponseDTO;
 import com.example.loginauthapi.dto.zapi.ZapiChatItemDTO;
 import com.example.loginauthapi.entities.Chat;
-import com.example.loginauthapi.entities.Message;
 import com.example.loginauthapi.entities.Tag;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.entities.WebInstance;
 import com.example.loginauthapi.repositories.ChatRepository;
-import com.example.loginauthapi.repositories.MessageRepository;
-import com.example.loginauthapi.repositories.AudioRepository;
-import com.example.loginauthapi.repositories.PhotoRepository;
-import com.example.loginauthapi.repositories.VideoRepository;
-import com.example.loginauthapi.repositories.DocumentRepository;
 import com.example.loginauthapi.repositories.TagRepository;
 import com.example.loginauthapi.repositories.WebInstanceRepository;
 import com.example.loginauthapi.services.zapi.ZapiChatService;
@@ -27,7 +21,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,11 +40,6 @@ public class ChatService {
     private final WebInstanceRepository webInstanceRepository;
     private final ZapiChatService zapiChatService;
     private final TagRepository tagRepository;
-    private final MessageRepository messageRepository;
-    private final AudioRepository audioRepository;
-    private final PhotoRepository photoRepository;
-    private final DocumentRepository documentRepository;
-    private final VideoRepository videoRepository;
 
     // Armazenar progresso do carregamento por userId
     private final ConcurrentHashMap<String, LoadingProgress> loadingProgressMap = new ConcurrentHashMap<>();
@@ -98,129 +90,6 @@ public class ChatService {
         return loadingProgressMap.get(userId);
     }
 
-    /**
-     * ✅ MODIFICADO: Sincronizar lastMessageContent apenas de chats ATIVOS
-     * Busca a última mensagem de cada chat ativo (texto, áudio, foto, vídeo ou documento) e atualiza o campo lastMessageContent
-     */
-    @Transactional
-    public void syncLastMessageContent(String webInstanceId) {
-        log.info("🔄 Iniciando sincronização de lastMessageContent para instância {}", webInstanceId);
-
-        // ✅ BUSCAR APENAS CHATS ATIVOS
-        List<Chat> chats = chatRepository.findByWebInstanceIdAndActiveInZapiTrueOrderByLastMessageTimeDesc(webInstanceId);
-        int updated = 0;
-
-        for (Chat chat : chats) {
-            try {
-                // ✅ BUSCAR ÚLTIMA MENSAGEM DE TEXTO
-                Optional<Message> lastMessage = messageRepository.findTopByChatIdOrderByTimestampDesc(chat.getId());
-
-                // ✅ BUSCAR ÚLTIMO ÁUDIO
-                Optional<com.example.loginauthapi.entities.Audio> lastAudio =
-                        audioRepository.findTopByChatIdOrderByTimestampDesc(chat.getId());
-
-                // ✅ BUSCAR ÚLTIMA FOTO
-                Optional<com.example.loginauthapi.entities.Photo> lastPhoto =
-                        photoRepository.findTopByChatIdOrderByTimestampDesc(chat.getId());
-
-                // ✅ BUSCAR ÚLTIMO VÍDEO
-                Optional<com.example.loginauthapi.entities.Video> lastVideo =
-                        videoRepository.findTopByChatIdOrderByTimestampDesc(chat.getId());
-
-                // Determinar qual é mais recente (mensagem de texto, áudio, foto, vídeo ou documento)
-                Optional<com.example.loginauthapi.entities.Document> lastDocument =
-                        documentRepository.findTopByChatIdOrderByTimestampDesc(chat.getId());
-
-                LocalDateTime lastMessageTime = lastMessage.map(Message::getTimestamp).orElse(null);
-                LocalDateTime lastAudioTime = lastAudio.map(com.example.loginauthapi.entities.Audio::getTimestamp).orElse(null);
-                LocalDateTime lastPhotoTime = lastPhoto.map(com.example.loginauthapi.entities.Photo::getTimestamp).orElse(null);
-                LocalDateTime lastVideoTime = lastVideo.map(com.example.loginauthapi.entities.Video::getTimestamp).orElse(null);
-
-                LocalDateTime lastDocumentTime = lastDocument.map(com.example.loginauthapi.entities.Document::getTimestamp).orElse(null);
-                String content = null;
-
-                // Comparar timestamps e usar o mais recente
-                LocalDateTime mostRecent = null;
-                String mostRecentType = null;
-
-                if (lastMessageTime != null) {
-                    mostRecent = lastMessageTime;
-                    mostRecentType = "message";
-                }
-
-                if (lastAudioTime != null && (mostRecent == null || lastAudioTime.isAfter(mostRecent))) {
-                    mostRecent = lastAudioTime;
-                    mostRecentType = "audio";
-                }
-
-                if (lastPhotoTime != null && (mostRecent == null || lastPhotoTime.isAfter(mostRecent))) {
-                    mostRecent = lastPhotoTime;
-                    mostRecentType = "photo";
-                }
-
-                if (lastVideoTime != null && (mostRecent == null || lastVideoTime.isAfter(mostRecent))) {
-                    mostRecent = lastVideoTime;
-                    mostRecentType = "video";
-                }
-
-                if (lastDocumentTime != null && (mostRecent == null || lastDocumentTime.isAfter(mostRecent))) {
-                    mostRecent = lastDocumentTime;
-                    mostRecentType = "document";
-                }
-                // Definir conteúdo baseado no tipo mais recente
-                if ("document".equals(mostRecentType)) {
-                    content = "Documento 📄";
-                } else if ("video".equals(mostRecentType)) {
-                    content = "Vídeo 🎥";
-                } else if ("photo".equals(mostRecentType)) {
-                    content = "Foto 📸";
-                } else if ("audio".equals(mostRecentType)) {
-                    content = "Mensagem de Áudio";
-                } else if ("message".equals(mostRecentType)) {
-                    Message msg = lastMessage.get();
-                    content = "audio".equals(msg.getType()) ? "🎤 Áudio" : msg.getContent();
-                }
-
-                if (content != null) {
-                    // Truncar mensagem
-                    String truncated = truncateMessage(content, 50);
-
-                    // Atualizar apenas se diferente
-                    if (!truncated.equals(chat.getLastMessageContent())) {
-                        chat.setLastMessageContent(truncated);
-                        chatRepository.save(chat);
-                        updated++;
-                        log.debug("✅ Chat {} atualizado: '{}'", chat.getPhone(), truncated);
-                    }
-                } else {
-                    // Sem mensagens, garantir que está null
-                    if (chat.getLastMessageContent() != null) {
-                        chat.setLastMessageContent(null);
-                        chatRepository.save(chat);
-                        updated++;
-                        log.debug("ℹ️ Chat {} sem mensagens", chat.getPhone());
-                    }
-                }
-            } catch (Exception e) {
-                log.error("❌ Erro ao sincronizar lastMessageContent do chat {}: {}",
-                        chat.getPhone(), e.getMessage());
-            }
-        }
-
-        log.info("✅ Sincronização concluída: {} chats ativos atualizados de {} chats totais",
-                updated, chats.size());
-    }
-
-
-    /**
-     * Truncar mensagem para exibição
-     */
-    private String truncateMessage(String message, int maxLength) {
-        if (message == null) return "";
-        if (message.length() <= maxLength) return message;
-        return message.substring(0, maxLength) + "...";
-    }
-
     /**
      * ✅ MODIFICADO: Sincronizar chats com Z-API e controlar active_in_zapi
      * Este é o método principal que implementa a funcionalidade solicitada
@@ -255,8 +124,7 @@ public class ChatService {
             List<Chat> syncedChats = syncChatsWithDatabase(activeInstance, zapiChats);
             log.info("✅ {} chats sincronizados e marcados como ativos", syncedChats.size());
 
-            // ✅ PASSO 4: SINCRONIZAR lastMessageContent de todos os chats ATIVOS
-            syncLastMessageContent(activeInstance.getId());
+            // ✅ PASSO 4: lastMessageContent já é mantido pelo ChatSummaryService nas escritas
 
             // Passar o progress para sincronização de fotos
             syncProfileThumbnailsWithProgress(activeInstance, syncedChats, progress);
@@ -266,7 +134,7 @@ public class ChatService {
             List<Chat> updatedChats = chatRepository.findByWebInstanceIdAndActiveInZapiTrueOrderByLastMessageTimeDesc(activeInstance.getId());
             log.info("✅ {} chats ativos carregados para exibição", updatedChats.size());
 
-            return buildSuccessResponse(updatedChats);
+            return buildSuccessResponse(updatedChats, activeInstance.getId());
 
         } catch (Exception e) {
             log.error("❌ Erro ao sincronizar chats para usuário {}: {}", user.getId(), e.getMessage(), e);
@@ -344,7 +212,7 @@ public class ChatService {
 
                         // ✅ IMPORTANTE: lastMessageContent não vem do Z-API
                         // Manter valor existente ou deixar null para novos chats
-                        // O campo será atualizado pelo método syncLastMessageContent()
+                        // O campo é mantido pelo ChatSummaryService ao salvar mensagens
 
                         // Definir coluna apenas para novos chats
                         if (chat.getId() == null) {
@@ -407,14 +275,12 @@ public class ChatService {
         try {
             WebInstance activeInstance = getActiveWebInstance(user);
 
-            // ✅ SINCRONIZAR lastMessageContent antes de retornar
-            syncLastMessageContent(activeInstance.getId());
-
+            // ✅ Resumo da última mensagem já está na própria tabela chats (ChatSummaryService)
             // ✅ BUSCAR APENAS CHATS ATIVOS
             List<Chat> chats = chatRepository.findByWebInstanceIdAndActiveInZapiTrueOrderByLastMessageTimeDesc(activeInstance.getId());
             log.info("📊 Carregados {} chats ativos do banco de dados", chats.size());
 
-            return buildSuccessResponse(chats);
+            return buildSuccessResponse(chats, activeInstance.getId());
         } catch (Exception e) {
             log.error("❌ Erro ao buscar chats do banco: {}", e.getMessage());
             return buildErrorResponse(e.getMessage());
@@ -576,9 +442,22 @@ public class ChatService {
     // MÉTODOS DE CONSTRUÇÃO DE RESPOSTAS
     // ============================================
 
-    private ChatsListResponseDTO buildSuccessResponse(List<Chat> chats) {
+    private ChatsListResponseDTO buildSuccessResponse(List<Chat> chats, String webInstanceId) {
+        // ✅ Tags de todos os chats em uma única consulta (evita um SELECT por chat em chat.getTags())
+        Map<String, List<TagDTO>> tagsByChatId = new HashMap<>();
+        for (ChatRepository.ChatTagRow row : chatRepository.findActiveChatTagsByWebInstanceId(webInstanceId)) {
+            tagsByChatId.computeIfAbsent(row.getChatId(), id -> new ArrayList<>())
+                    .add(TagDTO.builder()
+                            .id(row.getTagId())
+                            .name(row.getName())
+                            .color(row.getColor())
+                            .criadoEm(row.getCriadoEm())
+                            .atualizadoEm(row.getAtualizadoEm())
+                            .build());
+        }
+
         List<ChatInfoResponseDTO> chatDtos = chats.stream()
-                .map(this::convertToDto)
+                .map(chat -> convertToDto(chat, tagsByChatId.getOrDefault(chat.getId(), List.of())))
                 .collect(Collectors.toList());
 
         long unreadCount = chats.stream()
@@ -615,26 +494,17 @@ public class ChatService {
     }
 
     /**
-     * Converter Chat para ChatInfoResponseDTO com lista de tags
+     * Converter Chat para ChatInfoResponseDTO com lista de tags (já carregadas pelo chamador)
      */
-    private ChatInfoResponseDTO convertToDto(Chat chat) {
-        // Converter tags para TagDTO
-        List<TagDTO> tagDtos = chat.getTags().stream()
-                .map(tag -> TagDTO.builder()
-                        .id(tag.getId())
-                        .name(tag.getName())
-                        .color(tag.getColor())
-                        .criadoEm(tag.getCriadoEm())
-                        .atualizadoEm(tag.getAtualizadoEm())
-                        .build())
-                .collect(Collectors.toList());
-
+    private ChatInfoResponseDTO convertToDto(Chat chat, List<TagDTO> tagDtos) {
         return ChatInfoResponseDTO.builder()
                 .id(chat.getId())
                 .name(chat.getName())
                 .phone(chat.getPhone())
                 .lastMessageTime(chat.getLastMessageTime())
                 .lastMessageContent(chat.getLastMessageContent())
+                .lastMessageType(chat.getLastMessageType())
+                .lastMessageFromMe(chat.getLastMessageFromMe())
                 .isGroup(chat.getIsGroup())
                 .unread(chat.getUnread())
                 .profileThumbnail(chat.getProfileThumbnail())
@@ -0,0 +1,76 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.repositories.ChatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * ✅ NOVO: Preenchimento único do resumo da última mensagem dos chats existentes
+ *
+ * Percorre, em lotes e em segundo plano, os chats com last_message_type NULL
+ * (criados antes da V39) e recalcula o resumo a partir das tabelas de conteúdo.
+ * Depois da primeira execução não há mais linhas pendentes e o job termina na primeira consulta.
+ */
+@Component
+@Slf4j
+public class ChatSummaryBackfillJob {
+
+    private final ChatRepository chatRepository;
+    private final ChatSummaryService chatSummaryService;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public ChatSummaryBackfillJob(ChatRepository chatRepository,
+                                  ChatSummaryService chatSummaryService,
+                                  @Value("${chat.summary.backfill.enabled:true}") boolean enabled,
+                                  @Value("${chat.summary.backfill.batch-size:500}") int batchSize) {
+        this.chatRepository = chatRepository;
+        this.chatSummaryService = chatSummaryService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+
+        int processed = 0;
+        int failed = 0;
+        String afterId = "";
+
+        while (true) {
+            List<String> chatIds = chatRepository.findIdsWithoutLastMessageSummary(afterId, PageRequest.of(0, batchSize));
+            if (chatIds.isEmpty()) {
+                break;
+            }
+
+            for (String chatId : chatIds) {
+                try {
+                    chatSummaryService.rebuild(chatId);
+                    processed++;
+                } catch (Exception e) {
+                    failed++;
+                    log.error("❌ Erro ao preencher resumo do chat {}: {}", chatId, e.getMessage());
+                }
+            }
+
+            // Keyset por id: chats com erro ficam para a próxima inicialização sem travar o job
+            afterId = chatIds.get(chatIds.size() - 1);
+            log.info("🔄 Backfill do resumo de chats: {} processados até agora", processed);
+        }
+
+        if (processed > 0 || failed > 0) {
+            log.info("✅ Backfill do resumo de chats concluído - Processados: {}, Falhas: {}", processed, failed);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.entities.*;
+import com.example.loginauthapi.repositories.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * ✅ NOVO: Resumo da última mensagem do chat (conteúdo, tipo, horário e fromMe)
+ *
+ * Atualizado pelos fluxos de escrita (MessageService, AudioService, PhotoService,
+ * VideoService e DocumentService) na mesma transação que grava o conteúdo,
+ * para que a listagem de chats leia apenas a tabela chats.
+ *
+ * Mensagens mais antigas que o resumo atual (webhook atrasado/reentregue) não o sobrescrevem.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatSummaryService {
+
+    public static final String TYPE_TEXT = "text";
+    public static final String TYPE_AUDIO = "audio";
+    public static final String TYPE_IMAGE = "image";
+    public static final String TYPE_VIDEO = "video";
+    public static final String TYPE_DOCUMENT = "document";
+    public static final String TYPE_NONE = "none";
+
+    private static final int MAX_CONTENT_LENGTH = 50;
+
+    private final ChatRepository chatRepository;
+    private final MessageRepository messageRepository;
+    private final AudioRepository audioRepository;
+    private final PhotoRepository photoRepository;
+    private final VideoRepository videoRepository;
+    private final DocumentRepository documentRepository;
+
+    public void recordMessage(Message message) {
+        String content = "audio".equals(message.getType()) ? "🎤 Áudio" : message.getContent();
+        record(message.getChat(), TYPE_TEXT, content, message.getTimestamp(), message.getFromMe());
+    }
+
+    public void recordAudio(Audio audio) {
+        record(audio.getChat(), TYPE_AUDIO, "Mensagem de Áudio", audio.getTimestamp(), audio.getFromMe());
+    }
+
+    // Mesmos rótulos da listagem antiga (sem legenda/nome do arquivo)
+    public void recordPhoto(Photo photo) {
+        record(photo.getChat(), TYPE_IMAGE, "Foto 📸", photo.getTimestamp(), photo.getFromMe());
+    }
+
+    public void recordVideo(Video video) {
+        record(video.getChat(), TYPE_VIDEO, "Vídeo 🎥", video.getTimestamp(), video.getFromMe());
+    }
+
+    public void recordDocument(Document document) {
+        record(document.getChat(), TYPE_DOCUMENT, "Documento 📄", document.getTimestamp(), document.getFromMe());
+    }
+
+    /**
+     * Aplicar a mensagem ao resumo do chat, se ela for a mais recente
+     */
+    private void record(Chat chat, String type, String content, LocalDateTime timestamp, Boolean fromMe) {
+        if (chat == null) {
+            return;
+        }
+
+        LocalDateTime time = timestamp != null ? timestamp : LocalDateTime.now();
+
+        // O resumo só retrocede se ainda não foi calculado (lastMessageTime pode vir da sincronização com a Z-API)
+        if (chat.getLastMessageType() != null && chat.getLastMessageTime() != null
+                && time.isBefore(chat.getLastMessageTime())) {
+            log.debug("ℹ️ Mensagem mais antiga que o resumo do chat {}, ignorando", chat.getId());
+            return;
+        }
+
+        chat.setLastMessageContent(truncate(content));
+        chat.setLastMessageType(type);
+        chat.setLastMessageTime(time);
+        chat.setLastMessageFromMe(fromMe);
+        chatRepository.save(chat);
+    }
+
+    /**
+     * Recalcular o resumo a partir das tabelas de conteúdo (usado pelo backfill)
+     * ✅ MODIFICADO: Também chamado ao excluir/editar conteúdo, que pode ter sido a última mensagem do chat
+     */
+    @Transactional
+    public void rebuild(String chatId) {
+        Chat chat = chatRepository.findById(chatId).orElse(null);
+        if (chat == null) {
+            return;
+        }
+
+        Optional<Message> message = messageRepository.findTopByChatIdOrderByTimestampDescIdDesc(chatId);
+        Optional<Audio> audio = audioRepository.findTopByChatIdOrderByTimestampDescIdDesc(chatId);
+        Optional<Photo> photo = photoRepository.findTopByChatIdAndDeletedFromChatFalseOrderByTimestampDescIdDesc(chatId);
+        Optional<Video> video = videoRepository.findTopByChatIdAndDeletedFromChatFalseOrderByTimestampDescIdDesc(chatId);
+        Optional<Document> document = documentRepository.findTopByChatIdOrderByTimestampDescIdDesc(chatId);
+
+        // Descobrir qual fonte tem a mensagem mais recente
+        LocalDateTime newest = null;
+        Runnable apply = null;
+
+        LocalDateTime t = message.map(Message::getTimestamp).orElse(null);
+        if (t != null) {
+            newest = t;
+            apply = () -> recordMessage(message.get());
+        }
+        t = audio.map(Audio::getTimestamp).orElse(null);
+        if (t != null && (newest == null || t.isAfter(newest))) {
+            newest = t;
+            apply = () -> recordAudio(audio.get());
+        }
+        t = photo.map(Photo::getTimestamp).orElse(null);
+        if (t != null && (newest == null || t.isAfter(newest))) {
+            newest = t;
+            apply = () -> recordPhoto(photo.get());
+        }
+        t = video.map(Video::getTimestamp).orElse(null);
+        if (t != null && (newest == null || t.isAfter(newest))) {
+            newest = t;
+            apply = () -> recordVideo(video.get());
+        }
+        t = document.map(Document::getTimestamp).orElse(null);
+        if (t != null && (newest == null || t.isAfter(newest))) {
+            apply = () -> recordDocument(document.get());
+        }
+
+        // Recalcular do zero: o resumo antigo não deve bloquear a mensagem mais recente
+        chat.setLastMessageType(null);
+
+        if (apply != null) {
+            apply.run();
+        } else {
+            chat.setLastMessageContent(null);
+            chat.setLastMessageType(TYPE_NONE);
+            chat.setLastMessageFromMe(null);
+            chatRepository.save(chat);
+        }
+    }
+
+    private String truncate(String content) {
+        if (content == null) return "";
+        if (content.length() <= MAX_CONTENT_LENGTH) return content;
+        return content.substring(0, MAX_CONTENT_LENGTH) + "...";
+    }
+}
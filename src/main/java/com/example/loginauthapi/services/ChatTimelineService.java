@@ -0,0 +1,217 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.dto.ChatTimelinePageDTO;
+import com.example.loginauthapi.dto.ReplyDTO;
+import com.example.loginauthapi.dto.TimelineItemDTO;
+import com.example.loginauthapi.entities.*;
+import com.example.loginauthapi.repositories.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * ✅ NOVO: Timeline paginada de um chat
+ *
+ * Junta mensagens, áudios, fotos, vídeos e documentos numa única lista ordenada
+ * por (timestamp, id), usando paginação por cursor (keyset):
+ * - Cada fonte busca no máximo size + 1 linhas anteriores ao cursor via índice de chat/timestamp
+ * - O merge acontece no servidor e só a página pedida é convertida em DTO
+ * - Replies são anexados aos itens da página (sem carregar todos os replies do chat)
+ *
+ * O cursor é opaco para o cliente: Base64 de "timestamp|id" do item mais antigo da página.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatTimelineService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final Comparator<TimelineEntry> NEWEST_FIRST =
+            Comparator.comparing(TimelineEntry::timestamp)
+                    .thenComparing(TimelineEntry::id)
+                    .reversed();
+
+    private final ChatRepository chatRepository;
+    private final MessageRepository messageRepository;
+    private final AudioRepository audioRepository;
+    private final PhotoRepository photoRepository;
+    private final VideoRepository videoRepository;
+    private final DocumentRepository documentRepository;
+    private final ReplyRepository replyRepository;
+    private final MessageService messageService;
+    private final AudioService audioService;
+    private final PhotoService photoService;
+    private final VideoService videoService;
+    private final DocumentService documentService;
+    private final ReplyService replyService;
+
+    /**
+     * Linha da timeline antes da conversão para DTO
+     */
+    private record TimelineEntry(String type, String id, String messageId, Boolean fromMe,
+                                 LocalDateTime timestamp, Object entity) {
+    }
+
+    /**
+     * Posição de corte da página: itens estritamente anteriores a (timestamp, id)
+     */
+    private record Cursor(LocalDateTime timestamp, String id) {
+    }
+
+    /**
+     * Buscar uma página da timeline do chat, da mais recente para a mais antiga
+     *
+     * @param before cursor retornado pela página anterior (null = página mais recente)
+     * @param size   quantidade de itens por página (limitado a {@link #MAX_PAGE_SIZE})
+     */
+    @Transactional(readOnly = true)
+    public ChatTimelinePageDTO getTimeline(String chatId, String before, Integer size, User user) {
+        Chat chat = chatRepository.findById(chatId)
+                .orElseThrow(() -> new RuntimeException("Chat não encontrado"));
+
+        if (!chat.getWebInstance().getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Chat não pertence ao usuário");
+        }
+
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        Cursor cursor = decodeCursor(before);
+
+        // Uma linha a mais por fonte para saber se ainda há itens depois desta página
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<TimelineEntry> merged = new ArrayList<>();
+        merged.addAll(toEntries("text",
+                cursor == null
+                        ? messageRepository.findTimelineFirstPage(chatId, limit)
+                        : messageRepository.findTimelinePageBefore(chatId, cursor.timestamp(), cursor.id(), limit),
+                m -> new TimelineEntry("text", m.getId(), m.getMessageId(), m.getFromMe(), m.getTimestamp(), m)));
+        merged.addAll(toEntries("audio",
+                cursor == null
+                        ? audioRepository.findTimelineFirstPage(chatId, limit)
+                        : audioRepository.findTimelinePageBefore(chatId, cursor.timestamp(), cursor.id(), limit),
+                a -> new TimelineEntry("audio", a.getId(), a.getMessageId(), a.getFromMe(), a.getTimestamp(), a)));
+        merged.addAll(toEntries("image",
+                cursor == null
+                        ? photoRepository.findTimelineFirstPage(chatId, limit)
+                        : photoRepository.findTimelinePageBefore(chatId, cursor.timestamp(), cursor.id(), limit),
+                p -> new TimelineEntry("image", p.getId(), p.getMessageId(), p.getFromMe(), p.getTimestamp(), p)));
+        merged.addAll(toEntries("video",
+                cursor == null
+                        ? videoRepository.findTimelineFirstPage(chatId, limit)
+                        : videoRepository.findTimelinePageBefore(chatId, cursor.timestamp(), cursor.id(), limit),
+                v -> new TimelineEntry("video", v.getId(), v.getMessageId(), v.getFromMe(), v.getTimestamp(), v)));
+        merged.addAll(toEntries("document",
+                cursor == null
+                        ? documentRepository.findTimelineFirstPage(chatId, limit)
+                        : documentRepository.findTimelinePageBefore(chatId, cursor.timestamp(), cursor.id(), limit),
+                d -> new TimelineEntry("document", d.getId(), d.getMessageId(), d.getFromMe(), d.getTimestamp(), d)));
+
+        merged.sort(NEWEST_FIRST);
+
+        boolean hasMore = merged.size() > pageSize;
+        List<TimelineEntry> page = hasMore ? new ArrayList<>(merged.subList(0, pageSize)) : merged;
+
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1)) : null;
+
+        // Página exibida em ordem cronológica, como no endpoint completo
+        Collections.reverse(page);
+
+        Map<String, ReplyDTO> repliesByMessageId = loadReplies(page);
+
+        List<TimelineItemDTO> items = new ArrayList<>(page.size());
+        for (TimelineEntry entry : page) {
+            items.add(TimelineItemDTO.builder()
+                    .type(entry.type())
+                    .id(entry.id())
+                    .messageId(entry.messageId())
+                    .fromMe(entry.fromMe())
+                    .timestamp(entry.timestamp().toString())
+                    .data(convert(entry))
+                    .reply(entry.messageId() != null ? repliesByMessageId.get(entry.messageId()) : null)
+                    .build());
+        }
+
+        log.debug("📜 Timeline carregada - ChatId: {}, Itens: {}, HasMore: {}", chatId, items.size(), hasMore);
+
+        return ChatTimelinePageDTO.builder()
+                .chatId(chatId)
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(items.size())
+                .build();
+    }
+
+    private <T> List<TimelineEntry> toEntries(String type, List<T> rows, Function<T, TimelineEntry> mapper) {
+        List<TimelineEntry> entries = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            TimelineEntry entry = mapper.apply(row);
+            if (entry.timestamp() == null) {
+                log.warn("⚠️ Item sem timestamp ignorado na timeline - Tipo: {}, Id: {}", type, entry.id());
+                continue;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private Object convert(TimelineEntry entry) {
+        return switch (entry.type()) {
+            case "text" -> messageService.convertToDTO((Message) entry.entity());
+            case "audio" -> audioService.convertToDTO((Audio) entry.entity());
+            case "image" -> photoService.convertToDTO((Photo) entry.entity());
+            case "video" -> videoService.convertToDTO((Video) entry.entity());
+            case "document" -> documentService.toDTO((Document) entry.entity());
+            default -> throw new IllegalStateException("Tipo de item desconhecido: " + entry.type());
+        };
+    }
+
+    /**
+     * Replies apenas das mensagens presentes na página
+     */
+    private Map<String, ReplyDTO> loadReplies(List<TimelineEntry> page) {
+        Set<String> messageIds = new HashSet<>();
+        for (TimelineEntry entry : page) {
+            if (entry.messageId() != null) {
+                messageIds.add(entry.messageId());
+            }
+        }
+        if (messageIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, ReplyDTO> result = new HashMap<>();
+        for (Reply reply : replyRepository.findByMessageMessageIdIn(messageIds)) {
+            result.putIfAbsent(reply.getMessage().getMessageId(), replyService.convertToDTO(reply));
+        }
+        return result;
+    }
+
+    private String encodeCursor(TimelineEntry entry) {
+        String raw = entry.timestamp() + "|" + entry.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
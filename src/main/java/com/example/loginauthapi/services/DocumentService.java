@@ -27,6 +27,7 @@ public class DocumentService {
     private final DocumentRepository documentRepository;
     private final ChatRepository chatRepository;
     private final WebInstanceRepository webInstanceRepository;
+    private final ChatSummaryService chatSummaryService;
 
     @Transactional
     public DocumentDTO saveIncomingDocument(
@@ -81,6 +82,7 @@ public class DocumentService {
         document.setStatus(status);
 
         document = documentRepository.save(document);
+        chatSummaryService.recordDocument(document);
 
         log.info("✅ Documento salvo com sucesso - DocumentId: {}", document.getId());
 
@@ -126,6 +128,7 @@ public class DocumentService {
         document.setStatus("PENDING");
 
         document = documentRepository.save(document);
+        chatSummaryService.recordDocument(document);
 
         log.info("✅ Documento de upload salvo - DocumentId: {}", document.getId());
 
@@ -148,7 +151,7 @@ public class DocumentService {
         Chat chat = chatRepository.findById(chatId)
                 .orElseThrow(() -> new RuntimeException("Chat não encontrado: " + chatId));
 
-        return documentRepository.findByChatOrderByTimestampAsc(chat)
+        return documentRepository.findByChatOrderByTimestampAscIdAsc(chat)
                 .stream()
                 .map(this::toDTO)
                 .collect(Collectors.toList());
@@ -164,6 +167,7 @@ public class DocumentService {
 
             documentRepository.findByMessageId(messageId).ifPresent(document -> {
                 documentRepository.delete(document);
+                chatSummaryService.rebuild(document.getChat().getId());
                 log.info("âœ… Documento excluído do banco - MessageId: {}", messageId);
             });
 
@@ -173,7 +177,7 @@ public class DocumentService {
         }
     }
 
-    private DocumentDTO toDTO(Document document) {
+    public DocumentDTO toDTO(Document document) {
         DocumentDTO dto = new DocumentDTO();
         dto.setId(document.getId());
         dto.setMessageId(document.getMessageId());
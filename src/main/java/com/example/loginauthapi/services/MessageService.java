@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,6 +26,7 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
     private final ChatRepository chatRepository;
+    private final ChatSummaryService chatSummaryService;
 
     /**
      * Salvar mensagem recebida via webhook
@@ -62,6 +64,7 @@ public class MessageService {
         message.setIsEdited(false);
 
         Message saved = messageRepository.save(message);
+        chatSummaryService.recordMessage(saved);
         log.info("Mensagem {} salva com sucesso para chat {}", messageId, chatId);
 
         return saved;
@@ -82,7 +85,8 @@ public class MessageService {
         }
 
         // Gerar ID temporário para a mensagem (será substituído pelo ID do WhatsApp)
-        String tempMessageId = "temp_" + System.currentTimeMillis();
+        // ✅ MODIFICADO: sufixo aleatório; envios simultâneos no mesmo milissegundo não colidem na reconciliação
+        String tempMessageId = "temp_" + System.currentTimeMillis() + "_" + UUID.randomUUID();
 
         Message message = new Message();
         message.setChat(chat);
@@ -98,11 +102,10 @@ public class MessageService {
         message.setIsEdited(false);
 
         Message saved = messageRepository.save(message);
+        chatSummaryService.recordMessage(saved);
 
-        // ✅ ATUALIZAR: lastMessageTime, zerar unread E atualizar lastMessageContent
-        chat.setLastMessageTime(LocalDateTime.now());
+        // ✅ Resumo da última mensagem já atualizado acima; apenas zerar unread
         chat.setUnread(0);
-        chat.setLastMessageContent(truncateMessage(content, 50)); // ✅ NOVO
         chatRepository.save(chat);
 
         log.info("✅ Mensagem salva antes de enviar - TempId: {}, LastMessage: '{}', Unread: 0",
@@ -143,11 +146,10 @@ public class MessageService {
         message.setIsEdited(false);
 
         Message saved = messageRepository.save(message);
+        chatSummaryService.recordMessage(saved);
 
-        // ✅ ATUALIZAR: lastMessageTime, zerar unread E atualizar lastMessageContent
-        chat.setLastMessageTime(LocalDateTime.now());
+        // ✅ Resumo da última mensagem já atualizado acima; apenas zerar unread
         chat.setUnread(0);
-        chat.setLastMessageContent("🎤 Áudio"); // ✅ NOVO
         chatRepository.save(chat);
 
         log.info("✅ Mensagem de áudio salva - TempId: {}, LastMessage: 'Áudio', Unread: 0",
@@ -156,15 +158,6 @@ public class MessageService {
         return convertToDTO(saved);
     }
 
-    /**
-     * ✅ NOVO: Truncar mensagem para exibição
-     */
-    private String truncateMessage(String message, int maxLength) {
-        if (message == null) return "";
-        if (message.length() <= maxLength) return message;
-        return message.substring(0, maxLength) + "...";
-    }
-
     /**
      * ✅ NOVO: Atualizar messageId após envio via Z-API
      */
@@ -194,7 +187,7 @@ public class MessageService {
             throw new RuntimeException("Chat não pertence ao usuário");
         }
 
-        List<Message> messages = messageRepository.findByChatIdOrderByTimestampAsc(chatId);
+        List<Message> messages = messageRepository.findByChatIdOrderByTimestampAscIdAsc(chatId);
 
         return messages.stream()
                 .map(this::convertToDTO)
@@ -212,7 +205,10 @@ public class MessageService {
         message.setContent(newContent);
         message.setIsEdited(true);
 
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        // ✅ NOVO: A mensagem editada pode ser a que aparece na lista de chats
+        chatSummaryService.rebuild(saved.getChat().getId());
+        return saved;
     }
 
     /**
@@ -223,6 +219,10 @@ public class MessageService {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(60);
         messageRepository.deleteOldMessages(cutoffDate);
         log.info("Mensagens anteriores a {} foram deletadas", cutoffDate);
+
+        // ✅ NOVO: Chats cujo resumo era uma das mensagens removidas
+        List<String> chatIds = chatRepository.findIdsWithLastMessageBefore(ChatSummaryService.TYPE_TEXT, cutoffDate);
+        chatIds.forEach(chatSummaryService::rebuild);
     }
 
     /**
@@ -237,6 +237,7 @@ public class MessageService {
 
             if (messageOpt.isPresent()) {
                 messageRepository.delete(messageOpt.get());
+                chatSummaryService.rebuild(messageOpt.get().getChat().getId());
                 log.info("✅ Mensagem excluída do banco - MessageId: {}", messageId);
             } else {
                 log.warn("⚠️ Mensagem não encontrada no banco - MessageId: {}", messageId);
@@ -251,7 +252,7 @@ public class MessageService {
     /**
      * ✅ MODIFICADO: Converter para DTO incluindo campos de áudio
      */
-    private MessageDTO convertToDTO(Message message) {
+    public MessageDTO convertToDTO(Message message) {
         return MessageDTO.builder()
                 .id(message.getId())
                 .messageId(message.getMessageId())
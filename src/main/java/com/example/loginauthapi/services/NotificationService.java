@@ -1,200 +1,567 @@
 package com.example.loginauthapi.services;
 
+import com.example.loginauthapi.services.notification.NotificationEvent;
+import com.example.loginauthapi.services.notification.ReplayBuffer;
+import com.example.loginauthapi.services.notification.SseConnection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notificações em tempo real via SSE
+ *
+ * ✅ MODIFICADO: Os eventos chegam pelo NotificationEventPublisher (após o commit)
+ * e publicar não escreve mais no socket.
+ * Cada conexão tem uma fila limitada (ver {@link SseConnection}) e a escrita acontece
+ * no pool "Sse-Writer-", então um navegador lento não trava o webhook nem os outros clientes.
+ *
+ * Métricas:
+ * - sse.connections: conexões abertas
+ * - sse.events.published / sse.events.coalesced / sse.events.dropped
+ * - sse.frames.written: frames efetivamente escritos nos sockets
+ * - sse.chat-updates.received / sse.chat-updates.emitted: efeito da janela de coalescência de chat-update
+ * - sse.replay.resumed / sse.replay.events / sse.replay.resync: reconexões com Last-Event-ID
+ * - sse.connections.reaped{reason}: conexões encerradas pelo servidor (failed, idle, cap, write-timeout)
+ * - sse.heartbeat.write: latência de escrita dos heartbeats
+ *
+ * ✅ NOVO: Conexões sem escrita há sse.heartbeat.interval-seconds recebem um comentário SSE (heartbeat);
+ * conexões sem nenhuma escrita bem-sucedida há sse.idle-timeout-seconds são encerradas,
+ * e cada usuário mantém no máximo sse.max-connections-per-user (a mais antiga sai).
+ *
+ * ✅ NOVO: Uma escrita que fica bloqueada mais de sse.write-timeout-ms (cliente parou de ler e o buffer
+ * do socket encheu) derruba a conexão, liberando a thread do pool "Sse-Writer-" para os outros clientes.
+ *
+ * ✅ NOVO: Todo evento publicado recebe um id crescente e fica num buffer por usuário
+ * (ver {@link ReplayBuffer}). Uma reconexão com Last-Event-ID recebe apenas os eventos perdidos;
+ * se o id não estiver mais no buffer, recebe um evento "resync" para recarregar a lista.
+ */
 @Service
 @Slf4j
 public class NotificationService {
 
-    // Armazena emitters por userId
-    private final Map<String, CopyOnWriteArrayList<SseEmitter>> userEmitters = new ConcurrentHashMap<>();
+    // Armazena conexões por userId
+    private final Map<String, CopyOnWriteArrayList<SseConnection>> userConnections = new ConcurrentHashMap<>();
+
+    // ✅ NOVO: últimos eventos por userId para retomada via Last-Event-ID
+    private final Map<String, ReplayBuffer> replayBuffers = new ConcurrentHashMap<>();
+
+    // Começa no horário de inicialização para os ids continuarem crescendo após um restart
+    private final AtomicLong eventIdSequence = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    // ✅ NOVO: chat-updates aguardando a janela de coalescência, por userId|chatId
+    private final Map<String, NotificationEvent> pendingChatUpdates = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor writerPool;
+    private final ScheduledExecutorService scheduler;
+    private final int queueCapacity;
+    private final long chatUpdateWindowMs;
+    private final int replayCapacity;
+    private final long replayTtlMs;
+    private final long heartbeatIntervalMs;
+    private final long idleTimeoutMs;
+    private final int maxConnectionsPerUser;
+    private final long writeTimeoutMs;
+
+    private final Counter publishedCounter;
+    private final Counter coalescedCounter;
+    private final Counter droppedCounter;
+    private final Counter framesWrittenCounter;
+    private final Counter chatUpdatesReceivedCounter;
+    private final Counter chatUpdatesEmittedCounter;
+    private final Counter replayResumedCounter;
+    private final Counter replayEventsCounter;
+    private final Counter replayResyncCounter;
+    private final Counter reapedFailedCounter;
+    private final Counter reapedIdleCounter;
+    private final Counter reapedCapCounter;
+    private final Counter reapedWriteTimeoutCounter;
+    private final Timer heartbeatTimer;
+
+    public NotificationService(MeterRegistry meterRegistry,
+                               @Value("${sse.connection.queue-capacity:256}") int queueCapacity,
+                               @Value("${sse.writer.threads:8}") int writerThreads,
+                               @Value("${sse.chat-update.coalesce-window-ms:100}") long chatUpdateWindowMs,
+                               @Value("${sse.replay.capacity:200}") int replayCapacity,
+                               @Value("${sse.replay.ttl-seconds:300}") long replayTtlSeconds,
+                               @Value("${sse.heartbeat.interval-seconds:15}") long heartbeatIntervalSeconds,
+                               @Value("${sse.idle-timeout-seconds:90}") long idleTimeoutSeconds,
+                               @Value("${sse.max-connections-per-user:5}") int maxConnectionsPerUser,
+                               @Value("${sse.write-timeout-ms:10000}") long writeTimeoutMs) {
+        this.queueCapacity = queueCapacity;
+        this.chatUpdateWindowMs = chatUpdateWindowMs;
+        this.replayCapacity = replayCapacity;
+        this.replayTtlMs = TimeUnit.SECONDS.toMillis(replayTtlSeconds);
+        this.heartbeatIntervalMs = TimeUnit.SECONDS.toMillis(heartbeatIntervalSeconds);
+        this.idleTimeoutMs = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.writeTimeoutMs = writeTimeoutMs;
+
+        // A fila do pool tem no máximo uma tarefa pendente por conexão
+        this.writerPool = new ThreadPoolExecutor(writerThreads, writerThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("Sse-Writer-"));
+        this.writerPool.allowCoreThreadTimeOut(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("Sse-Scheduler-"));
+        this.scheduler.scheduleWithFixedDelay(this::purgeReplayBuffers, 1, 1, TimeUnit.MINUTES);
+        this.scheduler.scheduleWithFixedDelay(this::heartbeatAndReap,
+                heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        long writeCheckMs = Math.max(writeTimeoutMs / 4, 250);
+        this.scheduler.scheduleWithFixedDelay(this::reapStuckWrites, writeCheckMs, writeCheckMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("sse.connections", userConnections,
+                        m -> m.values().stream().mapToInt(CopyOnWriteArrayList::size).sum())
+                .description("Conexões SSE abertas")
+                .register(meterRegistry);
+        this.publishedCounter = Counter.builder("sse.events.published")
+                .description("Eventos SSE enfileirados para envio")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("sse.events.coalesced")
+                .description("Eventos SSE que substituíram um evento ainda não enviado")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("sse.events.dropped")
+                .description("Eventos SSE descartados por fila cheia")
+                .register(meterRegistry);
+        this.framesWrittenCounter = Counter.builder("sse.frames.written")
+                .description("Frames SSE efetivamente escritos nas conexões")
+                .register(meterRegistry);
+        this.chatUpdatesReceivedCounter = Counter.builder("sse.chat-updates.received")
+                .description("Eventos chat-update recebidos para envio")
+                .register(meterRegistry);
+        this.chatUpdatesEmittedCounter = Counter.builder("sse.chat-updates.emitted")
+                .description("Eventos chat-update que saíram da janela de coalescência")
+                .register(meterRegistry);
+        this.replayResumedCounter = Counter.builder("sse.replay.resumed")
+                .description("Reconexões SSE retomadas a partir do Last-Event-ID")
+                .register(meterRegistry);
+        this.replayEventsCounter = Counter.builder("sse.replay.events")
+                .description("Eventos reenviados em reconexões SSE")
+                .register(meterRegistry);
+        this.replayResyncCounter = Counter.builder("sse.replay.resync")
+                .description("Reconexões SSE cujo Last-Event-ID não estava mais no buffer")
+                .register(meterRegistry);
+        this.reapedFailedCounter = reapedCounter(meterRegistry, "failed");
+        this.reapedIdleCounter = reapedCounter(meterRegistry, "idle");
+        this.reapedCapCounter = reapedCounter(meterRegistry, "cap");
+        this.reapedWriteTimeoutCounter = reapedCounter(meterRegistry, "write-timeout");
+        this.heartbeatTimer = Timer.builder("sse.heartbeat.write")
+                .description("Tempo de escrita dos heartbeats SSE")
+                .register(meterRegistry);
+    }
+
+    private static Counter reapedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("sse.connections.reaped")
+                .description("Conexões SSE encerradas pelo servidor")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
 
     /**
      * Registrar um novo emitter para um usuário
+     *
+     * @param lastEventId Last-Event-ID enviado pelo EventSource na reconexão (null = conexão nova)
      */
-    public SseEmitter createEmitter(String userId) {
+    public SseEmitter createEmitter(String userId, String lastEventId) {
         SseEmitter emitter = new SseEmitter(Long.MAX_VALUE); // Timeout infinito
-
-        // Adicionar emitter à lista do usuário
-        userEmitters.computeIfAbsent(userId, k -> new CopyOnWriteArrayList<>()).add(emitter);
+        SseConnection connection = new SseConnection(userId, emitter, queueCapacity);
+
+        while (true) {
+            ReplayBuffer buffer = replayBuffers.computeIfAbsent(userId, k -> new ReplayBuffer(replayCapacity));
+            synchronized (buffer) {
+                if (buffer.isEvicted()) {
+                    continue;
+                }
+
+                // Adicionar conexão à lista do usuário (sob o lock do buffer: publish não intercala com o replay)
+                CopyOnWriteArrayList<SseConnection> connections =
+                        userConnections.computeIfAbsent(userId, k -> new CopyOnWriteArrayList<>());
+                connections.add(connection);
+
+                // ✅ NOVO: Limite por usuário: a conexão mais antiga (provavelmente uma aba esquecida) sai
+                while (connections.size() > maxConnectionsPerUser) {
+                    reap(connections.get(0), reapedCapCounter, null);
+                }
+
+                // Enviar mensagem inicial de confirmação
+                offer(connection, new SseConnection.OutboundEvent(null, "connected",
+                        Map.of("message", "Conectado ao sistema de notificações"), null));
+
+                if (lastEventId != null && !lastEventId.isBlank()) {
+                    replay(connection, buffer, lastEventId.trim());
+                }
+                break;
+            }
+        }
 
         log.info("📡 Cliente SSE conectado - UserId: {}, Total de conexões: {}",
-                userId, userEmitters.get(userId).size());
+                userId, userConnections.get(userId).size());
 
-        // Remover emitter quando completar ou expirar
+        // Remover conexão quando completar ou expirar
         emitter.onCompletion(() -> {
-            removeEmitter(userId, emitter);
+            removeConnection(connection);
             log.info("✅ Cliente SSE desconectado (completion) - UserId: {}", userId);
         });
 
         emitter.onTimeout(() -> {
-            removeEmitter(userId, emitter);
+            removeConnection(connection);
             log.info("⏱️ Cliente SSE desconectado (timeout) - UserId: {}", userId);
         });
 
         emitter.onError((ex) -> {
-            removeEmitter(userId, emitter);
+            removeConnection(connection);
             log.error("❌ Erro no cliente SSE - UserId: {}, Erro: {}", userId, ex.getMessage());
         });
 
-        // Enviar mensagem inicial de confirmação
+        return emitter;
+    }
+
+    private void replay(SseConnection connection, ReplayBuffer buffer, String lastEventId) {
+        List<SseConnection.OutboundEvent> missed = null;
         try {
-            emitter.send(SseEmitter.event()
-                    .name("connected")
-                    .data(Map.of("message", "Conectado ao sistema de notificações"))
-            );
-        } catch (IOException e) {
-            log.error("Erro ao enviar mensagem inicial", e);
-            removeEmitter(userId, emitter);
+            missed = buffer.after(Long.parseLong(lastEventId));
+        } catch (NumberFormatException e) {
+            log.debug("Last-Event-ID inválido - UserId: {}, Valor: {}", connection.getUserId(), lastEventId);
         }
 
-        return emitter;
+        if (missed == null) {
+            replayResyncCounter.increment();
+            log.info("🔄 Last-Event-ID {} fora do buffer, solicitando resync - UserId: {}",
+                    lastEventId, connection.getUserId());
+            offer(connection, new SseConnection.OutboundEvent(null, "resync",
+                    Map.of("reason", "replay-unavailable"), null));
+            return;
+        }
+
+        replayResumedCounter.increment();
+        replayEventsCounter.increment(missed.size());
+        for (SseConnection.OutboundEvent event : missed) {
+            offer(connection, event);
+        }
+        log.info("⏪ Reconexão SSE retomada - UserId: {}, Eventos reenviados: {}", connection.getUserId(), missed.size());
     }
 
     /**
-     * Remover emitter da lista
+     * Remover conexão da lista
+     *
+     * @return true se a conexão ainda estava registrada
      */
-    private void removeEmitter(String userId, SseEmitter emitter) {
-        CopyOnWriteArrayList<SseEmitter> emitters = userEmitters.get(userId);
-        if (emitters != null) {
-            emitters.remove(emitter);
-            if (emitters.isEmpty()) {
-                userEmitters.remove(userId);
-            }
-        }
+    private boolean removeConnection(SseConnection connection) {
+        connection.close();
+        boolean[] removed = {false};
+        userConnections.computeIfPresent(connection.getUserId(), (userId, connections) -> {
+            removed[0] = connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+        return removed[0];
     }
 
     /**
-     * Enviar notificação de nova mensagem para um usuário específico
+     * ✅ NOVO: Encerrar uma conexão por iniciativa do servidor
+     * ✅ MODIFICADO: Só fecha e remove; o emitter é encerrado pela thread de escrita
+     * (nunca aqui, que pode ser o agendador ou quem segura o lock do ReplayBuffer)
      */
-    public void sendNewMessageNotification(String userId, Map<String, Object> messageData) {
-        CopyOnWriteArrayList<SseEmitter> emitters = userEmitters.get(userId);
+    private void reap(SseConnection connection, Counter reason, Throwable error) {
+        connection.closeAndComplete(error, this::scheduleDrain);
+        if (removeConnection(connection)) {
+            reason.increment();
+        }
+    }
 
-        if (emitters == null || emitters.isEmpty()) {
-            log.debug("Nenhum cliente SSE conectado para o usuário: {}", userId);
-            return;
+    /**
+     * ✅ NOVO: Heartbeat nas conexões ociosas e remoção das que pararam de escrever
+     */
+    private void heartbeatAndReap() {
+        try {
+            long now = System.currentTimeMillis();
+            userConnections.forEach((userId, connections) -> {
+                for (SseConnection connection : connections) {
+                    long sinceLastWrite = now - connection.getLastWriteMillis();
+                    if (sinceLastWrite >= idleTimeoutMs) {
+                        log.info("💤 Conexão SSE sem escrita há {}s, encerrando - UserId: {}", sinceLastWrite / 1000, userId);
+                        reap(connection, reapedIdleCounter, null);
+                    } else if (sinceLastWrite >= heartbeatIntervalMs && !connection.offerHeartbeat(this::scheduleDrain)) {
+                        removeConnection(connection);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            // Uma exceção aqui cancelaria o agendamento
+            log.error("❌ Erro no heartbeat SSE", e);
         }
+    }
 
-        log.info("📨 Enviando notificação para {} cliente(s) do usuário {}", emitters.size(), userId);
+    /**
+     * ✅ NOVO: Derrubar conexões com uma escrita bloqueada há mais de sse.write-timeout-ms
+     * ✅ MODIFICADO: Não chama o emitter (a escrita travada segura o lock dele); a thread de escrita
+     * o encerra com erro quando o send retornar
+     */
+    private void reapStuckWrites() {
+        try {
+            long now = System.currentTimeMillis();
+            userConnections.forEach((userId, connections) -> {
+                for (SseConnection connection : connections) {
+                    if (!connection.isWriteStuck(now, writeTimeoutMs)) {
+                        continue;
+                    }
+                    log.warn("⏱️ Escrita SSE bloqueada há mais de {}ms, encerrando conexão - UserId: {}",
+                            writeTimeoutMs, userId);
+                    connection.abortWrite();
+                    reap(connection, reapedWriteTimeoutCounter,
+                            new TimeoutException("Escrita SSE excedeu " + writeTimeoutMs + "ms"));
+                }
+            });
+        } catch (Exception e) {
+            // Uma exceção aqui cancelaria o agendamento
+            log.error("❌ Erro ao verificar escritas SSE bloqueadas", e);
+        }
+    }
 
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("new-message")
-                        .data(messageData)
-                );
-            } catch (IOException e) {
-                log.error("Erro ao enviar notificação para cliente", e);
-                removeEmitter(userId, emitter);
+    /**
+     * Enfileirar um evento em todas as conexões do usuário (O(1) por conexão, nunca bloqueia)
+     *
+     * @return quantidade de conexões que receberam o evento
+     */
+    private int publish(String userId, String eventName, Object data, String coalesceKey) {
+        while (true) {
+            ReplayBuffer buffer = replayBuffers.computeIfAbsent(userId, k -> new ReplayBuffer(replayCapacity));
+            synchronized (buffer) {
+                if (buffer.isEvicted()) {
+                    continue;
+                }
+
+                // Guardado mesmo sem conexões: o navegador pode estar no meio de uma reconexão
+                SseConnection.OutboundEvent event = new SseConnection.OutboundEvent(
+                        eventIdSequence.incrementAndGet(), eventName, data, coalesceKey);
+                buffer.append(event);
+
+                CopyOnWriteArrayList<SseConnection> connections = userConnections.get(userId);
+                if (connections == null || connections.isEmpty()) {
+                    log.debug("Nenhum cliente SSE conectado para o usuário: {}", userId);
+                    return 0;
+                }
+
+                int delivered = 0;
+                for (SseConnection connection : connections) {
+                    if (offer(connection, event)) {
+                        delivered++;
+                    }
+                }
+                return delivered;
             }
         }
     }
 
     /**
-     * Enviar notificação de atualização de chat
+     * Descartar buffers de usuários sem conexões e sem eventos recentes
      */
-    public void sendChatUpdateNotification(String userId, Map<String, Object> chatData) {
-        CopyOnWriteArrayList<SseEmitter> emitters = userEmitters.get(userId);
+    private void purgeReplayBuffers() {
+        long cutoff = System.currentTimeMillis() - replayTtlMs;
+        replayBuffers.forEach((userId, buffer) -> {
+            synchronized (buffer) {
+                if (buffer.idleSince(cutoff) && !userConnections.containsKey(userId)) {
+                    buffer.markEvicted();
+                    replayBuffers.remove(userId, buffer);
+                }
+            }
+        });
+    }
 
-        if (emitters == null || emitters.isEmpty()) {
-            return;
+    private boolean offer(SseConnection connection, SseConnection.OutboundEvent event) {
+        SseConnection.OfferResult result = connection.offer(event, this::scheduleDrain);
+        switch (result) {
+            case QUEUED -> publishedCounter.increment();
+            case COALESCED -> {
+                publishedCounter.increment();
+                coalescedCounter.increment();
+            }
+            case DROPPED_OLDEST -> {
+                publishedCounter.increment();
+                droppedCounter.increment();
+                log.warn("⚠️ Fila SSE cheia, evento mais antigo descartado - UserId: {}", connection.getUserId());
+            }
+            case CLOSED -> {
+                return false;
+            }
         }
+        return true;
+    }
 
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("chat-update")
-                        .data(chatData)
-                );
-            } catch (IOException e) {
-                log.error("Erro ao enviar atualização de chat", e);
-                removeEmitter(userId, emitter);
-            }
+    private void scheduleDrain(SseConnection connection) {
+        try {
+            writerPool.execute(() -> {
+                int written = connection.drain(nanos -> heartbeatTimer.record(nanos, TimeUnit.NANOSECONDS));
+                if (written < 0) {
+                    if (removeConnection(connection)) {
+                        reapedFailedCounter.increment();
+                    }
+                } else if (written > 0) {
+                    framesWrittenCounter.increment(written);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Apenas durante o shutdown
+            removeConnection(connection);
         }
     }
 
     /**
-     * ✅ NOVO: Enviar notificação de atualização de tag
+     * ✅ NOVO: Entregar os eventos de um usuário (chamado pelo NotificationEventPublisher após o commit)
+     *
+     * Um único evento mantém o nome original (new-message, chat-update...).
+     * Vários eventos viram um único frame "batch" com a lista {type, data} na ordem de publicação;
+     * eventos repetidos para a mesma chave (ex.: o mesmo chat) ficam só com o mais recente.
+     * chat-updates passam pela janela de coalescência antes de serem enfileirados.
+     * ✅ MODIFICADO: Um new-message nunca ultrapassa o chat-update do mesmo chat publicado antes dele:
+     * o pendente na janela (ou o anterior no mesmo lote) é enviado junto, na frente.
      */
-    public void sendTagUpdateNotification(String userId, Map<String, Object> tagData) {
-        CopyOnWriteArrayList<SseEmitter> emitters = userEmitters.get(userId);
-
-        if (emitters == null || emitters.isEmpty()) {
-            log.debug("Nenhum cliente SSE conectado para o usuário: {}", userId);
+    public void dispatch(String userId, List<NotificationEvent> events) {
+        if (events.isEmpty()) {
             return;
         }
 
-        log.info("🏷️ Enviando atualização de tag para {} cliente(s) do usuário {}", emitters.size(), userId);
+        List<NotificationEvent> coalesced = coalesce(events);
+        List<NotificationEvent> immediate = new ArrayList<>(coalesced.size());
+        for (int i = 0; i < coalesced.size(); i++) {
+            NotificationEvent event = coalesced.get(i);
+            if (event instanceof NotificationEvent.NewMessage message && message.chatId() != null) {
+                NotificationEvent pending = pendingChatUpdates.remove(chatUpdateKey(userId, message.chatId()));
+                if (pending != null) {
+                    chatUpdatesEmittedCounter.increment();
+                    immediate.add(pending);
+                }
+                immediate.add(event);
+            } else if (event instanceof NotificationEvent.ChatUpdated update && chatUpdateWindowMs > 0) {
+                if (hasNewMessageAfter(coalesced, i, update.chatId())) {
+                    chatUpdatesEmittedCounter.increment();
+                    immediate.add(event);
+                } else {
+                    deferChatUpdate(update);
+                }
+            } else {
+                immediate.add(event);
+            }
+        }
 
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("tag-update")
-                        .data(tagData)
-                );
-            } catch (IOException e) {
-                log.error("Erro ao enviar atualização de tag", e);
-                removeEmitter(userId, emitter);
+        for (NotificationEvent event : events) {
+            if (event instanceof NotificationEvent.ChatUpdated) {
+                chatUpdatesReceivedCounter.increment();
+                if (chatUpdateWindowMs <= 0) {
+                    chatUpdatesEmittedCounter.increment();
+                }
             }
         }
+
+        sendNow(userId, immediate);
     }
 
-    /**
-     * ✅ NOVO: Enviar notificação de exclusão de tag
-     */
-    public void sendTagDeleteNotification(String userId, Map<String, Object> tagData) {
-        CopyOnWriteArrayList<SseEmitter> emitters = userEmitters.get(userId);
+    private void sendNow(String userId, List<NotificationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
 
-        if (emitters == null || emitters.isEmpty()) {
-            log.debug("Nenhum cliente SSE conectado para o usuário: {}", userId);
+        if (events.size() == 1) {
+            NotificationEvent event = events.get(0);
+            publish(userId, event.eventName(), event.data(), event.coalesceKey());
             return;
         }
 
-        log.info("🗑️ Enviando notificação de exclusão de tag para {} cliente(s) do usuário {}", emitters.size(), userId);
+        List<Map<String, Object>> frames = new ArrayList<>(events.size());
+        for (NotificationEvent event : events) {
+            frames.add(Map.of("type", event.eventName(), "data", event.data()));
+        }
 
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("tag-delete")
-                        .data(tagData)
-                );
-            } catch (IOException e) {
-                log.error("Erro ao enviar notificação de exclusão de tag", e);
-                removeEmitter(userId, emitter);
-            }
+        int delivered = publish(userId, "batch", Map.of("events", frames), null);
+        if (delivered > 0) {
+            log.info("📨 {} eventos enfileirados em um único frame para {} cliente(s) do usuário {}",
+                    frames.size(), delivered, userId);
         }
     }
 
     /**
-     * ✅ NOVO: Enviar notificação de conclusão de tarefa
+     * ✅ NOVO: Segurar o chat-update pela janela configurada; atualizações do mesmo chat
+     * nesse intervalo substituem a pendente e só o estado mais recente é enviado
      */
-    public void sendTaskCompletedNotification(String userId, Map<String, Object> taskData) {
-        CopyOnWriteArrayList<SseEmitter> emitters = userEmitters.get(userId);
+    private void deferChatUpdate(NotificationEvent.ChatUpdated event) {
+        String key = chatUpdateKey(event.userId(), event.chatId());
+        if (pendingChatUpdates.put(key, event) == null) {
+            try {
+                scheduler.schedule(() -> flushChatUpdate(key), chatUpdateWindowMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Apenas durante o shutdown
+                pendingChatUpdates.remove(key);
+            }
+        }
+    }
 
-        if (emitters == null || emitters.isEmpty()) {
-            log.debug("Nenhum cliente SSE conectado para o usuário: {}", userId);
-            return;
+    private static String chatUpdateKey(String userId, String chatId) {
+        return userId + "|chat-update:" + chatId;
+    }
+
+    private static boolean hasNewMessageAfter(List<NotificationEvent> events, int index, String chatId) {
+        for (int i = index + 1; i < events.size(); i++) {
+            if (events.get(i) instanceof NotificationEvent.NewMessage message && Objects.equals(message.chatId(), chatId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flushChatUpdate(String key) {
+        NotificationEvent event = pendingChatUpdates.remove(key);
+        if (event != null) {
+            chatUpdatesEmittedCounter.increment();
+            publish(event.userId(), event.eventName(), event.data(), event.coalesceKey());
         }
+    }
 
-        log.info("✅ Enviando notificação de conclusão de tarefa para {} cliente(s) do usuário {}", emitters.size(), userId);
+    private List<NotificationEvent> coalesce(List<NotificationEvent> events) {
+        if (events.size() == 1) {
+            return events;
+        }
 
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("task-completed")
-                        .data(taskData)
-                );
-            } catch (IOException e) {
-                log.error("Erro ao enviar notificação de conclusão de tarefa", e);
-                removeEmitter(userId, emitter);
+        // Última ocorrência de cada chave vence; eventos sem chave são mantidos
+        Map<String, Integer> lastIndexByKey = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            String key = events.get(i).coalesceKey();
+            if (key != null) {
+                lastIndexByKey.put(key, i);
             }
         }
+
+        List<NotificationEvent> result = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            String key = events.get(i).coalesceKey();
+            if (key == null || lastIndexByKey.get(key) == i) {
+                result.add(events.get(i));
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        writerPool.shutdownNow();
     }
-}
\ No newline at end of file
+}
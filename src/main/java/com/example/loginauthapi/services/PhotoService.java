@@ -29,6 +29,7 @@ public class PhotoService {
     private final PhotoRepository photoRepository;
     private final ChatRepository chatRepository;
     private final WebInstanceRepository webInstanceRepository;
+    private final ChatSummaryService chatSummaryService;
 
     /**
      * ✅ MODIFICADO: Salvar foto recebida via webhook (adicionado parâmetro caption)
@@ -69,6 +70,7 @@ public class PhotoService {
             photo.setStatus(status != null ? status : photo.getStatus());
 
             Photo updated = photoRepository.save(photo);
+            chatSummaryService.recordPhoto(updated);
             log.info("✅ Foto atualizada com sucesso!");
             return updated;
         }
@@ -101,6 +103,7 @@ public class PhotoService {
         photo.setDeletedFromChat(false); // ✅ NOVO: Inicializar
 
         Photo saved = photoRepository.save(photo);
+        chatSummaryService.recordPhoto(saved);
         log.info("✅ Foto criada - MessageId: {}, ChatId: {}, ImageUrl: {}, Caption: {}",
                 messageId, chatId, saved.getImageUrl(), caption);
 
@@ -115,7 +118,7 @@ public class PhotoService {
             throw new RuntimeException("Chat não encontrado");
         }
 
-        List<Photo> photos = photoRepository.findByChatIdOrderByTimestampAsc(chatId);
+        List<Photo> photos = photoRepository.findByChatIdOrderByTimestampAscIdAsc(chatId);
 
         return photos.stream()
                 .filter(photo -> photo.getDeletedFromChat() == null || !photo.getDeletedFromChat())
@@ -212,6 +215,7 @@ public class PhotoService {
             }
 
             photo = photoRepository.save(photo);
+            chatSummaryService.recordPhoto(photo);
             log.info("✅ Foto outgoing salva temporariamente - MessageId: {}, InstanceId: {}", tempMessageId, instanceId);
 
             return convertToDTO(photo);
@@ -292,6 +296,7 @@ public class PhotoService {
             photo.setSavedInGallery(shouldSaveInGallery);
 
             photo = photoRepository.save(photo);
+            chatSummaryService.recordPhoto(photo);
             log.info("✅ Foto de upload salva - MessageId: {}, SavedInGallery: {}",
                     tempMessageId, shouldSaveInGallery);
 
@@ -326,6 +331,8 @@ public class PhotoService {
                     photoRepository.delete(photo);
                     log.info("✅ Foto excluída permanentemente do banco - MessageId: {}", messageId);
                 }
+                // ✅ NOVO: A foto removida pode ser a que aparece na lista de chats
+                chatSummaryService.rebuild(photo.getChat().getId());
             } else {
                 log.warn("⚠️ Foto não encontrada no banco - MessageId: {}", messageId);
             }
@@ -339,7 +346,7 @@ public class PhotoService {
     /**
      * ✅ MODIFICADO: Converter para DTO (adicionado caption e deletedFromChat)
      */
-    private PhotoDTO convertToDTO(Photo photo) {
+    public PhotoDTO convertToDTO(Photo photo) {
         return PhotoDTO.builder()
                 .id(photo.getId())
                 .messageId(photo.getMessageId())
@@ -33,6 +33,8 @@ public class ProfileUpdateService {
     private final UserRepository userRepository;
     private final ChatRepository chatRepository;
     private final WebInstanceRepository webInstanceRepository;
+    // ✅ NOVO: O número de upload é lido do User em cache no roteamento de webhooks
+    private final WebInstanceRegistry webInstanceRegistry;
 
     @Data
     @AllArgsConstructor
@@ -128,6 +130,7 @@ public class ProfileUpdateService {
 
             log.info("💾 Salvando usuário no banco de dados...");
             user = userRepository.save(user);
+            webInstanceRegistry.invalidateAll();
             log.info("✅ Usuário salvo com sucesso. Número anterior: {}, Novo número: {}",
                     oldNumber, user.getUploadPhoneNumber());
 
@@ -185,6 +188,7 @@ public class ProfileUpdateService {
                 clearPreviousUploadChats(userId, oldNumber);
                 user.setUploadPhoneNumber(null);
                 user = userRepository.save(user);
+                webInstanceRegistry.invalidateAll();
                 log.info("✅ Número de upload removido: {}", oldNumber);
             } else {
                 log.info("ℹ️ Usuário não tinha número de upload configurado");
@@ -310,7 +310,7 @@ public class ReplyService {
     }
 
     public List<Reply> getRepliesByChatId(String chatId) {
-        return replyRepository.findByChatIdOrderByTimestampAsc(chatId);
+        return replyRepository.findByChatIdOrderByTimestampAscIdAsc(chatId);
     }
 
     public ReplyDTO convertToDTO(Reply reply) {
@@ -0,0 +1,64 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.repositories.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * ✅ NOVO: Descobrir o tipo (image, audio, video, document ou text) da mensagem referenciada por um reply
+ *
+ * Substitui as quatro buscas sequenciais por entidade (photo → audio → video → document)
+ * por uma única consulta UNION que retorna apenas o tipo, com um cache LRU na frente
+ * para as mensagens referenciadas recentemente.
+ */
+@Service
+@Slf4j
+public class ReplyTypeResolver {
+
+    private static final String TEXT = "text";
+
+    private final MessageRepository messageRepository;
+    private final Cache<String, String> recentTypes;
+
+    public ReplyTypeResolver(MessageRepository messageRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${reply.type-cache.max-size:10000}") long maxSize,
+                             @Value("${reply.type-cache.ttl-minutes:30}") long ttlMinutes) {
+        this.messageRepository = messageRepository;
+        this.recentTypes = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, recentTypes, "reply.type");
+    }
+
+    /**
+     * Tipo da mensagem referenciada; "text" quando não é nenhuma mídia conhecida
+     * ✅ MODIFICADO: Só tipos de mídia encontrados vão para o cache. O "text" não é guardado,
+     * porque o webhook da mídia referenciada pode chegar depois do reply
+     */
+    public String resolve(String referenceMessageId) {
+        if (referenceMessageId == null) {
+            return TEXT;
+        }
+
+        String cached = recentTypes.getIfPresent(referenceMessageId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Optional<String> mediaType = messageRepository.findMediaTypeByMessageId(referenceMessageId);
+        mediaType.ifPresent(type -> recentTypes.put(referenceMessageId, type));
+        return mediaType.orElse(TEXT);
+    }
+}
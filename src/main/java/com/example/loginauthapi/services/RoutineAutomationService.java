@@ -2,11 +2,13 @@ package com.example.loginauthapi.services;
 
 import com.example.loginauthapi.entities.*;
 import com.example.loginauthapi.repositories.*;
-import com.example.loginauthapi.services.zapi.ZapiMessageService;
+import com.example.loginauthapi.services.outbox.OutboxService;
+import com.example.loginauthapi.services.zapi.ZapiCircuitBreaker;
+import com.example.loginauthapi.services.notification.NotificationEvent;
+import com.example.loginauthapi.services.notification.NotificationEventPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.TaskScheduler;
@@ -33,15 +35,14 @@ public class RoutineAutomationService implements CommandLineRunner {
     private final WebInstanceRepository webInstanceRepository;
     private final TaskScheduler taskScheduler;
 
-    // Serviço para enviar mensagens via WhatsApp (Z-API)
-    private final ZapiMessageService zapiMessageService;
+    // ✅ MODIFICADO: Envios via WhatsApp (Z-API) passam pelo outbox
+    private final OutboxService outboxService;
+    private final ZapiCircuitBreaker zapiCircuitBreaker;
 
     // ✅ NOVO: Serviço para enviar notificações SSE
-    private final NotificationService notificationService;
+    private final NotificationEventPublisher notificationEventPublisher;
 
-    // ✅ NOVO: Serviços e repositórios para enviar fotos e vídeos
-    private final PhotoService photoService;
-    private final VideoService videoService;
+    // ✅ NOVO: Repositórios para enviar fotos e vídeos
     private final PhotoRepository photoRepository;
     private final VideoRepository videoRepository;
 
@@ -110,6 +111,18 @@ public class RoutineAutomationService implements CommandLineRunner {
             return;
         }
 
+        // ✅ NOVO: Instância com circuito aberto (Z-API fora/desconectada) → pula o usuário neste ciclo
+        // antes de marcar chats como PROCESSING ou avançar o estado das rotinas
+        boolean circuitOpen = webInstanceRepository.findByUserId(user.getId()).stream()
+                .filter(wi -> "ACTIVE".equals(wi.getStatus()))
+                .findFirst()
+                .map(zapiCircuitBreaker::isOpen)
+                .orElse(false);
+        if (circuitOpen) {
+            log.warn("🔌 [USER: {}] Instância Z-API indisponível (circuito aberto), rotinas adiadas", user.getId());
+            return;
+        }
+
         int updatedCount = chatRepository.updateStatusForRepescagem(
                 user.getId(),
                 REPESCAGEM_COLUMN,
@@ -171,10 +184,10 @@ public class RoutineAutomationService implements CommandLineRunner {
 
         // *************************************************************************
         // CORREÇÃO: PRIMEIRA VERIFICAÇÃO DE ATIVIDADE DO CLIENTE (MANTÉM O CHAT FORA SE ATIVO)
-        // Usando a sintaxe CORRETA do seu MessageRepository: findTopByChatIdOrderByTimestampDesc
+        // Usando a sintaxe CORRETA do seu MessageRepository: findTopByChatIdOrderByTimestampDescIdDesc
         // *************************************************************************
         Optional<Message> lastAnyMessageOpt = messageRepository
-                .findTopByChatIdOrderByTimestampDesc(chat.getId()); // <-- CORREÇÃO DA SINTAXE
+                .findTopByChatIdOrderByTimestampDescIdDesc(chat.getId()); // <-- CORREÇÃO DA SINTAXE
 
         if (lastAnyMessageOpt.isEmpty()) {
             return; // Se não tem nenhuma mensagem, ignora
@@ -194,7 +207,7 @@ public class RoutineAutomationService implements CommandLineRunner {
 
         // Busca a última mensagem enviada PELO USUÁRIO (fromMe=true) neste chat
         Optional<Message> lastUserMessageOpt = messageRepository
-                .findFirstByChatIdAndFromMeTrueOrderByTimestampDesc(chat.getId());
+                .findFirstByChatIdAndFromMeTrueOrderByTimestampDescIdDesc(chat.getId());
 
         // Se não existe mensagem do usuário, não faz nada
         if (lastUserMessageOpt.isEmpty()) {
@@ -280,7 +293,7 @@ public class RoutineAutomationService implements CommandLineRunner {
 
             // Busca e guarda o horário da última mensagem do usuário
             Optional<Message> lastUserMessageOpt = messageRepository
-                    .findFirstByChatIdAndFromMeTrueOrderByTimestampDesc(chat.getId());
+                    .findFirstByChatIdAndFromMeTrueOrderByTimestampDescIdDesc(chat.getId());
             lastUserMessageOpt.ifPresent(msg -> state.setLastUserMessageTime(msg.getTimestamp()));
 
             // Salva o estado no banco de dados, garantindo o incremento de lastRoutineSent
@@ -330,6 +343,7 @@ public class RoutineAutomationService implements CommandLineRunner {
             sendRoutineWithMedia(
                     chat,
                     webInstance,
+                    state,
                     routineToSend
             );
 
@@ -355,7 +369,7 @@ public class RoutineAutomationService implements CommandLineRunner {
 
         // Verifica se o cliente respondeu olhando a última mensagem
         Optional<Message> lastMessageOpt = messageRepository
-                .findTopByChatIdOrderByTimestampDesc(chat.getId());
+                .findTopByChatIdOrderByTimestampDescIdDesc(chat.getId());
 
         if (lastMessageOpt.isPresent()) {
             Message lastMessage = lastMessageOpt.get();
@@ -482,12 +496,15 @@ public class RoutineAutomationService implements CommandLineRunner {
             sendRoutineWithMedia(
                     chat,
                     webInstance,
+                    state,
                     routine
             );
 
             // ATUALIZAÇÃO DO TEMPO DE ENVIO APÓS O ENVIO
+            // ✅ MODIFICADO: Sequência salva junto com o horário (o horário faz parte da dedupKey da rotina)
             state.setInRepescagem(true);
             state.setLastAutomatedMessageSent(LocalDateTime.now(ZoneId.of("America/Sao_Paulo")));
+            state.setLastRoutineSent(routine.getSequenceNumber());
             chatRoutineStateRepository.save(state);
         } catch (Exception e) {
             log.error("❌ [CHAT: {}] Erro ao enviar rotina #{}", chat.getId(), routine.getSequenceNumber(), e);
@@ -512,7 +529,7 @@ public class RoutineAutomationService implements CommandLineRunner {
             chatRoutineStateRepository.save(state);
 
             // ✅ NOVO: Enviar notificação SSE para atualizar frontend
-            notificationService.sendTaskCompletedNotification(
+            notificationEventPublisher.publish(new NotificationEvent.TaskCompleted(
                     user.getId(),
                     Map.of(
                             "chatId", chat.getId(),
@@ -520,7 +537,7 @@ public class RoutineAutomationService implements CommandLineRunner {
                             "chatColumn", chat.getColumn(),
                             "type", "repescagem-completed"
                     )
-            );
+            ));
 
             log.info("📡 [CHAT: {}] Notificação SSE enviada - Chat movido para Lead Frio", chat.getId());
 
@@ -554,7 +571,7 @@ public class RoutineAutomationService implements CommandLineRunner {
             chatRoutineStateRepository.save(state);
 
             // ✅ NOVO: Enviar notificação SSE para atualizar frontend
-            notificationService.sendTaskCompletedNotification(
+            notificationEventPublisher.publish(new NotificationEvent.TaskCompleted(
                     user.getId(),
                     Map.of(
                             "chatId", chat.getId(),
@@ -563,7 +580,7 @@ public class RoutineAutomationService implements CommandLineRunner {
                             "previousColumn", previousColumn,
                             "type", "chat-removed-from-repescagem"
                     )
-            );
+            ));
 
             log.info("📡 [CHAT: {}] Notificação SSE enviada - Chat removido da Repescagem", chat.getId());
 
@@ -673,10 +690,15 @@ public class RoutineAutomationService implements CommandLineRunner {
     /**
      * ✅ NOVO: Enviar texto, fotos e vídeos de uma rotina
      * Segue o fluxo: texto → fotos → vídeos
+     * ✅ MODIFICADO: Só enfileira no outbox; o envio (e o ritmo por instância) fica com o OutboxRelay
+     * ✅ MODIFICADO: dedupKey "routine:{chatId}:{sequência}:{ciclo}": se o estado não for salvo depois
+     * do enfileiramento (erro/restart), a próxima execução do agendador não enfileira a rotina de novo.
+     * O ciclo é o lastAutomatedMessageSent anterior ao envio, que só muda quando o estado é salvo
      */
     private void sendRoutineWithMedia(
             Chat chat,
             WebInstance webInstance,
+            ChatRoutineState state,
             RoutineText routine
     ) {
         String greeting = randomGreeting();
@@ -686,73 +708,31 @@ public class RoutineAutomationService implements CommandLineRunner {
         String receiverName = chatName == null || chatName.isBlank() ? fallbackGreeting : greeting + chat.getName();
 
         String messageToSend = receiverName + ", " + routine.getTextContent();
-        // ===== PASSO 1: Enviar mensagem de texto =====
-        boolean result = zapiMessageService.sendTextMessage(
+
+        List<String> photoUrls = getRoutinePhotos(routine).stream().map(Photo::getImageUrl).toList();
+        List<String> videoUrls = getRoutineVideos(routine).stream().map(Video::getVideoUrl).toList();
+
+        // ✅ MODIFICADO: Texto, fotos e vídeos gravados juntos no outbox; o OutboxRelay envia nessa ordem
+        outboxService.enqueueChatContent(
                 webInstance,
+                chat.getId(),
                 chat.getPhone(),
                 messageToSend,
+                null,
+                photoUrls,
+                videoUrls,
+                OutboundMessageSource.ROUTINE,
+                routineDedupPrefix(chat, state, routine),
                 true
         );
+        log.info("📤 [CHAT: {}] Rotina enfileirada - {} foto(s), {} vídeo(s)",
+                chat.getId(), photoUrls.size(), videoUrls.size());
+    }
 
-        if(result) {
-            // ===== PASSO 2: Enviar fotos (se houver) =====
-            List<Photo> photos = getRoutinePhotos(routine);
-            if (!photos.isEmpty()) {
-                log.info("📷 [CHAT: {}] Enviando {} foto(s)", chat.getId(), photos.size());
-                for (Photo photo : photos) {
-
-                    try {
-                        photoService.saveOutgoingPhoto(
-                                chat.getId(),
-                                chat.getPhone(),
-                                photo.getImageUrl(),
-                                webInstance.getId(),
-                                null
-                        );
-                    } catch (DataIntegrityViolationException e) {
-                        log.warn("⚠️ Erro de duplicação ao salvar foto. Continuando...");
-                    }
-
-                    zapiMessageService.sendImage(
-                            webInstance,
-                            chat.getPhone(),
-                            photo.getImageUrl(),
-                            true
-                    );
-
-                }
-            }
-
-            // ===== PASSO 3: Enviar vídeos (se houver) =====
-            List<Video> videos = getRoutineVideos(routine);
-            if (!videos.isEmpty()) {
-                log.info("🎥 [CHAT: {}] Enviando {} vídeo(s)", chat.getId(), videos.size());
-                for (Video video : videos) {
-
-                    try {
-                        videoService.saveOutgoingVideo(
-                                chat.getId(),
-                                chat.getPhone(),
-                                video.getVideoUrl(),
-                                webInstance.getId(),
-                                null
-                        );
-                    } catch (DataIntegrityViolationException e) {
-                        log.warn("⚠️ Erro de duplicação ao salvar vídeo. Continuando...");
-                    }
-
-                    zapiMessageService.sendVideo(
-                            webInstance,
-                            chat.getPhone(),
-                            video.getVideoUrl(),
-                            true
-                    );
-
-                }
-            }
-
-        }
-
+    private static String routineDedupPrefix(Chat chat, ChatRoutineState state, RoutineText routine) {
+        LocalDateTime cycle = state.getLastAutomatedMessageSent();
+        return "routine:" + chat.getId() + ":" + routine.getSequenceNumber() + ":"
+                + (cycle != null ? cycle.toEpochSecond(ZoneOffset.UTC) : 0);
     }
 
     private static final List<String> GREETINGS = List.of(
@@ -7,6 +7,8 @@ import com.example.loginauthapi.entities.Tag;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.repositories.ChatRepository;
 import com.example.loginauthapi.repositories.TagRepository;
+import com.example.loginauthapi.services.notification.NotificationEvent;
+import com.example.loginauthapi.services.notification.NotificationEventPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -25,7 +27,7 @@ public class TagService {
 
     private final TagRepository tagRepository;
     private final ChatRepository chatRepository;
-    private final NotificationService notificationService; // ✅ NOVO: Injetar NotificationService
+    private final NotificationEventPublisher notificationEventPublisher;
 
     /**
      * Buscar todas as tags de um usuário
@@ -89,7 +91,7 @@ public class TagService {
             tagData.put("name", updatedTag.getName());
             tagData.put("color", updatedTag.getColor());
 
-            notificationService.sendTagUpdateNotification(user.getId(), tagData);
+            notificationEventPublisher.publish(new NotificationEvent.TagChanged(user.getId(), updatedTag.getId(), false, tagData));
             log.info("✅ Notificação de atualização de tag enviada via SSE - TagId: {}", tagId);
         } catch (Exception e) {
             log.error("❌ Erro ao enviar notificação SSE de atualização de tag", e);
@@ -138,7 +140,7 @@ public class TagService {
             Map<String, Object> tagData = new HashMap<>();
             tagData.put("tagId", tagId);
 
-            notificationService.sendTagDeleteNotification(user.getId(), tagData);
+            notificationEventPublisher.publish(new NotificationEvent.TagChanged(user.getId(), tagId, true, tagData));
             log.info("✅ Notificação de exclusão de tag enviada via SSE - TagId: {}", tagId);
         } catch (Exception e) {
             log.error("❌ Erro ao enviar notificação SSE de exclusão de tag", e);
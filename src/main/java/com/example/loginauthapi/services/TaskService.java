@@ -3,17 +3,24 @@ package com.example.loginauthapi.services;
 import com.example.loginauthapi.dto.TaskDTO;
 import com.example.loginauthapi.dto.TaskRequestDTO;
 import com.example.loginauthapi.entities.Chat;
+import com.example.loginauthapi.entities.OutboundMessageSource;
 import com.example.loginauthapi.entities.Task;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.entities.WebInstance;
 import com.example.loginauthapi.repositories.ChatRepository;
 import com.example.loginauthapi.repositories.TaskRepository;
 import com.example.loginauthapi.repositories.WebInstanceRepository;
-import com.example.loginauthapi.services.zapi.ZapiMessageService;
+import com.example.loginauthapi.services.outbox.OutboxService;
+import com.example.loginauthapi.services.zapi.ZapiCircuitBreaker;
+import com.example.loginauthapi.services.notification.NotificationEvent;
+import com.example.loginauthapi.services.notification.NotificationEventPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
@@ -29,8 +36,12 @@ public class TaskService {
     private final TaskRepository taskRepository;
     private final ChatRepository chatRepository;
     private final WebInstanceRepository webInstanceRepository;
-    private final ZapiMessageService zapiMessageService;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final ZapiCircuitBreaker zapiCircuitBreaker;
+    private final NotificationEventPublisher notificationEventPublisher;
+
+    @Autowired
+    private ApplicationContext applicationContext;
 
     /**
      * Criar nova tarefa
@@ -238,7 +249,7 @@ public class TaskService {
             log.info("✅ Chat {} voltou para '{}' (nenhuma tarefa pendente)", chat.getId(), targetColumn);
 
             // Enviar notificação SSE para atualizar frontend
-            notificationService.sendTaskCompletedNotification(
+            notificationEventPublisher.publish(new NotificationEvent.TaskCompleted(
                     user.getId(),
                     Map.of(
                             "taskId", taskId,
@@ -246,7 +257,7 @@ public class TaskService {
                             "chatName", chat.getName(),
                             "chatColumn", chat.getColumn()
                     )
-            );
+            ));
         }
 
         Task updatedTask = taskRepository.save(task);
@@ -258,9 +269,9 @@ public class TaskService {
 
     /**
      * Scheduler: Verificar e executar tarefas pendentes a cada 40 segundos
+     * ✅ MODIFICADO: Cada tarefa em uma transação própria; a falha de uma não desfaz as outras
      */
     @Scheduled(fixedDelay = 40000) // 40 segundos
-    @Transactional
     public void checkAndExecutePendingTasks() {
         log.debug("🔍 Verificando tarefas pendentes...");
 
@@ -274,86 +285,105 @@ public class TaskService {
 
         log.info("📋 Encontradas {} tarefa(s) pendente(s) para executar", pendingTasks.size());
 
-        for (Task task : pendingTasks) {
-            executeTask(task);
+        for (Task pending : pendingTasks) {
+            try {
+                self().executeTask(pending.getId());
+            } catch (Exception e) {
+                log.error("❌ Erro ao executar tarefa {}: {}", pending.getId(), e.getMessage(), e);
+            }
         }
     }
 
     /**
      * Executar tarefa: enviar mensagem e mover chat de volta
+     * ✅ MODIFICADO: Transação própria (REQUIRES_NEW): outbox, tarefa e chat são gravados juntos ou nada é
      */
-    private void executeTask(Task task) {
-        try {
-            Chat chat = task.getChat();
-            User user = chat.getWebInstance().getUser();
-
-            log.info("📤 Executando tarefa {} para chat {}", task.getId(), chat.getId());
-
-            // Buscar instância ativa do usuário
-            Optional<WebInstance> instanceOpt = webInstanceRepository.findByUserId(user.getId())
-                    .stream()
-                    .filter(wi -> "ACTIVE".equals(wi.getStatus()))
-                    .findFirst();
-
-            if (instanceOpt.isEmpty()) {
-                log.error("❌ Usuário {} não possui instância ativa", user.getId());
-                return;
-            }
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void executeTask(String taskId) {
+        Task task = taskRepository.findById(taskId).orElse(null);
+        // Removida ou já executada por outra réplica desde a busca
+        if (task == null || Boolean.TRUE.equals(task.getExecuted())) {
+            return;
+        }
 
-            WebInstance instance = instanceOpt.get();
-
-            // Enviar mensagem via Z-API
-            Map<String, Object> result = zapiMessageService.sendTextMessageWithRetry(
-                    instance,
-                    chat.getPhone(),
-                    task.getMessage(),
-                    false
-            );
-
-            if (result != null && result.get("messageId") != null) {
-                log.info("✅ Mensagem da tarefa enviada com sucesso: {}", result.get("messageId"));
-
-                // Marcar tarefa como executada
-                task.setExecuted(true);
-                task.setExecutedAt(LocalDateTime.now());
-                taskRepository.save(task);
-
-                // ✅ Verificar se ainda há tarefas pendentes para este chat
-                List<Task> remainingTasks = taskRepository.findByChatIdAndExecuted(chat.getId(), false);
-
-                // Se não houver mais tarefas pendentes, mover chat de volta
-                if (remainingTasks.isEmpty()) {
-                    String targetColumn = chat.getPreviousColumn() != null ? chat.getPreviousColumn() : "inbox";
-                    chat.setColumn(targetColumn);
-                    chat.setPreviousColumn(null);
-                    chatRepository.save(chat);
-
-                    log.info("✅ Tarefa {} executada e chat {} voltou para '{}'",
-                            task.getId(), chat.getId(), targetColumn);
-
-                    // Enviar notificação SSE para atualizar frontend
-                    notificationService.sendTaskCompletedNotification(
-                            user.getId(),
-                            Map.of(
-                                    "taskId", task.getId(),
-                                    "chatId", chat.getId(),
-                                    "chatName", chat.getName(),
-                                    "chatColumn", chat.getColumn()
-                            )
-                    );
-                } else {
-                    log.info("✅ Tarefa {} executada. Chat {} permanece em 'task' ({} tarefa(s) pendente(s))",
-                            task.getId(), chat.getId(), remainingTasks.size());
-                }
-            } else {
-                log.error("❌ Falha ao enviar mensagem da tarefa {}", task.getId());
-            }
+        Chat chat = task.getChat();
+        User user = chat.getWebInstance().getUser();
+
+        log.info("📤 Executando tarefa {} para chat {}", task.getId(), chat.getId());
+
+        // Buscar instância ativa do usuário
+        Optional<WebInstance> instanceOpt = webInstanceRepository.findByUserId(user.getId())
+                .stream()
+                .filter(wi -> "ACTIVE".equals(wi.getStatus()))
+                .findFirst();
+
+        if (instanceOpt.isEmpty()) {
+            log.error("❌ Usuário {} não possui instância ativa", user.getId());
+            return;
+        }
+
+        WebInstance instance = instanceOpt.get();
+
+        // ✅ NOVO: Circuito aberto → tarefa continua pendente para o próximo ciclo
+        if (zapiCircuitBreaker.isOpen(instance)) {
+            log.warn("🔌 Instância Z-API do usuário {} indisponível (circuito aberto), tarefa {} adiada",
+                    user.getId(), task.getId());
+            return;
+        }
+
+        // ✅ MODIFICADO: Mensagem gravada no outbox na mesma transação que marca a tarefa como executada
+        // (dedupKey por tarefa: uma tarefa nunca gera dois envios); o OutboxRelay faz a chamada à Z-API
+        OutboxService.Queued<?> queued = outboxService.enqueueText(
+                instance,
+                chat.getId(),
+                chat.getPhone(),
+                task.getMessage(),
+                null,
+                OutboundMessageSource.TASK,
+                "task:" + task.getId(),
+                false
+        );
+
+        log.info("✅ Mensagem da tarefa enfileirada - OutboxId: {}", queued.outboxId());
+
+        // Marcar tarefa como executada
+        task.setExecuted(true);
+        task.setExecutedAt(LocalDateTime.now());
+        taskRepository.save(task);
 
-        } catch (Exception e) {
-            log.error("❌ Erro ao executar tarefa {}: {}", task.getId(), e.getMessage(), e);
+        // ✅ Verificar se ainda há tarefas pendentes para este chat
+        List<Task> remainingTasks = taskRepository.findByChatIdAndExecuted(chat.getId(), false);
+
+        // Se não houver mais tarefas pendentes, mover chat de volta
+        if (remainingTasks.isEmpty()) {
+            String targetColumn = chat.getPreviousColumn() != null ? chat.getPreviousColumn() : "inbox";
+            chat.setColumn(targetColumn);
+            chat.setPreviousColumn(null);
+            chatRepository.save(chat);
+
+            log.info("✅ Tarefa {} executada e chat {} voltou para '{}'",
+                    task.getId(), chat.getId(), targetColumn);
+
+            // Enviar notificação SSE para atualizar frontend
+            notificationEventPublisher.publish(new NotificationEvent.TaskCompleted(
+                    user.getId(),
+                    Map.of(
+                            "taskId", task.getId(),
+                            "chatId", chat.getId(),
+                            "chatName", chat.getName(),
+                            "chatColumn", chat.getColumn()
+                    )
+            ));
+        } else {
+            log.info("✅ Tarefa {} executada. Chat {} permanece em 'task' ({} tarefa(s) pendente(s))",
+                    task.getId(), chat.getId(), remainingTasks.size());
         }
     }
 
+    private TaskService self() {
+        return applicationContext.getBean(TaskService.class);
+    }
+
     /**
      * Converter Task para TaskDTO
      */
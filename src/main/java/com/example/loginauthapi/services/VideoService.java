@@ -29,6 +29,7 @@ public class VideoService {
     private final VideoRepository videoRepository;
     private final ChatRepository chatRepository;
     private final WebInstanceRepository webInstanceRepository;
+    private final ChatSummaryService chatSummaryService;
 
     /**
      * Salvar vídeo recebido via webhook
@@ -70,6 +71,7 @@ public class VideoService {
             video.setStatus(status != null ? status : video.getStatus());
 
             Video updated = videoRepository.save(video);
+            chatSummaryService.recordVideo(updated);
             log.info("✅ Vídeo atualizado com sucesso!");
             return updated;
         }
@@ -104,6 +106,7 @@ public class VideoService {
         video.setDeletedFromChat(false); // ✅ NOVO: Inicializar
 
         Video saved = videoRepository.save(video);
+        chatSummaryService.recordVideo(saved);
         log.info("✅ Vídeo criado - MessageId: {}, ChatId: {}, VideoUrl: {}, Seconds: {}, Caption: {}",
                 messageId, chatId, saved.getVideoUrl(), seconds, caption != null ? "presente" : "null");
 
@@ -118,7 +121,7 @@ public class VideoService {
             throw new RuntimeException("Chat não encontrado");
         }
 
-        List<Video> videos = videoRepository.findByChatIdOrderByTimestampAsc(chatId);
+        List<Video> videos = videoRepository.findByChatIdOrderByTimestampAscIdAsc(chatId);
 
         return videos.stream()
                 .filter(video -> video.getDeletedFromChat() == null || !video.getDeletedFromChat())
@@ -219,6 +222,7 @@ public class VideoService {
             }
 
             video = videoRepository.save(video);
+            chatSummaryService.recordVideo(video);
             log.info("✅ Vídeo outgoing salvo temporariamente - MessageId: {}, InstanceId: {}", tempMessageId, instanceId);
 
             return convertToDTO(video);
@@ -300,6 +304,7 @@ public class VideoService {
             video.setSavedInGallery(shouldSaveInGallery);
 
             video = videoRepository.save(video);
+            chatSummaryService.recordVideo(video);
             log.info("✅ Vídeo de upload salvo - MessageId: {}, SavedInGallery: {}",
                     tempMessageId, shouldSaveInGallery);
 
@@ -334,6 +339,8 @@ public class VideoService {
                     videoRepository.delete(video);
                     log.info("✅ Vídeo excluído permanentemente do banco - MessageId: {}", messageId);
                 }
+                // ✅ NOVO: O vídeo removido pode ser o que aparece na lista de chats
+                chatSummaryService.rebuild(video.getChat().getId());
             } else {
                 log.warn("⚠️ Vídeo não encontrado no banco - MessageId: {}", messageId);
             }
@@ -347,7 +354,7 @@ public class VideoService {
     /**
      * ✅ MODIFICADO: Converter para DTO (adicionado deletedFromChat)
      */
-    private VideoDTO convertToDTO(Video video) {
+    public VideoDTO convertToDTO(Video video) {
         return VideoDTO.builder()
                 .id(video.getId())
                 .messageId(video.getMessageId())
@@ -0,0 +1,148 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.repositories.WebInstanceRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ NOVO: Cache em memória das WebInstances para o roteamento de webhooks
+ *
+ * Indexado por suaInstancia e por connectedPhone. As instâncias ficam desanexadas
+ * da sessão, com o User já carregado (JOIN FETCH), então podem ser lidas fora da transação.
+ *
+ * IMPORTANTE: Toda escrita em web_instances (e no número de upload do usuário)
+ * deve chamar {@link #invalidateAll()} depois de salvar.
+ *
+ * ✅ MODIFICADO: {@link #invalidateAll()} só limpa a réplica que fez a escrita; as entradas
+ * expiram após webinstance.registry.ttl-seconds, o que limita quanto tempo as outras réplicas
+ * roteiam webhooks com uma instância desatualizada
+ */
+@Service
+@Slf4j
+public class WebInstanceRegistry {
+
+    private final WebInstanceRepository webInstanceRepository;
+
+    private final Cache<String, WebInstance> bySuaInstancia;
+    private final Cache<String, WebInstance> byConnectedPhone;
+
+    // Incrementado a cada invalidação; cargas iniciadas antes dela não são publicadas
+    private final AtomicLong generation = new AtomicLong();
+
+    public WebInstanceRegistry(WebInstanceRepository webInstanceRepository,
+                               @Value("${webinstance.registry.ttl-seconds:60}") long ttlSeconds) {
+        this.webInstanceRepository = webInstanceRepository;
+        this.bySuaInstancia = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.byConnectedPhone = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Resolver a instância do webhook: primeiro por instanceId, depois por connectedPhone
+     */
+    public Optional<WebInstance> resolve(String instanceId, String connectedPhone) {
+        Optional<WebInstance> instanceOpt = Optional.empty();
+
+        if (instanceId != null && !instanceId.trim().isEmpty()) {
+            instanceOpt = findBySuaInstancia(instanceId);
+        }
+
+        if (instanceOpt.isEmpty() && connectedPhone != null) {
+            instanceOpt = findByConnectedPhone(connectedPhone);
+        }
+
+        return instanceOpt;
+    }
+
+    public Optional<WebInstance> findBySuaInstancia(String suaInstancia) {
+        WebInstance cached = bySuaInstancia.getIfPresent(suaInstancia);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long loadGeneration = generation.get();
+        Optional<WebInstance> loaded = webInstanceRepository.findBySuaInstanciaWithUser(suaInstancia);
+        loaded.ifPresent(instance -> publish(instance, loadGeneration));
+        return loaded;
+    }
+
+    public Optional<WebInstance> findByConnectedPhone(String connectedPhone) {
+        WebInstance cached = byConnectedPhone.getIfPresent(connectedPhone);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long loadGeneration = generation.get();
+        Optional<WebInstance> loaded = webInstanceRepository.findByConnectedPhoneWithUser(connectedPhone);
+        loaded.ifPresent(instance -> publish(instance, loadGeneration));
+        return loaded;
+    }
+
+    /**
+     * Descartar todo o cache (escritas em instâncias são raras, algumas por dia)
+     * Dentro de uma transação, descarta de novo após o commit para não manter
+     * um valor lido antes da escrita ficar visível
+     */
+    public void invalidateAll() {
+        clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        bySuaInstancia.invalidateAll();
+        byConnectedPhone.invalidateAll();
+        log.info("🔄 Cache de WebInstances invalidado");
+    }
+
+    /**
+     * Pré-carregar todas as instâncias na subida da aplicação
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            long loadGeneration = generation.get();
+            List<WebInstance> instances = webInstanceRepository.findAllWithUser();
+            instances.forEach(instance -> publish(instance, loadGeneration));
+            log.info("✅ Cache de WebInstances carregado com {} instâncias", instances.size());
+        } catch (Exception e) {
+            log.error("❌ Erro ao pré-carregar cache de WebInstances", e);
+        }
+    }
+
+    private void publish(WebInstance instance, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+        if (instance.getSuaInstancia() != null) {
+            bySuaInstancia.asMap().putIfAbsent(instance.getSuaInstancia(), instance);
+        }
+        if (instance.getConnectedPhone() != null) {
+            byConnectedPhone.asMap().putIfAbsent(instance.getConnectedPhone(), instance);
+        }
+    }
+}
@@ -17,11 +17,16 @@ import com.example.loginauthapi.entities.Audio;
 import com.example.loginauthapi.entities.Photo;
 import com.example.loginauthapi.entities.Video;
 import com.example.loginauthapi.entities.Document;
+import com.example.loginauthapi.services.webhook.WebhookDeduplicationCache;
+import com.example.loginauthapi.services.notification.NotificationEvent;
+import com.example.loginauthapi.services.notification.NotificationEventPublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -41,7 +46,13 @@ public class WebhookService {
     private final DocumentService documentService;
     private final ChatRepository chatRepository;
     private final WebInstanceRepository webInstanceRepository;
-    private final NotificationService notificationService;
+    // ✅ NOVO: Resolução de instância em memória (sem SQL no caminho do webhook)
+    private final WebInstanceRegistry webInstanceRegistry;
+    // ✅ NOVO: Índice em memória phone/chatLid → chatId por instância
+    private final ChatIdentityIndex chatIdentityIndex;
+    // ✅ NOVO: Tipo da mensagem referenciada por reply (consulta única + LRU)
+    private final ReplyTypeResolver replyTypeResolver;
+    private final NotificationEventPublisher notificationEventPublisher;
 
     // ✅ NOVO: Injeções necessárias para remover chats da repescagem
     private final ChatRoutineStateRepository chatRoutineStateRepository;
@@ -58,6 +69,9 @@ public class WebhookService {
     private final MessageRepository messageRepository;
     private final AudioRepository audioRepository;
 
+    // ✅ NOVO: Descarte rápido de webhooks reenviados pela Z-API
+    private final WebhookDeduplicationCache deduplicationCache;
+
     // Constante para identificar a coluna de repescagem
     private static final String REPESCAGEM_COLUMN = "followup";
 
@@ -83,6 +97,14 @@ public class WebhookService {
             String phone = (String) payload.get("phone");
             String instanceId = (String) payload.get("instanceId");
             String messageId = (String) payload.get("messageId");
+
+            // ✅ NOVO: Webhook repetido → descartar antes de qualquer acesso ao banco
+            if (deduplicationCache.isDuplicate(messageId)) {
+                log.info("♻️ Webhook duplicado ignorado - MessageId: {}", messageId);
+                return;
+            }
+            markProcessedAfterCommit(messageId);
+
             String chatName = (String) payload.get("chatName");
             String senderName = (String) payload.get("senderName");
             String status = (String) payload.get("status");
@@ -200,15 +222,7 @@ public class WebhookService {
                     fromMe, phone, instanceId, content);
 
             // ===== BUSCAR INSTÂNCIA POR INSTANCE ID =====
-            Optional<WebInstance> instanceOpt = Optional.empty();
-
-            if (instanceId != null && !instanceId.trim().isEmpty()) {
-                instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-            }
-
-            if (instanceOpt.isEmpty() && connectedPhone != null) {
-                instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-            }
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada - InstanceId: {}, ConnectedPhone: {}",
@@ -282,7 +296,7 @@ public class WebhookService {
             ));
 
             // ===== ATUALIZAR CHAT COM NOVA MENSAGEM (DEPOIS DE ATUALIZAR TIMESTAMP) =====
-            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, content, fromMe);
+            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, fromMe);
 
             // ✅ NOVO: VERIFICAR SE DEVE REMOVER DA REPESCAGEM
             checkAndRemoveFromRepescagem(chat, fromMe, instance);
@@ -306,6 +320,28 @@ public class WebhookService {
     }
 
 
+    /**
+     * ✅ NOVO: Registrar o messageId no cache de deduplicação somente após o commit
+     * Se a transação falhar, o reenvio da Z-API ainda será processado
+     */
+    private void markProcessedAfterCommit(String messageId) {
+        if (messageId == null) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deduplicationCache.markProcessed(messageId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deduplicationCache.markProcessed(messageId);
+            }
+        });
+    }
+
     /**
      * ✅ NOVO: Salvar reply após processar mídia (foto, áudio, vídeo, documento)
      * Este método é chamado quando um reply contém mídia anexada
@@ -318,14 +354,13 @@ public class WebhookService {
                     messageId, referenceMessageId);
 
             // Buscar instância e chat
-            Optional<WebInstance> instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.findBySuaInstancia(instanceId);
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada ao salvar reply de mídia");
                 return;
             }
 
-            Optional<Chat> chatOpt = chatRepository.findByWebInstanceIdAndPhone(
-                    instanceOpt.get().getId(), phone);
+            Optional<Chat> chatOpt = chatIdentityIndex.findByPhone(instanceOpt.get().getId(), phone);
             if (chatOpt.isEmpty()) {
                 log.warn("⚠️ Chat não encontrado ao salvar reply de mídia - Phone: {}", phone);
                 return;
@@ -375,26 +410,10 @@ public class WebhookService {
 
     /**
      * ✅ NOVO: Determinar tipo de reply baseado na mensagem referenciada
+     * ✅ MODIFICADO: Uma única consulta de tipo (com cache) em vez de carregar as entidades de mídia
      */
     private String determineReplyType(String referenceMessageId) {
-        // Verificar se é uma foto
-        if (photoRepository.findByMessageId(referenceMessageId).isPresent()) {
-            return "image";
-        }
-        // Verificar se é um áudio
-        if (audioService.findByMessageId(referenceMessageId).isPresent()) {
-            return "audio";
-        }
-        // Verificar se é um vídeo
-        if (videoRepository.findByMessageId(referenceMessageId).isPresent()) {
-            return "video";
-        }
-        // Verificar se é um documento
-        if (documentRepository.findByMessageId(referenceMessageId).isPresent()) {
-            return "document";
-        }
-        // Por padrão, é texto
-        return "text";
+        return replyTypeResolver.resolve(referenceMessageId);
     }
 
     /**
@@ -425,15 +444,7 @@ public class WebhookService {
             // ✅ ADICIONAR: Extrair chatLid do payload
             String chatLid = (String) payload.get("chatLid");
             // ===== BUSCAR INSTÂNCIA =====
-            Optional<WebInstance> instanceOpt = Optional.empty();
-
-            if (instanceId != null && !instanceId.trim().isEmpty()) {
-                instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-            }
-
-            if (instanceOpt.isEmpty() && connectedPhone != null) {
-                instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-            }
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada para foto");
@@ -451,7 +462,7 @@ public class WebhookService {
             boolean isNewChat = false;
 
             // ===== ATUALIZAR CHAT =====
-            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, photoContent, fromMe);
+            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, fromMe);
 
             photoService.saveIncomingPhoto(
                     chat.getId(), messageId, instanceId, phone, fromMe, momment,
@@ -534,15 +545,7 @@ public class WebhookService {
             // ✅ ADICIONAR: Extrair chatLid do payload
             String chatLid = (String) payload.get("chatLid");
             // ===== BUSCAR INSTÂNCIA =====
-            Optional<WebInstance> instanceOpt = Optional.empty();
-
-            if (instanceId != null && !instanceId.trim().isEmpty()) {
-                instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-            }
-
-            if (instanceOpt.isEmpty() && connectedPhone != null) {
-                instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-            }
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada para áudio");
@@ -560,7 +563,7 @@ public class WebhookService {
             boolean isNewChat = false;
 
             // ===== ATUALIZAR CHAT =====
-            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, audioContent, fromMe);
+            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, fromMe);
 
             // ✅ NOVO: Garantir que senderName esteja correto
             String finalSenderName = senderName;
@@ -638,15 +641,7 @@ public class WebhookService {
 
             // ✅ ADICIONAR: Extrair chatLid do payload
             String chatLid = (String) payload.get("chatLid");
-            Optional<WebInstance> instanceOpt = Optional.empty();
-
-            if (instanceId != null && !instanceId.trim().isEmpty()) {
-                instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-            }
-
-            if (instanceOpt.isEmpty() && connectedPhone != null) {
-                instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-            }
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada para vídeo");
@@ -664,7 +659,7 @@ public class WebhookService {
             boolean isNewChat = false;
 
             // ===== ATUALIZAR CHAT =====
-            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, videoContent, fromMe);
+            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, fromMe);
 
             videoService.saveIncomingVideo(
                     chat.getId(), messageId, instanceId, phone, fromMe, momment,
@@ -788,6 +783,8 @@ public class WebhookService {
             notificationData.put("chatPhone", chat.getPhone());
             notificationData.put("message", messageContent);
             notificationData.put("lastMessageContent", chat.getLastMessageContent());
+            notificationData.put("lastMessageType", chat.getLastMessageType());
+            notificationData.put("lastMessageFromMe", chat.getLastMessageFromMe());
             notificationData.put("unreadCount", chat.getUnread());
             notificationData.put("isNewChat", isNewChat);
             notificationData.put("profileThumbnail", chat.getProfileThumbnail());
@@ -796,7 +793,7 @@ public class WebhookService {
             notificationData.put("column", chat.getColumn());
             notificationData.put("isGroup", chat.getIsGroup());
 
-            notificationService.sendNewMessageNotification(userId, notificationData);
+            notificationEventPublisher.publish(new NotificationEvent.NewMessage(userId, chat.getId(), notificationData));
             log.info("📢 Notificação SSE enviada para usuário: {} (chat: {}, unread: {}, lastMessage: '{}')",
                     userId, chat.getId(), chat.getUnread(), chat.getLastMessageContent());
 
@@ -815,6 +812,8 @@ public class WebhookService {
             chatData.put("chatName", chat.getName());
             chatData.put("chatPhone", chat.getPhone());
             chatData.put("lastMessageContent", chat.getLastMessageContent());
+            chatData.put("lastMessageType", chat.getLastMessageType());
+            chatData.put("lastMessageFromMe", chat.getLastMessageFromMe());
             chatData.put("unreadCount", chat.getUnread());
             chatData.put("profileThumbnail", chat.getProfileThumbnail());
             chatData.put("lastMessageTime", chat.getLastMessageTime() != null ?
@@ -822,7 +821,7 @@ public class WebhookService {
             chatData.put("column", chat.getColumn());
             chatData.put("isGroup", chat.getIsGroup());
 
-            notificationService.sendChatUpdateNotification(userId, chatData);
+            notificationEventPublisher.publish(new NotificationEvent.ChatUpdated(userId, chat.getId(), chatData));
             log.info("🔄 Atualização de chat enviada via SSE para usuário: {} (chat: {}, lastMessage: '{}')",
                     userId, chat.getId(), chat.getLastMessageContent());
 
@@ -862,15 +861,7 @@ public class WebhookService {
             // ✅ ADICIONAR: Extrair chatLid do payload
             String chatLid = (String) payload.get("chatLid");
             // ===== BUSCAR INSTÂNCIA POR INSTANCE ID =====
-            Optional<WebInstance> instanceOpt = Optional.empty();
-
-            if (instanceId != null && !instanceId.trim().isEmpty()) {
-                instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-            }
-
-            if (instanceOpt.isEmpty() && connectedPhone != null) {
-                instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-            }
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada - InstanceId: {}, ConnectedPhone: {}",
@@ -897,7 +888,7 @@ public class WebhookService {
             boolean isNewChat = false;
 
             // ===== ATUALIZAR CHAT =====
-            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, documentContent, fromMe);
+            chat = updateChatWithNewMessage(chat, chatName, senderPhoto, fromMe);
 
             Optional<com.example.loginauthapi.entities.Document> existingDoc =
                     documentRepository.findByMessageId(messageId);
@@ -937,13 +928,6 @@ public class WebhookService {
                     java.time.ZoneId.systemDefault()
             ));
 
-            // Atualizar lastMessageContent
-            if (caption != null && !caption.isEmpty()) {
-                chat.setLastMessageContent(caption);
-            } else {
-                chat.setLastMessageContent("📄 " + (fileName != null ? fileName : "Documento"));
-            }
-
             chat = chatRepository.save(chat);
 
             log.info("✅ Documento processado com sucesso - MessageId: {}, Chat: {}", messageId, chat.getId());
@@ -1000,13 +984,7 @@ public class WebhookService {
                 }
 
                 // Buscar instância
-                Optional<WebInstance> instanceOpt = Optional.empty();
-                if (instanceId != null && !instanceId.trim().isEmpty()) {
-                    instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-                }
-                if (instanceOpt.isEmpty() && connectedPhone != null) {
-                    instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-                }
+                Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
                 if (instanceOpt.isEmpty()) {
                     log.error("❌ WebInstance não encontrada");
@@ -1016,7 +994,7 @@ public class WebhookService {
                 WebInstance instance = instanceOpt.get();
 
                 // Buscar chat pelo phone do webhook
-                Optional<Chat> chatOpt = chatRepository.findByWebInstanceIdAndPhone(instance.getId(), webhookPhone);
+                Optional<Chat> chatOpt = chatIdentityIndex.findByPhone(instance.getId(), webhookPhone);
 
                 if (chatOpt.isEmpty()) {
                     log.warn("⚠️ Chat não encontrado para phone: {}, criando novo chat", webhookPhone);
@@ -1039,15 +1017,7 @@ public class WebhookService {
             }
 
             // 2️⃣ BUSCAR INSTÂNCIA
-            Optional<WebInstance> instanceOpt = Optional.empty();
-
-            if (instanceId != null && !instanceId.trim().isEmpty()) {
-                instanceOpt = webInstanceRepository.findBySuaInstancia(instanceId);
-            }
-
-            if (instanceOpt.isEmpty() && connectedPhone != null) {
-                instanceOpt = webInstanceRepository.findByConnectedPhone(connectedPhone);
-            }
+            Optional<WebInstance> instanceOpt = webInstanceRegistry.resolve(instanceId, connectedPhone);
 
             if (instanceOpt.isEmpty()) {
                 log.warn("⚠️ WebInstance não encontrada");
@@ -1107,7 +1077,6 @@ public class WebhookService {
                     java.time.Instant.ofEpochMilli(momment),
                     java.time.ZoneId.systemDefault()
             ));
-            chat.setLastMessageContent(mensagemEnviada);
 
             if (!fromMe) {
                 chat.setUnread(chat.getUnread() + 1);
@@ -1203,36 +1172,26 @@ public class WebhookService {
             return;
         }
 
-        // Verificar se é áudio
-        Optional<Audio> audioOpt = audioRepository.findByMessageId(referenceMessageId);
-        if (audioOpt.isPresent()) {
-            replyService.saveAudioReply(messageId, referenceMessageId, chatId,
-                    mensagemEnviada, fromMe, timestamp);
-            return;
-        }
-
-        // Verificar se é imagem
-        Optional<Photo> photoOpt = photoRepository.findByMessageId(referenceMessageId);
-        if (photoOpt.isPresent()) {
-            replyService.saveImageReply(messageId, referenceMessageId, chatId,
-                    mensagemEnviada, fromMe, timestamp);
-            return;
-        }
-
-        // Verificar se é vídeo
-        Optional<Video> videoOpt = videoRepository.findByMessageId(referenceMessageId);
-        if (videoOpt.isPresent()) {
-            replyService.saveVideoReply(messageId, referenceMessageId, chatId,
-                    mensagemEnviada, fromMe, timestamp);
-            return;
-        }
-
-        // Verificar se é documento
-        Optional<Document> documentOpt = documentRepository.findByMessageId(referenceMessageId);
-        if (documentOpt.isPresent()) {
-            replyService.saveDocumentReply(messageId, referenceMessageId, chatId,
-                    mensagemEnviada, fromMe, timestamp);
-            return;
+        // ✅ MODIFICADO: Mídia → tipo resolvido em uma única consulta
+        switch (determineReplyType(referenceMessageId)) {
+            case "audio":
+                replyService.saveAudioReply(messageId, referenceMessageId, chatId,
+                        mensagemEnviada, fromMe, timestamp);
+                return;
+            case "image":
+                replyService.saveImageReply(messageId, referenceMessageId, chatId,
+                        mensagemEnviada, fromMe, timestamp);
+                return;
+            case "video":
+                replyService.saveVideoReply(messageId, referenceMessageId, chatId,
+                        mensagemEnviada, fromMe, timestamp);
+                return;
+            case "document":
+                replyService.saveDocumentReply(messageId, referenceMessageId, chatId,
+                        mensagemEnviada, fromMe, timestamp);
+                return;
+            default:
+                break;
         }
 
         // Fallback: salvar como texto se não identificar tipo
@@ -1274,7 +1233,7 @@ public class WebhookService {
         // ✅ PASSO 1: Tentar buscar por chatLid (se existir)
         if (chatLid != null && !chatLid.trim().isEmpty()) {
             log.info("🔍 Buscando chat por chatLid: {}", chatLid);
-            chatOpt = chatRepository.findByWebInstanceIdAndChatLid(instance.getId(), chatLid);
+            chatOpt = chatIdentityIndex.findByChatLid(instance.getId(), chatLid);
 
             if (chatOpt.isPresent()) {
                 log.info("✅ Chat encontrado por chatLid");
@@ -1298,8 +1257,7 @@ public class WebhookService {
                     log.info("🔍 [DEBUG] Verificando se já existe chat com phone: '{}'", phone);
 
                     // ✅ VERIFICAR SE JÁ EXISTE OUTRO CHAT COM ESSE PHONE
-                    Optional<Chat> existingChatWithPhone = chatRepository.findByWebInstanceIdAndPhone(
-                            instance.getId(), phone);
+                    Optional<Chat> existingChatWithPhone = chatIdentityIndex.findByPhone(instance.getId(), phone);
 
                     log.info("🔍 [DEBUG] Chat com phone '{}' existe? {}",
                             phone, existingChatWithPhone.isPresent());
@@ -1332,6 +1290,10 @@ public class WebhookService {
 
                         chatRepository.save(realChat);
 
+                        // ✅ NOVO: Manter o índice coerente com a fusão (temporário sai, real assume o chatLid)
+                        chatIdentityIndex.forget(instance.getId(), chat);
+                        chatIdentityIndex.record(instance.getId(), realChat);
+
                         // ✅ CORREÇÃO: Deletar em transação separada para evitar rollback
                         String temporaryChatId = chat.getId();
                         deleteTemporaryChatInNewTransaction(temporaryChatId);
@@ -1343,6 +1305,7 @@ public class WebhookService {
                     log.info("🔍 [DEBUG] Atualizando chat temporário com phone revelado");
                     log.info("🔍 [DEBUG] Antes - Phone: '{}', Name: '{}'", chat.getPhone(), chat.getName());
 
+                    String previousPhone = chat.getPhone();
                     chat.setPhone(phone);
 
                     // Atualizar name revelado (se não for apenas números)
@@ -1354,6 +1317,8 @@ public class WebhookService {
                     }
 
                     chatRepository.save(chat);
+                    chatIdentityIndex.forgetPhone(instance.getId(), previousPhone, chat.getId());
+                    chatIdentityIndex.record(instance.getId(), chat);
                     log.info("🔍 [DEBUG] Depois - Phone: '{}', Name: '{}'", chat.getPhone(), chat.getName());
                 }
 
@@ -1367,7 +1332,7 @@ public class WebhookService {
         // ✅ CORREÇÃO: Buscar por phone MESMO que contenha @lid para evitar duplicação
         if (phone != null && !phone.trim().isEmpty()) {
             log.info("🔍 Buscando chat por phone: {}", phone);
-            chatOpt = chatRepository.findByWebInstanceIdAndPhone(instance.getId(), phone);
+            chatOpt = chatIdentityIndex.findByPhone(instance.getId(), phone);
 
             if (chatOpt.isPresent()) {
                 log.info("✅ Chat encontrado por phone");
@@ -1377,6 +1342,7 @@ public class WebhookService {
                 if (chatLid != null && chat.getChatLid() == null) {
                     chat.setChatLid(chatLid);
                     chatRepository.save(chat);
+                    chatIdentityIndex.record(instance.getId(), chat);
                     log.info("✅ ChatLid adicionado ao chat existente: {}", chatLid);
                 }
 
@@ -1389,7 +1355,8 @@ public class WebhookService {
         log.info("🔍 [DEBUG] Chat não encontrado nem por chatLid nem por phone, criando NOVO");
 
         Chat newChat = new Chat();
-        newChat.setWebInstance(instance);
+        // A instância vem do cache (desanexada); usar referência gerenciada para a FK
+        newChat.setWebInstance(webInstanceRepository.getReferenceById(instance.getId()));
         newChat.setChatLid(chatLid); // Sempre salvar chatLid
 
         // ✅ CORREÇÃO: Salvar phone com @lid para chats temporários
@@ -1418,6 +1385,7 @@ public class WebhookService {
         newChat.setLastMessageContent(truncateMessage(content, 50));
 
         newChat = chatRepository.save(newChat);
+        chatIdentityIndex.record(instance.getId(), newChat);
 
         log.info("✅ Novo chat criado - ID: {}, ChatLid: {}, Phone: {}, Name: {}",
                 newChat.getId(), newChat.getChatLid(), newChat.getPhone(), newChat.getName());
@@ -1453,7 +1421,7 @@ public class WebhookService {
         int totalMigrated = 0;
 
         // Migrar mensagens de texto
-        List<Message> messages = messageRepository.findByChatIdOrderByTimestampAsc(temporaryChat.getId());
+        List<Message> messages = messageRepository.findByChatIdOrderByTimestampAscIdAsc(temporaryChat.getId());
         for (Message msg : messages) {
             msg.setChat(realChat);
             totalMigrated++;
@@ -1464,7 +1432,7 @@ public class WebhookService {
         }
 
         // Migrar áudios
-        List<Audio> audios = audioRepository.findByChatIdOrderByTimestampAsc(temporaryChat.getId());
+        List<Audio> audios = audioRepository.findByChatIdOrderByTimestampAscIdAsc(temporaryChat.getId());
         for (Audio audio : audios) {
             audio.setChat(realChat);
             totalMigrated++;
@@ -1475,7 +1443,7 @@ public class WebhookService {
         }
 
         // Migrar fotos
-        List<Photo> photos = photoRepository.findByChatIdOrderByTimestampAsc(temporaryChat.getId());
+        List<Photo> photos = photoRepository.findByChatIdOrderByTimestampAscIdAsc(temporaryChat.getId());
         for (Photo photo : photos) {
             photo.setChat(realChat);
             totalMigrated++;
@@ -1486,7 +1454,7 @@ public class WebhookService {
         }
 
         // Migrar vídeos
-        List<Video> videos = videoRepository.findByChatIdOrderByTimestampAsc(temporaryChat.getId());
+        List<Video> videos = videoRepository.findByChatIdOrderByTimestampAscIdAsc(temporaryChat.getId());
         for (Video video : videos) {
             video.setChat(realChat);
             totalMigrated++;
@@ -1497,7 +1465,7 @@ public class WebhookService {
         }
 
         // Migrar documentos
-        List<Document> documents = documentRepository.findByChatIdOrderByTimestampAsc(temporaryChat.getId());
+        List<Document> documents = documentRepository.findByChatIdOrderByTimestampAscIdAsc(temporaryChat.getId());
         for (Document doc : documents) {
             doc.setChat(realChat);
             totalMigrated++;
@@ -1535,8 +1503,7 @@ public class WebhookService {
     /**
      * ✅ NOVO MÉTODO: Atualizar chat com nova mensagem
      */
-    private Chat updateChatWithNewMessage(Chat chat, String chatName, String senderPhoto,
-                                          String content, Boolean fromMe) {
+    private Chat updateChatWithNewMessage(Chat chat, String chatName, String senderPhoto, Boolean fromMe) {
         int previousUnread = chat.getUnread();
 
         // Atualizar nome se mudou (e é válido)
@@ -1550,8 +1517,7 @@ public class WebhookService {
             chat.setProfileThumbnail(senderPhoto);
         }
 
-        // ✅ ATUALIZAR lastMessageContent SEMPRE
-        chat.setLastMessageContent(truncateMessage(content, 50));
+        // lastMessageContent/Type/FromMe são mantidos pelo ChatSummaryService ao salvar o conteúdo
 
         // ✅ LÓGICA DE CONTADOR baseada em fromMe
         if (fromMe) {
@@ -0,0 +1,24 @@
+package com.example.loginauthapi.services.notification;
+
+import com.example.loginauthapi.services.NotificationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * ✅ NOVO: Barramento em memória (uma única réplica)
+ */
+@Component
+@ConditionalOnProperty(name = "sse.bus.type", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LocalNotificationBus implements NotificationBus {
+
+    private final NotificationService notificationService;
+
+    @Override
+    public void publish(String userId, List<NotificationEvent> events) {
+        notificationService.dispatch(userId, events);
+    }
+}
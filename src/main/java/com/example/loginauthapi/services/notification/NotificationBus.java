@@ -0,0 +1,22 @@
+package com.example.loginauthapi.services.notification;
+
+import java.util.List;
+
+/**
+ * ✅ NOVO: Barramento de distribuição das notificações entre réplicas
+ *
+ * As conexões SSE ficam na memória da réplica em que o navegador conectou, então um evento
+ * gerado em outra réplica precisa passar por aqui para chegar a todas elas.
+ * Cada implementação entrega os eventos ao NotificationService local e às demais réplicas.
+ *
+ * Selecionado por sse.bus.type:
+ * - local: apenas esta JVM ({@link LocalNotificationBus}, padrão / réplica única)
+ * - postgres: LISTEN/NOTIFY no banco da aplicação ({@link PostgresNotificationBus})
+ */
+public interface NotificationBus {
+
+    /**
+     * Distribuir eventos de um usuário para todas as réplicas (inclusive esta)
+     */
+    void publish(String userId, List<NotificationEvent> events);
+}
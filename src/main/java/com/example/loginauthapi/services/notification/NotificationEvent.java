@@ -0,0 +1,98 @@
+package com.example.loginauthapi.services.notification;
+
+import java.util.Map;
+
+/**
+ * ✅ NOVO: Eventos de domínio que viram notificações SSE
+ *
+ * Publicados via {@link NotificationEventPublisher}: dentro de uma transação só são
+ * entregues ao {@link com.example.loginauthapi.services.NotificationService} após o commit.
+ */
+public sealed interface NotificationEvent {
+
+    String userId();
+
+    Map<String, Object> data();
+
+    /**
+     * Nome do evento SSE recebido pelo frontend
+     */
+    String eventName();
+
+    /**
+     * Eventos com a mesma chave substituem uns aos outros antes do envio (null = nunca)
+     */
+    default String coalesceKey() {
+        return null;
+    }
+
+    /**
+     * ✅ NOVO: Reconstruir um evento recebido de outra réplica (ver {@link NotificationBus})
+     *
+     * @return null se o tipo não for conhecido por esta versão da aplicação
+     */
+    static NotificationEvent restore(String userId, String eventName, String coalesceKey, Map<String, Object> data) {
+        return switch (eventName) {
+            case "chat-update" -> new ChatUpdated(userId, keySuffix(coalesceKey, "chat-update:"), data);
+            case "new-message" -> new NewMessage(userId, data.get("chatId") != null ? data.get("chatId").toString() : null, data);
+            case "tag-update" -> new TagChanged(userId, keySuffix(coalesceKey, "tag:"), false, data);
+            case "tag-delete" -> new TagChanged(userId, keySuffix(coalesceKey, "tag:"), true, data);
+            case "task-completed" -> new TaskCompleted(userId, data);
+            default -> null;
+        };
+    }
+
+    private static String keySuffix(String key, String prefix) {
+        return key != null && key.startsWith(prefix) ? key.substring(prefix.length()) : key;
+    }
+
+    /**
+     * Estado do chat mudou (mensagem enviada, coluna, contador...)
+     */
+    record ChatUpdated(String userId, String chatId, Map<String, Object> data) implements NotificationEvent {
+        @Override
+        public String eventName() {
+            return "chat-update";
+        }
+
+        @Override
+        public String coalesceKey() {
+            return "chat-update:" + chatId;
+        }
+    }
+
+    /**
+     * Nova mensagem recebida em um chat
+     */
+    record NewMessage(String userId, String chatId, Map<String, Object> data) implements NotificationEvent {
+        @Override
+        public String eventName() {
+            return "new-message";
+        }
+    }
+
+    /**
+     * Tag criada/alterada ou excluída
+     */
+    record TagChanged(String userId, String tagId, boolean deleted, Map<String, Object> data) implements NotificationEvent {
+        @Override
+        public String eventName() {
+            return deleted ? "tag-delete" : "tag-update";
+        }
+
+        @Override
+        public String coalesceKey() {
+            return "tag:" + tagId;
+        }
+    }
+
+    /**
+     * Tarefa ou rotina concluída para um chat
+     */
+    record TaskCompleted(String userId, Map<String, Object> data) implements NotificationEvent {
+        @Override
+        public String eventName() {
+            return "task-completed";
+        }
+    }
+}
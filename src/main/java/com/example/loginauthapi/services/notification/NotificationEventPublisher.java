@@ -0,0 +1,96 @@
+package com.example.loginauthapi.services.notification;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ NOVO: Publicação de notificações somente após o commit
+ *
+ * - Dentro de uma transação: os eventos são acumulados e entregues no afterCommit,
+ *   agrupados por usuário (um único frame quando há mais de um evento)
+ * - Rollback: os eventos são descartados, o frontend nunca vê um estado que não existe
+ * - Sem transação ativa: entrega imediata
+ * - A entrega passa pelo {@link NotificationBus}, que replica os eventos para as outras réplicas
+ *
+ * O buffer fica na própria TransactionSynchronization, então transações REQUIRES_NEW
+ * internas têm o seu próprio buffer (sincronizações são suspensas junto com a transação externa).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationEventPublisher {
+
+    private final NotificationBus notificationBus;
+
+    public void publish(NotificationEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            flush(List.of(event));
+            return;
+        }
+
+        PendingEvents pending = null;
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingEvents p && p.owner == this) {
+                pending = p;
+                break;
+            }
+        }
+
+        if (pending == null) {
+            pending = new PendingEvents(this);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+
+        pending.events.add(event);
+    }
+
+    private void flush(List<NotificationEvent> events) {
+        // Agrupar por usuário mantendo a ordem de publicação
+        Map<String, List<NotificationEvent>> byUser = new LinkedHashMap<>();
+        for (NotificationEvent event : events) {
+            if (event.userId() != null) {
+                byUser.computeIfAbsent(event.userId(), id -> new ArrayList<>()).add(event);
+            }
+        }
+
+        byUser.forEach((userId, userEvents) -> {
+            try {
+                notificationBus.publish(userId, userEvents);
+            } catch (Exception e) {
+                log.error("❌ Erro ao entregar notificações do usuário {}", userId, e);
+            }
+        });
+    }
+
+    private static final class PendingEvents implements TransactionSynchronization {
+
+        private final NotificationEventPublisher owner;
+        private final List<NotificationEvent> events = new ArrayList<>();
+
+        private PendingEvents(NotificationEventPublisher owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCommit() {
+            owner.flush(events);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED && !events.isEmpty()) {
+                log.debug("ℹ️ {} notificações descartadas (transação não confirmada)", events.size());
+            }
+            events.clear();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.loginauthapi.services.notification;
+
+import com.example.loginauthapi.services.NotificationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ NOVO: Barramento entre réplicas via Postgres LISTEN/NOTIFY
+ *
+ * - publish: entrega local imediata + NOTIFY no canal "sse_events" (thread "Sse-Bus-Sender-",
+ *   fora da transação de negócio, preservando a ordem)
+ * - Cada réplica mantém uma conexão dedicada com LISTEN ("Sse-Bus-Listener") e entrega ao
+ *   NotificationService local os eventos publicados pelas outras réplicas
+ * - Payloads acima do limite do NOTIFY (8000 bytes) são gravados em sse_bus_events
+ *   e o NOTIFY leva apenas a referência
+ *
+ * Atenção: a conexão do LISTEN fica reservada do pool do Hikari enquanto a aplicação roda.
+ */
+@Component
+@ConditionalOnProperty(name = "sse.bus.type", havingValue = "postgres")
+@Slf4j
+public class PostgresNotificationBus implements NotificationBus {
+
+    private static final String CHANNEL = "sse_events";
+    private static final int MAX_INLINE_PAYLOAD_BYTES = 7000;
+    private static final int SENDER_QUEUE_CAPACITY = 10_000;
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    /**
+     * Mensagem trafegada no canal; events vazio + ref = payload gravado em sse_bus_events
+     */
+    record Envelope(String origin, String userId, List<WireEvent> events, Long ref) {
+    }
+
+    record WireEvent(String type, String key, Map<String, Object> data) {
+    }
+
+    // Identifica esta réplica para ignorar os próprios NOTIFY
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final NotificationService notificationService;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor sender;
+
+    private final Counter sentCounter;
+    private final Counter receivedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresNotificationBus(NotificationService notificationService,
+                                   DataSource dataSource,
+                                   JdbcTemplate jdbcTemplate,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry) {
+        this.notificationService = notificationService;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.sender = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(SENDER_QUEUE_CAPACITY), new CustomizableThreadFactory("Sse-Bus-Sender-"));
+
+        this.sentCounter = Counter.builder("sse.bus.sent")
+                .description("Mensagens publicadas no canal entre réplicas")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("sse.bus.received")
+                .description("Mensagens recebidas de outras réplicas")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("sse.bus.failed")
+                .description("Falhas ao publicar ou processar mensagens do canal")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener = new Thread(this::listenLoop, "Sse-Bus-Listener");
+        listener.setDaemon(true);
+        listener.start();
+        log.info("📡 Barramento SSE Postgres iniciado - Réplica: {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        sender.shutdown();
+        try {
+            sender.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void publish(String userId, List<NotificationEvent> events) {
+        notificationService.dispatch(userId, events);
+
+        try {
+            sender.execute(() -> send(userId, events));
+        } catch (RejectedExecutionException e) {
+            failedCounter.increment();
+            log.warn("⚠️ Fila do barramento SSE cheia, eventos não replicados - UserId: {}", userId);
+        }
+    }
+
+    private void send(String userId, List<NotificationEvent> events) {
+        try {
+            List<WireEvent> wire = new ArrayList<>(events.size());
+            for (NotificationEvent event : events) {
+                wire.add(new WireEvent(event.eventName(), event.coalesceKey(), event.data()));
+            }
+
+            String payload = objectMapper.writeValueAsString(new Envelope(nodeId, userId, wire, null));
+            if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_INLINE_PAYLOAD_BYTES) {
+                Long id = jdbcTemplate.queryForObject(
+                        "INSERT INTO sse_bus_events (payload) VALUES (?) RETURNING id", Long.class, payload);
+                payload = objectMapper.writeValueAsString(new Envelope(nodeId, userId, List.of(), id));
+            }
+
+            // Fora de transação: o NOTIFY é enviado assim que o comando termina
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null, CHANNEL, payload);
+            sentCounter.increment();
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("❌ Erro ao replicar notificações do usuário {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                log.info("👂 Escutando o canal {} para notificações de outras réplicas", CHANNEL);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("⚠️ Conexão do LISTEN perdida, reconectando em {}ms: {}", RECONNECT_DELAY_MS, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            Envelope envelope = objectMapper.readValue(payload, Envelope.class);
+            if (nodeId.equals(envelope.origin())) {
+                return;
+            }
+
+            if (envelope.ref() != null) {
+                String stored = jdbcTemplate.queryForObject(
+                        "SELECT payload FROM sse_bus_events WHERE id = ?", String.class, envelope.ref());
+                envelope = objectMapper.readValue(stored, Envelope.class);
+            }
+
+            List<NotificationEvent> events = new ArrayList<>(envelope.events().size());
+            for (WireEvent wire : envelope.events()) {
+                NotificationEvent event = NotificationEvent.restore(
+                        envelope.userId(), wire.type(), wire.key(), wire.data() != null ? wire.data() : Map.of());
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+
+            receivedCounter.increment();
+            if (!events.isEmpty()) {
+                notificationService.dispatch(envelope.userId(), events);
+            }
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("❌ Erro ao processar notificação de outra réplica: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Remover payloads grandes que todas as réplicas já tiveram tempo de ler
+     */
+    @Scheduled(fixedDelay = 300000)
+    public void purgeStoredPayloads() {
+        int removed = jdbcTemplate.update(
+                "DELETE FROM sse_bus_events WHERE created_at < NOW() - INTERVAL '10 minutes'");
+        if (removed > 0) {
+            log.debug("🧹 {} payloads antigos removidos de sse_bus_events", removed);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.loginauthapi.services.notification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ✅ NOVO: Últimos eventos SSE enviados a um usuário, para retomada via Last-Event-ID
+ *
+ * Não é thread-safe: o NotificationService acessa sempre com o lock do próprio buffer,
+ * o mesmo usado para registrar conexões, garantindo que nenhum evento se perca
+ * ou seja duplicado entre o replay e o fluxo ao vivo.
+ */
+public class ReplayBuffer {
+
+    private final int capacity;
+    private final ArrayDeque<SseConnection.OutboundEvent> events;
+    private long lastAppendMillis = System.currentTimeMillis();
+
+    // true depois de removido do mapa de buffers (quem ainda tiver a referência deve buscar outro)
+    private boolean evicted;
+
+    public ReplayBuffer(int capacity) {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    public void append(SseConnection.OutboundEvent event) {
+        if (events.size() >= capacity) {
+            events.pollFirst();
+        }
+        events.addLast(event);
+        lastAppendMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Eventos posteriores ao id informado
+     *
+     * @return null se o id não está mais (ou nunca esteve) no buffer, ou seja, o replay não é possível
+     */
+    public List<SseConnection.OutboundEvent> after(long lastEventId) {
+        List<SseConnection.OutboundEvent> missed = new ArrayList<>();
+        Iterator<SseConnection.OutboundEvent> it = events.descendingIterator();
+        while (it.hasNext()) {
+            SseConnection.OutboundEvent event = it.next();
+            if (event.id() != null && event.id() == lastEventId) {
+                Collections.reverse(missed);
+                return missed;
+            }
+            missed.add(event);
+        }
+        return null;
+    }
+
+    public boolean idleSince(long cutoffMillis) {
+        return lastAppendMillis < cutoffMillis;
+    }
+
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    public void markEvicted() {
+        evicted = true;
+    }
+}
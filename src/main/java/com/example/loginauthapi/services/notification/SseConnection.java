@@ -0,0 +1,314 @@
+package com.example.loginauthapi.services.notification;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * ✅ NOVO: Uma conexão SSE (aba do navegador) com fila de saída própria e limitada
+ *
+ * - {@link #offer(OutboundEvent)} só mexe na fila em memória: nunca bloqueia quem publica
+ * - Eventos com a mesma coalesceKey ainda não enviados são substituídos pelo mais novo
+ * - Fila cheia → o evento mais antigo é descartado (o cliente recebe o estado mais recente)
+ * - {@link #drain(LongConsumer)} é executado por no máximo uma thread de escrita por vez, preservando a ordem
+ * - Heartbeats (comentário SSE) não ocupam a fila e só são escritos se não houver eventos pendentes
+ * - ✅ NOVO: A escrita em andamento fica registrada; uma escrita travada (cliente parou de ler)
+ *   é abandonada com {@link #abortWrite()}, que fecha a conexão e interrompe a thread de escrita
+ * - ✅ NOVO: O emitter só é encerrado (complete) na thread de escrita, depois que a escrita em andamento
+ *   retorna ({@link #closeAndComplete}): send e complete usam o mesmo lock do ResponseBodyEmitter, e quem
+ *   pede o encerramento (agendador, nova conexão do usuário) nunca espera por um socket travado
+ */
+@Slf4j
+public class SseConnection {
+
+    public enum OfferResult { QUEUED, COALESCED, DROPPED_OLDEST, CLOSED }
+
+    /**
+     * Evento aguardando envio
+     *
+     * @param id          id SSE (Last-Event-ID na reconexão); null para eventos de controle
+     * @param coalesceKey eventos com a mesma chave substituem uns aos outros na fila (null = nunca)
+     */
+    public record OutboundEvent(Long id, String name, Object data, String coalesceKey) {
+    }
+
+    @Getter
+    private final String userId;
+    @Getter
+    private final SseEmitter emitter;
+    private final int capacity;
+    private final ArrayDeque<OutboundEvent> queue;
+
+    // true enquanto houver uma tarefa de escrita agendada ou rodando para esta conexão
+    private boolean draining;
+    private boolean heartbeatPending;
+    private volatile boolean closed;
+
+    // ✅ NOVO: encerramento do emitter pedido (executado pela thread de escrita) e já executado
+    private boolean completionRequested;
+    private Throwable completionError;
+    private boolean completed;
+
+    // ✅ NOVO: última escrita bem-sucedida no socket (evento ou heartbeat), usada para detectar conexões mortas
+    private volatile long lastWriteMillis = System.currentTimeMillis();
+
+    // ✅ NOVO: início da escrita em andamento (0 = nenhuma) e a thread que está escrevendo
+    private volatile long writeStartedMillis;
+    private Thread writer;
+
+    public SseConnection(String userId, SseEmitter emitter, int capacity) {
+        this.userId = userId;
+        this.emitter = emitter;
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    /**
+     * Enfileirar um evento
+     *
+     * @param scheduleDrain chamado (fora do lock) quando a conexão precisa de uma nova tarefa de escrita
+     */
+    public OfferResult offer(OutboundEvent event, Consumer<SseConnection> scheduleDrain) {
+        OfferResult result;
+        boolean schedule = false;
+
+        synchronized (this) {
+            if (closed) {
+                return OfferResult.CLOSED;
+            }
+
+            result = OfferResult.QUEUED;
+            if (event.coalesceKey() != null && replaceQueued(event)) {
+                result = OfferResult.COALESCED;
+            } else {
+                if (queue.size() >= capacity) {
+                    queue.pollFirst();
+                    result = OfferResult.DROPPED_OLDEST;
+                }
+                queue.addLast(event);
+            }
+
+            if (!draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+
+        if (schedule) {
+            scheduleDrain.accept(this);
+        }
+        return result;
+    }
+
+    /**
+     * ✅ NOVO: Pedir um heartbeat na próxima escrita
+     *
+     * @return false se a conexão já está fechada
+     */
+    public boolean offerHeartbeat(Consumer<SseConnection> scheduleDrain) {
+        boolean schedule = false;
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            heartbeatPending = true;
+            if (!draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+
+        if (schedule) {
+            scheduleDrain.accept(this);
+        }
+        return true;
+    }
+
+    private boolean replaceQueued(OutboundEvent event) {
+        Iterator<OutboundEvent> it = queue.iterator();
+        while (it.hasNext()) {
+            if (Objects.equals(it.next().coalesceKey(), event.coalesceKey())) {
+                it.remove();
+                queue.addLast(event);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Enviar tudo que está na fila (executado na thread de escrita)
+     *
+     * @param heartbeatLatency recebe o tempo (ns) de escrita de cada heartbeat
+     * @return quantidade de frames de evento escritos, ou -1 se a conexão falhou e deve ser removida
+     */
+    public int drain(LongConsumer heartbeatLatency) {
+        int written = 0;
+        while (true) {
+            OutboundEvent event;
+            boolean heartbeat;
+            synchronized (this) {
+                if (closed) {
+                    draining = false;
+                    event = null;
+                    heartbeat = false;
+                } else {
+                    event = queue.pollFirst();
+                    heartbeat = event == null && heartbeatPending;
+                    heartbeatPending = false;
+                    if (event == null && !heartbeat) {
+                        draining = false;
+                        return written;
+                    }
+                }
+            }
+            if (event == null && !heartbeat) {
+                // Fechada: encerra o emitter aqui, se pedido, sem nenhuma escrita em andamento
+                completeIfRequested();
+                return -1;
+            }
+
+            try {
+                beginWrite();
+                if (heartbeat) {
+                    long start = System.nanoTime();
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    heartbeatLatency.accept(System.nanoTime() - start);
+                    lastWriteMillis = System.currentTimeMillis();
+                    continue;
+                }
+
+                SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                        .name(event.name())
+                        .data(event.data());
+                if (event.id() != null) {
+                    builder.id(event.id().toString());
+                }
+                emitter.send(builder);
+                lastWriteMillis = System.currentTimeMillis();
+                written++;
+            } catch (Exception e) {
+                log.debug("Falha ao escrever no cliente SSE - UserId: {}, Erro: {}", userId, e.getMessage());
+                synchronized (this) {
+                    closed = true;
+                    queue.clear();
+                    draining = false;
+                }
+                completeIfRequested();
+                return -1;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    private synchronized void beginWrite() {
+        writer = Thread.currentThread();
+        writeStartedMillis = System.currentTimeMillis();
+    }
+
+    private synchronized void endWrite() {
+        writer = null;
+        writeStartedMillis = 0;
+    }
+
+    /**
+     * ✅ NOVO: Há uma escrita em andamento há mais de timeoutMillis?
+     */
+    public boolean isWriteStuck(long now, long timeoutMillis) {
+        long started = writeStartedMillis;
+        return started != 0 && now - started >= timeoutMillis;
+    }
+
+    /**
+     * ✅ NOVO: Abandonar uma escrita travada: fecha a conexão e interrompe a thread de escrita
+     */
+    public void abortWrite() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+            if (writer != null) {
+                writer.interrupt();
+            }
+        }
+    }
+
+    /**
+     * ✅ NOVO: Fechar a conexão e encerrar o emitter sem bloquear quem chama
+     * Com uma escrita em andamento, o encerramento fica para a thread de escrita quando ela retornar;
+     * sem escrita, uma tarefa de escrita é agendada só para encerrar
+     *
+     * @param error null para complete(), senão completeWithError(error)
+     */
+    public void closeAndComplete(Throwable error, Consumer<SseConnection> scheduleDrain) {
+        boolean schedule = false;
+
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+            if (completionRequested) {
+                return;
+            }
+            completionRequested = true;
+            completionError = error;
+            if (!draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+
+        if (schedule) {
+            scheduleDrain.accept(this);
+        }
+    }
+
+    private void completeIfRequested() {
+        Throwable error;
+        synchronized (this) {
+            if (!completionRequested || completed) {
+                return;
+            }
+            completed = true;
+            error = completionError;
+        }
+
+        try {
+            if (error != null) {
+                emitter.completeWithError(error);
+            } else {
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            log.debug("Erro ao encerrar emitter SSE - UserId: {}, Erro: {}", userId, e.getMessage());
+        }
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    public long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Descartar a fila e parar de aceitar eventos
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+    }
+}
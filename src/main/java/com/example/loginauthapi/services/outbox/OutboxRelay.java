@@ -0,0 +1,419 @@
+package com.example.loginauthapi.services.outbox;
+
+import com.example.loginauthapi.dto.zapi.ZapiSendRequest;
+import com.example.loginauthapi.dto.zapi.ZapiSendResponseDTO;
+import com.example.loginauthapi.entities.OutboundMessage;
+import com.example.loginauthapi.entities.OutboundMessageSource;
+import com.example.loginauthapi.entities.OutboundMessageStatus;
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.exceptions.RateLimitException;
+import com.example.loginauthapi.exceptions.ZapiCircuitOpenException;
+import com.example.loginauthapi.repositories.OutboundMessageRepository;
+import com.example.loginauthapi.repositories.WebInstanceRepository;
+import com.example.loginauthapi.services.MessageService;
+import com.example.loginauthapi.services.PhotoService;
+import com.example.loginauthapi.services.VideoService;
+import com.example.loginauthapi.services.zapi.ZapiCircuitBreaker;
+import com.example.loginauthapi.services.zapi.ZapiGateway;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * ✅ NOVO: Relay do outbox de envios (outbound_messages → Z-API)
+ *
+ * - A cada outbox.relay.poll-interval-ms, cada instância com envios pendentes ganha um drain no
+ *   executor "Outbox-Relay-" (no máximo um por instância nesta réplica, até outbox.relay.batch-size
+ *   envios por vez para as outras instâncias também andarem)
+ * - Cada envio é reivindicado com UPDATE ... RETURNING (em ordem, um SENDING por instância) e sai
+ *   pelo {@link ZapiGateway#send}, que aplica o circuit breaker e o limite de envios da instância.
+ *   A reivindicação (inclusive a do envio manual) roda sob um lock de transação da instância, para
+ *   duas réplicas não reivindicarem envios da mesma instância ao mesmo tempo. Envios manuais vêm
+ *   antes dos de campanha/rotina/tarefa na fila da instância
+ * - Aceito pela Z-API: o messageId real é gravado na linha primeiro e só depois devolvido para
+ *   messages/photos/videos (updateMessageIdAfterSend e equivalentes). Se o processo cair no meio,
+ *   a varredura termina a reconciliação a partir da linha
+ * - Falhas em que a Z-API certamente não recebeu a mensagem (circuito aberto, limite de envios,
+ *   erro de conexão, 429/503) voltam para a fila com espera crescente; as demais (inclusive 500/502/504
+ *   e timeout de leitura, em que a Z-API pode ter recebido o envio) viram FAILED
+ * - Linhas em SENDING por mais de outbox.relay.sending-timeout-seconds (restart no meio da chamada)
+ *   viram UNKNOWN e NÃO são reenviadas: sem idempotência na Z-API, reenviar poderia duplicar a mensagem.
+ *   A varredura também fecha o registro local delas (status UNKNOWN, em vez de PENDING para sempre)
+ *
+ * Métrica: outbox.messages{outcome=sent|retry|failed|unknown}.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final List<OutboundMessageStatus> RECONCILE_STATUSES =
+            List.of(OutboundMessageStatus.SENT, OutboundMessageStatus.FAILED, OutboundMessageStatus.UNKNOWN);
+
+    private final OutboundMessageRepository outboundMessageRepository;
+    private final WebInstanceRepository webInstanceRepository;
+    private final ZapiGateway zapiGateway;
+    private final ZapiCircuitBreaker zapiCircuitBreaker;
+    private final MessageService messageService;
+    private final PhotoService photoService;
+    private final VideoService videoService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryDelaySeconds;
+    private final long sendingTimeoutSeconds;
+    private final int retentionDays;
+
+    private final ExecutorService relayExecutor;
+
+    // Instâncias com drain em andamento nesta réplica
+    private final Set<String> drainingInstances = ConcurrentHashMap.newKeySet();
+
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter failedCounter;
+    private final Counter unknownCounter;
+
+    public OutboxRelay(OutboundMessageRepository outboundMessageRepository,
+                       WebInstanceRepository webInstanceRepository,
+                       ZapiGateway zapiGateway,
+                       ZapiCircuitBreaker zapiCircuitBreaker,
+                       MessageService messageService,
+                       PhotoService photoService,
+                       VideoService videoService,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.threads:4}") int threads,
+                       @Value("${outbox.relay.batch-size:10}") int batchSize,
+                       @Value("${outbox.relay.max-attempts:5}") int maxAttempts,
+                       @Value("${outbox.relay.retry-delay-seconds:30}") long retryDelaySeconds,
+                       @Value("${outbox.relay.sending-timeout-seconds:600}") long sendingTimeoutSeconds,
+                       @Value("${outbox.retention-days:7}") int retentionDays) {
+        this.outboundMessageRepository = outboundMessageRepository;
+        this.webInstanceRepository = webInstanceRepository;
+        this.zapiGateway = zapiGateway;
+        this.zapiCircuitBreaker = zapiCircuitBreaker;
+        this.messageService = messageService;
+        this.photoService = photoService;
+        this.videoService = videoService;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = maxAttempts;
+        this.retryDelaySeconds = retryDelaySeconds;
+        this.sendingTimeoutSeconds = sendingTimeoutSeconds;
+        this.retentionDays = retentionDays;
+        this.relayExecutor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new CustomizableThreadFactory("Outbox-Relay-"));
+
+        this.sentCounter = outcomeCounter(meterRegistry, "sent");
+        this.retryCounter = outcomeCounter(meterRegistry, "retry");
+        this.failedCounter = outcomeCounter(meterRegistry, "failed");
+        this.unknownCounter = outcomeCounter(meterRegistry, "unknown");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdownNow();
+    }
+
+    /**
+     * Agenda um drain para cada instância com envios pendentes
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            for (String instanceId : outboundMessageRepository.findInstancesWithDueMessages()) {
+                if (!drainingInstances.add(instanceId)) {
+                    continue;
+                }
+                try {
+                    relayExecutor.execute(() -> drain(instanceId));
+                } catch (RejectedExecutionException e) {
+                    drainingInstances.remove(instanceId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro ao verificar o outbox de envios", e);
+        }
+    }
+
+    /**
+     * Varredura de recuperação: envios interrompidos por restart e reconciliações pendentes
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void recover() {
+        try {
+            int unknown = outboundMessageRepository.markStaleSendingUnknown(
+                    LocalDateTime.now().minusSeconds(sendingTimeoutSeconds));
+            if (unknown > 0) {
+                unknownCounter.increment(unknown);
+                log.warn("⚠️ {} envio(s) do outbox interrompido(s) no meio da chamada marcado(s) como UNKNOWN", unknown);
+            }
+
+            List<OutboundMessage> unreconciled = outboundMessageRepository.findUnreconciled(
+                    RECONCILE_STATUSES, LocalDateTime.now().minusMinutes(1), PageRequest.of(0, 100));
+            for (OutboundMessage message : unreconciled) {
+                reconcile(message);
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro na varredura do outbox de envios", e);
+        }
+    }
+
+    /**
+     * Remove envios concluídos há mais de outbox.retention-days dias
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeCompleted() {
+        int deleted = outboundMessageRepository.deleteCompletedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("🧹 {} envio(s) concluído(s) removido(s) do outbox", deleted);
+        }
+    }
+
+    /**
+     * Envio manual: reivindica e envia na hora a linha recém-gravada, para a resposta já trazer o messageId real
+     * ✅ MODIFICADO: Espera curta pelo limite de envios (thread da requisição HTTP); sem ficha, a linha
+     * volta para a fila e o relay envia quando chegar a vez
+     * ✅ MODIFICADO: Com outro envio da instância em andamento (ex.: lote de campanha), nada é enviado aqui:
+     * a linha manual fica à frente da fila e sai no próximo envio do relay
+     *
+     * @return resposta da Z-API, ou vazio se a linha ficou na fila (já reivindicada pelo relay ou nova tentativa agendada)
+     * @throws RuntimeException se a Z-API recusou o envio (linha marcada como FAILED)
+     */
+    public Optional<ZapiSendResponseDTO> sendNow(WebInstance instance, Long outboxId) {
+        if (outboxId == null) {
+            return Optional.empty();
+        }
+        Optional<OutboundMessage> claimed = self().claimById(instance.getId(), outboxId);
+        if (claimed.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(deliver(instance, claimed.get(), true));
+    }
+
+    private void drain(String instanceId) {
+        try {
+            WebInstance instance = webInstanceRepository.findById(instanceId).orElse(null);
+            if (instance == null) {
+                return;
+            }
+
+            for (int i = 0; i < batchSize && !Thread.currentThread().isInterrupted(); i++) {
+                // Circuito aberto → os envios ficam PENDING até a sonda fechar o circuito
+                if (zapiCircuitBreaker.isOpen(instance)) {
+                    return;
+                }
+
+                Optional<OutboundMessage> claimed = self().claimNext(instanceId);
+                if (claimed.isEmpty()) {
+                    return;
+                }
+
+                try {
+                    deliver(instance, claimed.get(), false);
+                } catch (Exception e) {
+                    // Falha já registrada na linha; segue para o próximo da fila
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro ao drenar o outbox da instância {}", instanceId, e);
+        } finally {
+            drainingInstances.remove(instanceId);
+        }
+    }
+
+    /**
+     * ✅ NOVO: Lock da instância + reivindicação na mesma transação
+     * Outra réplica com o lock → nada reivindicado agora; o próximo poll tenta de novo
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Optional<OutboundMessage> claimNext(String instanceId) {
+        if (!outboundMessageRepository.tryLockInstance(instanceId)) {
+            return Optional.empty();
+        }
+        return outboundMessageRepository.claimNext(instanceId);
+    }
+
+    /**
+     * ✅ NOVO: Reivindicação do envio manual sob o mesmo lock da instância
+     * Lock ocupado ou outro envio em SENDING → vazio; a linha fica na fila à frente dos não manuais
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Optional<OutboundMessage> claimById(String instanceId, Long outboxId) {
+        if (!outboundMessageRepository.tryLockInstance(instanceId)) {
+            return Optional.empty();
+        }
+        return outboundMessageRepository.claimById(instanceId, outboxId);
+    }
+
+    /**
+     * Envia uma linha já reivindicada (SENDING) e registra o resultado
+     *
+     * @param manual envio na thread da requisição HTTP (espera curta pelo limite de envios)
+     * @return resposta da Z-API, ou null se o envio voltou para a fila
+     */
+    private ZapiSendResponseDTO deliver(WebInstance instance, OutboundMessage message, boolean manual) {
+        ZapiSendResponseDTO response;
+        try {
+            ZapiSendRequest request = readRequest(message);
+            response = manual ? zapiGateway.sendManual(instance, request) : zapiGateway.send(instance, request);
+        } catch (RuntimeException e) {
+            if (onFailure(message, e)) {
+                return null;
+            }
+            throw e;
+        }
+
+        String zapiMessageId = response != null ? response.getMessageId() : null;
+        outboundMessageRepository.markSent(message.getId(), zapiMessageId);
+        sentCounter.increment();
+        log.info("✅ Envio {} do outbox aceito pela Z-API - OutboxId: {}, MessageId: {}",
+                message.getKind(), message.getId(), zapiMessageId);
+
+        message.setStatus(OutboundMessageStatus.SENT);
+        message.setZapiMessageId(zapiMessageId);
+        reconcile(message);
+        return response;
+    }
+
+    /**
+     * @return true se o envio voltou para a fila (nova tentativa agendada)
+     */
+    private boolean onFailure(OutboundMessage message, RuntimeException error) {
+        String reason = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+
+        if (notDelivered(error) && message.getAttempts() < maxAttempts) {
+            // ✅ NOVO: Envio manual sem ficha do limite de envios → volta já liberado; o relay o pega
+            // na próxima ficha da instância (à frente da fila), sem espera crescente
+            boolean manualRateLimited = message.getSource() == OutboundMessageSource.MANUAL
+                    && causedBy(error, RateLimitException.class);
+            LocalDateTime nextAttemptAt = manualRateLimited ? LocalDateTime.now()
+                    : LocalDateTime.now().plusSeconds(retryDelaySeconds * message.getAttempts());
+            outboundMessageRepository.retryLater(message.getId(), reason, nextAttemptAt, maxAttempts);
+            retryCounter.increment();
+            log.warn("🔁 Envio {} do outbox não chegou à Z-API (tentativa {}/{}), nova tentativa às {}: {}",
+                    message.getId(), message.getAttempts(), maxAttempts, nextAttemptAt, reason);
+            return true;
+        }
+
+        outboundMessageRepository.markFailed(message.getId(), reason);
+        failedCounter.increment();
+        log.error("❌ Envio {} do outbox falhou após {} tentativa(s): {}", message.getId(), message.getAttempts(), reason);
+
+        message.setStatus(OutboundMessageStatus.FAILED);
+        reconcile(message);
+        return false;
+    }
+
+    /**
+     * Devolve o resultado para a mensagem/foto/vídeo local: messageId real + SENT, ou FAILED mantendo o temporário
+     * ✅ MODIFICADO: UNKNOWN (interrompido no meio da chamada) também é terminal: UNKNOWN mantendo o temporário
+     */
+    private void reconcile(OutboundMessage message) {
+        String localMessageId = message.getLocalMessageId();
+        if (localMessageId == null) {
+            return;
+        }
+
+        boolean sent = message.getStatus() == OutboundMessageStatus.SENT && message.getZapiMessageId() != null;
+        String messageId = sent ? message.getZapiMessageId() : localMessageId;
+        String status = sent ? "SENT"
+                : message.getStatus() == OutboundMessageStatus.UNKNOWN ? "UNKNOWN" : "FAILED";
+
+        try {
+            switch (message.getKind()) {
+                case TEXT -> messageService.updateMessageIdAfterSend(localMessageId, messageId, status);
+                case IMAGE -> photoService.updatePhotoIdAfterSend(localMessageId, messageId, status);
+                case VIDEO -> videoService.updateVideoIdAfterSend(localMessageId, messageId, status);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Não foi possível atualizar o registro local {} do envio {}: {}",
+                    localMessageId, message.getId(), e.getMessage());
+        }
+        outboundMessageRepository.markReconciled(message.getId());
+    }
+
+    private ZapiSendRequest readRequest(OutboundMessage message) {
+        Class<? extends ZapiSendRequest> type = switch (message.getKind()) {
+            case TEXT -> ZapiSendRequest.Text.class;
+            case IMAGE -> ZapiSendRequest.Image.class;
+            case VIDEO -> ZapiSendRequest.Video.class;
+        };
+        try {
+            return objectMapper.readValue(message.getPayload(), type);
+        } catch (Exception e) {
+            throw new IllegalStateException("Payload inválido no outbox (envio " + message.getId() + ")", e);
+        }
+    }
+
+    /**
+     * Falhas em que a Z-API certamente não recebeu a mensagem (mesmo critério de retry do ZapiRetryPolicy para POST)
+     */
+    private boolean notDelivered(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ZapiCircuitOpenException || t instanceof RateLimitException) {
+                return true;
+            }
+            if (t instanceof RestClientResponseException responseError) {
+                int code = responseError.getStatusCode().value();
+                return code == 429 || code == 503;
+            }
+            if (t instanceof ResourceAccessException) {
+                Throwable cause = t.getCause();
+                return cause instanceof ConnectException
+                        || cause instanceof ConnectTimeoutException
+                        || cause instanceof UnknownHostException;
+            }
+        }
+        return false;
+    }
+
+    private OutboxRelay self() {
+        return applicationContext.getBean(OutboxRelay.class);
+    }
+
+    private static boolean causedBy(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("outbox.messages")
+                .description("Envios do outbox por resultado")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.loginauthapi.services.outbox;
+
+import com.example.loginauthapi.dto.MessageDTO;
+import com.example.loginauthapi.dto.PhotoDTO;
+import com.example.loginauthapi.dto.VideoDTO;
+import com.example.loginauthapi.dto.zapi.ZapiSendRequest;
+import com.example.loginauthapi.entities.OutboundMessageKind;
+import com.example.loginauthapi.entities.OutboundMessageSource;
+import com.example.loginauthapi.entities.User;
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.repositories.OutboundMessageRepository;
+import com.example.loginauthapi.services.MessageService;
+import com.example.loginauthapi.services.PhotoService;
+import com.example.loginauthapi.services.VideoService;
+import com.example.loginauthapi.services.zapi.ZapiMessageService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * ✅ NOVO: Enfileiramento de envios no outbox (outbound_messages)
+ *
+ * Cada método grava a mensagem/foto/vídeo local (messageId temporário) e a linha do outbox
+ * na mesma transação. Chamado de dentro de outra transação (lote de campanha, tarefa), participa
+ * dela: ou tudo é gravado junto com o estado de quem chamou, ou nada é. Nenhuma chamada à Z-API
+ * acontece aqui; o {@link OutboxRelay} envia e devolve o messageId real.
+ *
+ * A dedupKey torna o enfileiramento idempotente: a mesma chave gravada duas vezes vira um envio só.
+ * ✅ MODIFICADO: Chave já enfileirada → nada é gravado (nem o registro local, que ficaria sem envio).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    private final OutboundMessageRepository outboundMessageRepository;
+    private final ZapiMessageService zapiMessageService;
+    private final MessageService messageService;
+    private final PhotoService photoService;
+    private final VideoService videoService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Envio enfileirado: id no outbox e o registro local salvo (ambos null se a dedupKey já existia)
+     */
+    public record Queued<T>(Long outboxId, T saved) {
+    }
+
+    /**
+     * Texto; com user, a mensagem também é salva localmente (validando que o chat é do usuário)
+     */
+    @Transactional
+    public Queued<MessageDTO> enqueueText(WebInstance instance, String chatId, String phone, String message,
+                                          User user, OutboundMessageSource source, String dedupKey,
+                                          boolean isAutomatedRoutine) {
+        if (alreadyQueued(dedupKey)) {
+            return new Queued<>(null, null);
+        }
+        MessageDTO saved = user != null ? messageService.saveOutgoingMessage(chatId, message, user) : null;
+        Long outboxId = insert(instance, chatId, OutboundMessageKind.TEXT,
+                zapiMessageService.textRequest(phone, message, isAutomatedRoutine),
+                saved != null ? saved.getMessageId() : null, source, dedupKey);
+        return new Queued<>(outboxId, saved);
+    }
+
+    @Transactional
+    public Queued<PhotoDTO> enqueueImage(WebInstance instance, String chatId, String phone, String imageUrl,
+                                         String photoId, OutboundMessageSource source, String dedupKey,
+                                         boolean isAutomatedRoutine) {
+        if (alreadyQueued(dedupKey)) {
+            return new Queued<>(null, null);
+        }
+        PhotoDTO saved = photoService.saveOutgoingPhoto(chatId, phone, imageUrl, instance.getId(), photoId);
+        Long outboxId = insert(instance, chatId, OutboundMessageKind.IMAGE,
+                zapiMessageService.imageRequest(phone, imageUrl, isAutomatedRoutine),
+                saved.getMessageId(), source, dedupKey);
+        return new Queued<>(outboxId, saved);
+    }
+
+    @Transactional
+    public Queued<VideoDTO> enqueueVideo(WebInstance instance, String chatId, String phone, String videoUrl,
+                                         String videoId, OutboundMessageSource source, String dedupKey,
+                                         boolean isAutomatedRoutine) {
+        if (alreadyQueued(dedupKey)) {
+            return new Queued<>(null, null);
+        }
+        VideoDTO saved = videoService.saveOutgoingVideo(chatId, phone, videoUrl, instance.getId(), videoId);
+        Long outboxId = insert(instance, chatId, OutboundMessageKind.VIDEO,
+                zapiMessageService.videoRequest(phone, videoUrl, isAutomatedRoutine),
+                saved.getMessageId(), source, dedupKey);
+        return new Queued<>(outboxId, saved);
+    }
+
+    /**
+     * ✅ NOVO: Upload direto (sem chatId): a foto é salva no chat do phone (criado se não existir)
+     */
+    @Transactional
+    public Queued<PhotoDTO> enqueueUploadImage(WebInstance instance, String phone, String imageUrl, User user,
+                                               OutboundMessageSource source) {
+        PhotoDTO saved = photoService.saveUploadPhoto(phone, imageUrl, instance.getId(), user);
+        Long outboxId = insert(instance, null, OutboundMessageKind.IMAGE,
+                zapiMessageService.imageRequest(phone, imageUrl, false),
+                saved.getMessageId(), source, null);
+        return new Queued<>(outboxId, saved);
+    }
+
+    @Transactional
+    public Queued<VideoDTO> enqueueUploadVideo(WebInstance instance, String phone, String videoUrl, User user,
+                                               OutboundMessageSource source) {
+        VideoDTO saved = videoService.saveUploadVideo(phone, videoUrl, instance.getId(), user);
+        Long outboxId = insert(instance, null, OutboundMessageKind.VIDEO,
+                zapiMessageService.videoRequest(phone, videoUrl, false),
+                saved.getMessageId(), source, null);
+        return new Queued<>(outboxId, saved);
+    }
+
+    /**
+     * Texto → fotos → vídeos para um chat, tudo ou nada
+     * O relay envia na ordem de gravação, então as mídias nunca chegam antes do texto
+     *
+     * @param dedupPrefix base das dedupKeys (ex.: "campaign:{id}:{chatId}") ou null para não deduplicar
+     */
+    @Transactional
+    public void enqueueChatContent(WebInstance instance, String chatId, String phone, String message, User user,
+                                   List<String> photoUrls, List<String> videoUrls,
+                                   OutboundMessageSource source, String dedupPrefix, boolean isAutomatedRoutine) {
+        enqueueText(instance, chatId, phone, message, user, source,
+                dedupKey(dedupPrefix, "text"), isAutomatedRoutine);
+
+        for (int i = 0; i < photoUrls.size(); i++) {
+            enqueueImage(instance, chatId, phone, photoUrls.get(i), null, source,
+                    dedupKey(dedupPrefix, "photo:" + i), isAutomatedRoutine);
+        }
+
+        for (int i = 0; i < videoUrls.size(); i++) {
+            enqueueVideo(instance, chatId, phone, videoUrls.get(i), null, source,
+                    dedupKey(dedupPrefix, "video:" + i), isAutomatedRoutine);
+        }
+    }
+
+    private Long insert(WebInstance instance, String chatId, OutboundMessageKind kind, ZapiSendRequest request,
+                        String localMessageId, OutboundMessageSource source, String dedupKey) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Erro ao serializar envio para o outbox", e);
+        }
+
+        Long outboxId = outboundMessageRepository.insert(instance.getId(), chatId, kind.name(), payload,
+                localMessageId, source.name(), dedupKey).orElse(null);
+
+        if (outboxId == null) {
+            log.info("ℹ️ Envio já enfileirado no outbox - DedupKey: {}", dedupKey);
+        } else {
+            log.debug("📤 Envio {} enfileirado no outbox - OutboxId: {}, Origem: {}, Chat: {}",
+                    kind, outboxId, source, chatId);
+        }
+        return outboxId;
+    }
+
+    private boolean alreadyQueued(String dedupKey) {
+        if (dedupKey == null || !outboundMessageRepository.existsByDedupKey(dedupKey)) {
+            return false;
+        }
+        log.info("ℹ️ Envio já enfileirado no outbox - DedupKey: {}", dedupKey);
+        return true;
+    }
+
+    private static String dedupKey(String prefix, String item) {
+        return prefix != null ? prefix + ":" + item : null;
+    }
+}
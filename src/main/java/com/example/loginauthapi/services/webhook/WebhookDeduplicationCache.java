@@ -0,0 +1,91 @@
+package com.example.loginauthapi.services.webhook;
+
+import com.example.loginauthapi.repositories.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * ✅ NOVO: Deduplicação de webhooks pelo messageId da Z-API
+ *
+ * A Z-API reenvia webhooks; sem este cache a repetição só falhava no fim da transação
+ * (uk_message_id / DataIntegrityViolationException). Aqui a repetição é descartada
+ * no início de processMessage com uma consulta em memória.
+ *
+ * - Janela de tempo (expireAfterWrite) e tamanho máximo configuráveis
+ * - Aquecido na subida com os messageIds recebidos recentemente
+ * - Métricas em cache.gets / cache.size com a tag cache=webhook.dedup
+ */
+@Component
+@Slf4j
+public class WebhookDeduplicationCache {
+
+    private final MessageRepository messageRepository;
+    private final Duration window;
+    private final int warmupLimit;
+    private final Cache<String, Boolean> seen;
+
+    public WebhookDeduplicationCache(MessageRepository messageRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${webhook.dedup.window-minutes:1440}") long windowMinutes,
+                                     @Value("${webhook.dedup.max-size:200000}") long maxSize,
+                                     @Value("${webhook.dedup.warmup-limit:50000}") int warmupLimit) {
+        this.messageRepository = messageRepository;
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.warmupLimit = warmupLimit;
+        this.seen = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, seen, "webhook.dedup");
+    }
+
+    /**
+     * Verificar se o messageId já foi processado dentro da janela
+     */
+    public boolean isDuplicate(String messageId) {
+        return messageId != null && seen.getIfPresent(messageId) != null;
+    }
+
+    /**
+     * Registrar o messageId como processado
+     * Deve ser chamado somente após o commit, para que um rollback permita o reprocessamento
+     */
+    public void markProcessed(String messageId) {
+        if (messageId != null) {
+            seen.put(messageId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Aquecer o cache com as mensagens RECEBIDAS dentro da janela
+     * As enviadas (fromMe=true) ficam de fora: o eco do webhook de um envio feito pelo sistema
+     * ainda precisa passar para reconciliar o chat
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(window);
+            List<String> messageIds = messageRepository.findIncomingMessageIdsCreatedSince(
+                    since, PageRequest.of(0, warmupLimit));
+
+            messageIds.forEach(this::markProcessed);
+            log.info("♻️ Cache de deduplicação de webhooks aquecido com {} messageIds", messageIds.size());
+        } catch (Exception e) {
+            log.error("❌ Erro ao aquecer cache de deduplicação de webhooks", e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.loginauthapi.services.webhook;
+
+import com.example.loginauthapi.entities.WebhookInbox;
+import com.example.loginauthapi.entities.WebhookInboxStatus;
+import com.example.loginauthapi.repositories.WebhookInboxRepository;
+import com.example.loginauthapi.services.WebhookService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ✅ NOVO: Ingestão assíncrona de webhooks da Z-API
+ *
+ * Fluxo:
+ * 1. {@link #accept(Map)} grava o payload em webhook_inbox e o enfileira na memória
+ * 2. O controller responde 202 sem esperar o processamento
+ * 3. A lane do chat (ver {@link WebhookLaneExecutor}) chama {@link WebhookService#processMessage(Map)}
+ *    → mesmo chat em ordem, chats diferentes em paralelo
+ *    ✅ MODIFICADO: chave {@link #laneKey} gravada em lane_key; um evento só é processado quando não há
+ *    evento anterior (ordem de chegada: received_at, id) na mesma chave pendente, mesmo que este tenha
+ *    ido para a varredura ou voltado após falha. O momment da Z-API não define a ordem
+ * 4. Linhas que não couberam na fila, falharam ou ficaram pendentes após um restart
+ *    são recuperadas pela varredura periódica
+ *
+ * ✅ NOVO: Várias réplicas
+ * - Cada worker reivindica a linha com UPDATE ... WHERE status = 'PENDING': a mesma linha
+ *   enfileirada em duas réplicas é processada por uma só
+ * - PROCESSING tem prazo (webhook.inbox.processing-lease-seconds): só linhas com o prazo vencido
+ *   voltam para PENDING, nunca as que outra réplica ainda está processando
+ */
+@Service
+@Slf4j
+public class WebhookInboxService {
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private final WebhookInboxRepository webhookInboxRepository;
+    private final WebhookService webhookService;
+    private final ObjectMapper objectMapper;
+    private final WebhookLaneExecutor laneExecutor;
+    private final int maxAttempts;
+    private final int retentionDays;
+    private final long processingLeaseSeconds;
+
+    // IDs já enfileirados, para a varredura não enfileirar o mesmo webhook duas vezes
+    private final Set<String> queuedIds = ConcurrentHashMap.newKeySet();
+
+    public WebhookInboxService(WebhookInboxRepository webhookInboxRepository,
+                               WebhookService webhookService,
+                               ObjectMapper objectMapper,
+                               WebhookLaneExecutor laneExecutor,
+                               @Value("${webhook.inbox.max-attempts:5}") int maxAttempts,
+                               @Value("${webhook.inbox.retention-days:7}") int retentionDays,
+                               @Value("${webhook.inbox.processing-lease-seconds:300}") long processingLeaseSeconds) {
+        this.webhookInboxRepository = webhookInboxRepository;
+        this.webhookService = webhookService;
+        this.objectMapper = objectMapper;
+        this.laneExecutor = laneExecutor;
+        this.maxAttempts = maxAttempts;
+        this.retentionDays = retentionDays;
+        this.processingLeaseSeconds = processingLeaseSeconds;
+    }
+
+    /**
+     * Persistir o payload e enfileirar para processamento assíncrono
+     * Retorna assim que o INSERT é confirmado
+     */
+    public WebhookInbox accept(Map<String, Object> payload) {
+        WebhookInbox entry = new WebhookInbox();
+        entry.setInstanceId(asString(payload.get("instanceId")));
+        entry.setConnectedPhone(asString(payload.get("connectedPhone")));
+        entry.setPhone(asString(payload.get("phone")));
+        entry.setChatLid(asString(payload.get("chatLid")));
+        entry.setMessageId(asString(payload.get("messageId")));
+        entry.setMomment(payload.get("momment") instanceof Number n ? n.longValue() : null);
+        entry.setLaneKey(laneKey(entry.getInstanceId(), entry.getConnectedPhone(), entry.getChatLid(), entry.getPhone()));
+        entry.setPayload(writePayload(payload));
+        entry.setStatus(WebhookInboxStatus.PENDING);
+
+        entry = webhookInboxRepository.save(entry);
+        log.debug("📥 Webhook persistido na inbox - InboxId: {}, MessageId: {}", entry.getId(), entry.getMessageId());
+
+        enqueue(entry.getId(), entry.getLaneKey());
+        return entry;
+    }
+
+    /**
+     * Enfileirar um webhook já persistido na lane do seu chat
+     */
+    private void enqueue(String inboxId, String laneKey) {
+        if (!queuedIds.add(inboxId)) {
+            return;
+        }
+
+        if (!laneExecutor.submit(laneKey, () -> process(inboxId))) {
+            queuedIds.remove(inboxId);
+            log.warn("⚠️ Lane de webhooks cheia, InboxId {} será recuperado pela varredura", inboxId);
+        }
+    }
+
+    /**
+     * Chave de ordenação do webhook: instância + phone
+     * ✅ MODIFICADO: phone primeiro; eventos do mesmo chat com e sem chatLid caem na mesma lane.
+     * O chatLid só é usado quando o evento não traz phone
+     * ✅ MODIFICADO: Gravada em lane_key; a verificação de ordem no banco usa a mesma chave
+     * (a migração V47 reproduz este cálculo para as linhas antigas)
+     */
+    private String laneKey(String instanceId, String connectedPhone, String chatLid, String phone) {
+        String instanceKey = instanceId != null ? instanceId : connectedPhone;
+        String chatKey = phone != null && !phone.isBlank() ? phone : chatLid;
+        return instanceKey + "|" + chatKey;
+    }
+
+    /**
+     * ✅ NOVO: Um webhook mais antigo do mesmo chat ainda não terminou (ficou para a varredura
+     * com a lane cheia, voltou para PENDING após falha ou está em outra réplica)
+     */
+    private boolean hasOlderUnfinished(WebhookInbox entry) {
+        String laneKey = entry.getLaneKey() != null ? entry.getLaneKey()
+                : laneKey(entry.getInstanceId(), entry.getConnectedPhone(), entry.getChatLid(), entry.getPhone());
+        return webhookInboxRepository.existsOlderUnfinished(laneKey, entry.getReceivedAt(), entry.getId());
+    }
+
+    /**
+     * Processar um webhook da inbox
+     * ✅ MODIFICADO: Depois da reivindicação a linha só é alterada por UPDATEs direcionados
+     * (markDone/markFailed); salvar a entidade carregada antes do claim regravaria claimed_at = NULL
+     */
+    private void process(String inboxId) {
+        WebhookInbox entry = null;
+        try {
+            WebhookInbox loaded = webhookInboxRepository.findById(inboxId).orElse(null);
+            if (loaded == null || loaded.getStatus() != WebhookInboxStatus.PENDING) {
+                return;
+            }
+
+            // ✅ NOVO: Cabeça da fila do chat ainda pendente → este evento espera (continua PENDING);
+            // a varredura reenfileira os dois na ordem de chegada
+            if (hasOlderUnfinished(loaded)) {
+                log.debug("⏸️ Webhook {} aguardando evento anterior do mesmo chat", inboxId);
+                return;
+            }
+
+            // ✅ MODIFICADO: Reivindicação atômica; 0 linhas = já concluído ou com outro worker/réplica
+            if (webhookInboxRepository.claim(inboxId) == 0) {
+                return;
+            }
+            entry = loaded;
+
+            Map<String, Object> payload = objectMapper.readValue(entry.getPayload(), PAYLOAD_TYPE);
+            webhookService.processMessage(payload);
+
+            webhookInboxRepository.markDone(inboxId);
+
+        } catch (Exception e) {
+            log.error("❌ Erro ao processar webhook da inbox - InboxId: {}", inboxId, e);
+            markFailure(entry, e);
+        } finally {
+            queuedIds.remove(inboxId);
+        }
+    }
+
+    /**
+     * Registrar a falha de um webhook já reivindicado (antes do claim a linha continua PENDING)
+     */
+    private void markFailure(WebhookInbox entry, Exception error) {
+        if (entry == null) {
+            return;
+        }
+        try {
+            // Tentativas após o claim (a entidade foi carregada antes do incremento)
+            int attempts = entry.getAttempts() + 1;
+            webhookInboxRepository.markFailed(entry.getId(), maxAttempts, error.getMessage());
+
+            if (attempts >= maxAttempts) {
+                log.error("❌ Webhook descartado após {} tentativas - InboxId: {}, MessageId: {}",
+                        attempts, entry.getId(), entry.getMessageId());
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro ao registrar falha do webhook - InboxId: {}", entry.getId(), e);
+        }
+    }
+
+    /**
+     * Ao subir a aplicação, devolver para a fila tudo que não foi concluído
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        recoverPending();
+    }
+
+    /**
+     * Varredura periódica: reenfileira webhooks PENDING que não estão na fila
+     * (fila cheia no momento do recebimento ou falha transitória)
+     */
+    @Scheduled(fixedDelayString = "${webhook.inbox.recovery-interval-ms:15000}")
+    public void recoverPending() {
+        try {
+            // ✅ MODIFICADO: Só reivindicações com prazo vencido voltam para PENDING (worker/réplica que caiu)
+            int reset = webhookInboxRepository.resetExpiredProcessing(
+                    LocalDateTime.now().minusSeconds(processingLeaseSeconds));
+            if (reset > 0) {
+                log.info("🔄 {} webhooks interrompidos voltaram para PENDING", reset);
+            }
+
+            // Pequena margem para não competir com o enfileiramento feito pelo próprio accept()
+            LocalDateTime before = LocalDateTime.now().minusSeconds(5);
+
+            List<WebhookInboxRepository.PendingWebhook> pending = webhookInboxRepository.findPendingReceivedBefore(
+                    WebhookInboxStatus.PENDING, before, PageRequest.of(0, 500));
+
+            if (!pending.isEmpty()) {
+                log.info("🔄 Recuperando {} webhooks pendentes da inbox", pending.size());
+                for (WebhookInboxRepository.PendingWebhook p : pending) {
+                    enqueue(p.getId(), laneKey(p.getInstanceId(), p.getConnectedPhone(), p.getChatLid(), p.getPhone()));
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro na varredura de webhooks pendentes", e);
+        }
+    }
+
+    /**
+     * Limpeza diária dos webhooks já processados
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeProcessed() {
+        int deleted = webhookInboxRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+        log.info("🗑️ {} webhooks processados removidos da inbox", deleted);
+    }
+
+    private String writePayload(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao serializar payload do webhook: " + e.getMessage(), e);
+        }
+    }
+
+    private String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
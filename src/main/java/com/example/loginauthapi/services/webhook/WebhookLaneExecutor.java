@@ -0,0 +1,92 @@
+package com.example.loginauthapi.services.webhook;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ NOVO: Executor particionado por chave para o processamento de webhooks
+ *
+ * Cada chave (instância + chat) é mapeada por hash para uma "lane" de thread única:
+ * - Eventos do mesmo chat caem sempre na mesma lane → aplicados em ordem de chegada
+ * - Eventos de chats diferentes se espalham pelas lanes → processados em paralelo
+ *
+ * Métricas (Actuator /actuator/metrics):
+ * - webhook.lane.depth{lane}: tarefas aguardando em cada lane
+ * - webhook.lane.wait: tempo entre o enfileiramento e o início da execução (head-of-line)
+ */
+@Component
+@Slf4j
+public class WebhookLaneExecutor {
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Timer waitTimer;
+
+    public WebhookLaneExecutor(MeterRegistry meterRegistry,
+                               @Value("${webhook.lanes.count:0}") int configuredLanes,
+                               @Value("${webhook.lanes.capacity:2000}") int laneCapacity) {
+        // 0 = uma lane por núcleo disponível
+        int laneCount = configuredLanes > 0 ? configuredLanes : Runtime.getRuntime().availableProcessors();
+
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(laneCapacity),
+                    new CustomizableThreadFactory("Webhook-Lane-" + i + "-"),
+                    new ThreadPoolExecutor.AbortPolicy());
+            lanes[i] = lane;
+
+            Gauge.builder("webhook.lane.depth", lane, l -> l.getQueue().size())
+                    .tag("lane", String.valueOf(i))
+                    .description("Webhooks aguardando na lane")
+                    .register(meterRegistry);
+        }
+
+        this.waitTimer = Timer.builder("webhook.lane.wait")
+                .description("Tempo de espera do webhook na lane antes de começar a ser processado")
+                .register(meterRegistry);
+
+        log.info("🛣️ Executor de webhooks iniciado com {} lanes (capacidade {} por lane)", laneCount, laneCapacity);
+    }
+
+    /**
+     * Enfileirar uma tarefa na lane da chave
+     *
+     * @return false se a lane estiver cheia (a tarefa NÃO foi aceita)
+     */
+    public boolean submit(String key, Runnable task) {
+        ThreadPoolExecutor lane = lanes[laneOf(key)];
+        long enqueuedAt = System.nanoTime();
+
+        try {
+            lane.execute(() -> {
+                waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                task.run();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private int laneOf(String key) {
+        return Math.floorMod(key != null ? key.hashCode() : 0, lanes.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -4,14 +4,11 @@ import com.example.loginauthapi.dto.zapi.ZapiChatDetailResponseDTO;
 import com.example.loginauthapi.dto.zapi.ZapiChatItemDTO;
 import com.example.loginauthapi.entities.WebInstance;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.Collections;
 import java.util.List;
@@ -21,9 +18,7 @@ import java.util.List;
 @Slf4j
 public class ZapiChatService {
 
-    private static final String ZAPI_BASE_URL = "https://api.z-api.io";
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final ZapiGateway zapiGateway;
 
     /**
      * Busca todos os chats da instância
@@ -31,37 +26,12 @@ public class ZapiChatService {
      */
     public List<ZapiChatItemDTO> getChats(WebInstance instance) {
         try {
-            String url = String.format("%s/instances/%s/token/%s/chats?page=1&pageSize=232",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
+            log.info("=== REQUISIÇÃO Z-API GET CHATS === Instância: {}", instance.getSuaInstancia());
 
-            log.info("=== REQUISIÇÃO Z-API GET CHATS ===");
-            log.info("URL: {}", url);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    String.class
-            );
-
-            log.info("Status da resposta: {}", response.getStatusCode());
-            log.debug("Response body: {}", response.getBody());
-
-            if (response.getBody() != null && !response.getBody().isEmpty()) {
-                List<ZapiChatItemDTO> chats = objectMapper.readValue(
-                        response.getBody(),
-                        new TypeReference<List<ZapiChatItemDTO>>() {}
-                );
+            List<ZapiChatItemDTO> chats = zapiGateway.get(instance, "chats?page=1&pageSize=232",
+                    new TypeReference<List<ZapiChatItemDTO>>() {});
 
+            if (chats != null) {
                 log.info("Total de chats encontrados: {}", chats.size());
                 return chats;
             }
@@ -95,34 +65,13 @@ public class ZapiChatService {
      */
     public ZapiChatDetailResponseDTO getChatDetail(WebInstance instance, String phone) {
         try {
-            String url = String.format("%s/instances/%s/token/%s/chats/%s",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken(),
-                    phone);
-
             log.debug("=== REQUISIÇÃO Z-API GET CHAT DETAIL ===");
-            log.debug("URL: {}", url);
             log.debug("Phone: {}", phone);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<ZapiChatDetailResponseDTO> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    ZapiChatDetailResponseDTO.class
-            );
-
-            log.debug("Status da resposta chat detail: {}", response.getStatusCode());
+            ZapiChatDetailResponseDTO detail = zapiGateway.get(instance, "chats/" + phone,
+                    new TypeReference<ZapiChatDetailResponseDTO>() {});
 
-            if (response.getBody() != null) {
-                ZapiChatDetailResponseDTO detail = response.getBody();
+            if (detail != null) {
 
                 if (detail.getProfileThumbnail() != null && !detail.getProfileThumbnail().isEmpty()) {
                     log.debug("Foto de perfil encontrada para {}: {}", phone, detail.getProfileThumbnail());
@@ -0,0 +1,199 @@
+package com.example.loginauthapi.services.zapi;
+
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.exceptions.ZapiCircuitOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ✅ NOVO: Circuit breaker por instância Z-API (WebInstance.suaInstancia)
+ *
+ * - CLOSED: chamadas normais; zapi.circuit.failure-threshold falhas seguidas (5xx, timeout,
+ *   erro de conexão) abrem o circuito. 4xx não contam: a instância respondeu
+ * - OPEN: chamadas recusadas na hora com {@link ZapiCircuitOpenException}, sem consumir
+ *   conexão do pool nem o timeout de leitura
+ * - HALF_OPEN: o {@link ZapiCircuitProbe} consulta /status; conectado fecha o circuito,
+ *   qualquer outra resposta reabre com o tempo dobrado (até zapi.circuit.max-open-seconds)
+ *
+ * As operações de status e QR Code passam mesmo com o circuito aberto: são a sonda
+ * e o fluxo de reconexão do próprio usuário.
+ *
+ * Métricas: zapi.circuit.open (instâncias com circuito aberto), zapi.circuit.transitions{state}
+ * e zapi.circuit.rejected{instance}.
+ */
+@Component
+@Slf4j
+public class ZapiCircuitBreaker {
+
+    private static final Set<String> PROBE_OPERATIONS = Set.of("status", "qr-code");
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long maxOpenMillis;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private static final class Circuit {
+        // volatile: lido sem lock por isOpen() e pelo gauge
+        private volatile State state = State.CLOSED;
+        private int consecutiveFailures;
+        private int timesOpened;
+        private long openUntilMillis;
+        private WebInstance instance;
+    }
+
+    public ZapiCircuitBreaker(MeterRegistry meterRegistry,
+                              @Value("${zapi.circuit.failure-threshold:5}") int failureThreshold,
+                              @Value("${zapi.circuit.open-seconds:30}") long openSeconds,
+                              @Value("${zapi.circuit.max-open-seconds:300}") long maxOpenSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openSeconds * 1000;
+        this.maxOpenMillis = Math.max(openSeconds, maxOpenSeconds) * 1000;
+
+        Gauge.builder("zapi.circuit.open", circuits, map -> map.values().stream()
+                        .filter(circuit -> circuit.state != State.CLOSED)
+                        .count())
+                .description("Instâncias Z-API com circuito aberto ou em teste")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Checagem barata para quem vai enfileirar envios: true se a instância não está aceitando chamadas
+     */
+    public boolean isOpen(WebInstance instance) {
+        Circuit circuit = circuits.get(keyOf(instance));
+        return circuit != null && circuit.state != State.CLOSED;
+    }
+
+    /**
+     * Chamado pelo {@link ZapiGateway} antes de cada tentativa
+     */
+    void acquire(WebInstance instance, String operation) {
+        if (PROBE_OPERATIONS.contains(operation) || !isOpen(instance)) {
+            return;
+        }
+        Counter.builder("zapi.circuit.rejected")
+                .description("Chamadas à Z-API recusadas pelo circuit breaker")
+                .tag("instance", keyOf(instance))
+                .register(meterRegistry)
+                .increment();
+        throw new ZapiCircuitOpenException("Circuito aberto para a instância Z-API " + keyOf(instance));
+    }
+
+    void onSuccess(WebInstance instance, String operation) {
+        if (PROBE_OPERATIONS.contains(operation)) {
+            return;
+        }
+        Circuit circuit = circuits.get(keyOf(instance));
+        if (circuit == null) {
+            return;
+        }
+        synchronized (circuit) {
+            circuit.consecutiveFailures = 0;
+        }
+    }
+
+    void onFailure(WebInstance instance, String operation, RestClientException error) {
+        if (PROBE_OPERATIONS.contains(operation) || !countsAsFailure(error)) {
+            return;
+        }
+        Circuit circuit = circuits.computeIfAbsent(keyOf(instance), key -> new Circuit());
+        synchronized (circuit) {
+            circuit.instance = instance;
+            circuit.consecutiveFailures++;
+            if (circuit.state == State.CLOSED && circuit.consecutiveFailures >= failureThreshold) {
+                open(circuit, keyOf(instance));
+            }
+        }
+    }
+
+    /**
+     * Circuitos abertos cujo prazo venceu passam para HALF_OPEN e são devolvidos para a sonda
+     */
+    List<WebInstance> dueForProbe() {
+        long now = System.currentTimeMillis();
+        List<WebInstance> due = new ArrayList<>();
+        circuits.forEach((key, circuit) -> {
+            synchronized (circuit) {
+                if (circuit.state == State.OPEN && now >= circuit.openUntilMillis) {
+                    transition(circuit, State.HALF_OPEN);
+                    due.add(circuit.instance);
+                }
+            }
+        });
+        return due;
+    }
+
+    /**
+     * Resultado da sonda de status
+     */
+    void onProbeResult(WebInstance instance, boolean connected) {
+        String key = keyOf(instance);
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            return;
+        }
+        synchronized (circuit) {
+            if (circuit.state != State.HALF_OPEN) {
+                return;
+            }
+            if (connected) {
+                circuit.consecutiveFailures = 0;
+                circuit.timesOpened = 0;
+                transition(circuit, State.CLOSED);
+                log.info("✅ Circuito da instância Z-API {} fechado (instância conectada)", key);
+            } else {
+                open(circuit, key);
+            }
+        }
+    }
+
+    private void open(Circuit circuit, String key) {
+        long duration = Math.min(maxOpenMillis, openMillis << Math.min(circuit.timesOpened, 20));
+        circuit.timesOpened++;
+        circuit.openUntilMillis = System.currentTimeMillis() + duration;
+        transition(circuit, State.OPEN);
+        log.warn("🔌 Circuito da instância Z-API {} aberto por {}s após {} falha(s) seguidas",
+                key, duration / 1000, circuit.consecutiveFailures);
+    }
+
+    private void transition(Circuit circuit, State to) {
+        circuit.state = to;
+        Counter.builder("zapi.circuit.transitions")
+                .description("Mudanças de estado do circuit breaker da Z-API")
+                .tag("state", to.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Só falhas que indicam instância indisponível: 5xx e erros de I/O (timeout, conexão recusada)
+     */
+    private boolean countsAsFailure(RestClientException error) {
+        if (error instanceof RestClientResponseException responseError) {
+            return responseError.getStatusCode().is5xxServerError();
+        }
+        return error instanceof ResourceAccessException;
+    }
+
+    private static String keyOf(WebInstance instance) {
+        return instance.getSuaInstancia() != null ? instance.getSuaInstancia() : "unknown";
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.loginauthapi.services.zapi;
+
+import com.example.loginauthapi.entities.WebInstance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * ✅ NOVO: Sonda half-open do {@link ZapiCircuitBreaker}
+ *
+ * Para cada circuito cujo tempo aberto venceu, consulta /status da instância
+ * (via {@link ZapiQRCodeService#getConnectionStatus(WebInstance)}): conectado fecha
+ * o circuito, desconectado ou erro reabre.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ZapiCircuitProbe {
+
+    private final ZapiCircuitBreaker circuitBreaker;
+    private final ZapiQRCodeService zapiQRCodeService;
+
+    @Scheduled(fixedDelayString = "${zapi.circuit.probe-interval-ms:5000}")
+    public void probeOpenCircuits() {
+        for (WebInstance instance : circuitBreaker.dueForProbe()) {
+            boolean connected = false;
+            try {
+                Map<String, Object> status = zapiQRCodeService.getConnectionStatus(instance);
+                connected = Boolean.TRUE.equals(status.get("connected"));
+            } catch (Exception e) {
+                log.warn("⚠️ Sonda de status falhou para a instância Z-API {}: {}",
+                        instance.getSuaInstancia(), e.getMessage());
+            } finally {
+                circuitBreaker.onProbeResult(instance, connected);
+            }
+        }
+    }
+}
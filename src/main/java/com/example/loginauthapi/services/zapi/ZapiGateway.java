@@ -0,0 +1,216 @@
+package com.example.loginauthapi.services.zapi;
+
+import com.example.loginauthapi.dto.zapi.ZapiSendRequest;
+import com.example.loginauthapi.dto.zapi.ZapiSendResponseDTO;
+import com.example.loginauthapi.entities.WebInstance;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * ✅ NOVO: Ponto único de acesso HTTP à Z-API
+ *
+ * - URL a partir de zapi.base-url + instância/token, headers padrão e Client-Token
+ * - Corpo serializado direto dos records de {@link ZapiSendRequest} com um ObjectWriter reutilizável
+ * - Respostas tipadas ({@link ZapiSendResponseDTO} ou o tipo pedido em {@link #get})
+ * - Métrica única zapi.requests{operation, outcome, status} (uma por tentativa)
+ * - ✅ NOVO: Retry conforme o {@link ZapiRetryPolicy} (backoff com jitter, Retry-After e orçamento)
+ * - ✅ NOVO: Circuit breaker por instância ({@link ZapiCircuitBreaker}): com o circuito aberto a chamada
+ *   falha na hora com ZapiCircuitOpenException, sem ocupar conexão nem esperar o timeout
+ * - ✅ NOVO: Envios respeitam o limite por instância do {@link ZapiSendRateLimiter}
+ *   ({@link #sendManual}: espera curta, para não prender a thread da requisição HTTP)
+ *
+ * Erros HTTP são propagados como RestClientResponseException (HttpClientErrorException/HttpServerErrorException).
+ */
+@Component
+@Slf4j
+public class ZapiGateway {
+
+    private static final List<MediaType> ACCEPT_JSON = List.of(MediaType.APPLICATION_JSON);
+
+    private final ZapiHttpClient zapiHttpClient;
+    private final ZapiRetryPolicy retryPolicy;
+    private final ZapiCircuitBreaker circuitBreaker;
+    private final ZapiSendRateLimiter sendRateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter requestWriter;
+    private final ObjectReader sendResponseReader;
+    private final String baseUrl;
+
+    public ZapiGateway(ZapiHttpClient zapiHttpClient,
+                       ZapiRetryPolicy retryPolicy,
+                       ZapiCircuitBreaker circuitBreaker,
+                       ZapiSendRateLimiter sendRateLimiter,
+                       MeterRegistry meterRegistry,
+                       ObjectMapper objectMapper,
+                       @Value("${zapi.base-url:https://api.z-api.io}") String baseUrl) {
+        this.zapiHttpClient = zapiHttpClient;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.sendRateLimiter = sendRateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.requestWriter = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writer();
+        this.sendResponseReader = objectMapper.readerFor(ZapiSendResponseDTO.class);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * POST de envio (send-text, send-image, send-video, send-audio, send-document)
+     */
+    public ZapiSendResponseDTO send(WebInstance instance, ZapiSendRequest request) {
+        return send(instance, request, false);
+    }
+
+    /**
+     * ✅ NOVO: POST de envio feito na thread da requisição HTTP (envio manual)
+     * Sem ficha do limite de envios em zapi.send.manual-max-wait-ms, falha com RateLimitException
+     */
+    public ZapiSendResponseDTO sendManual(WebInstance instance, ZapiSendRequest request) {
+        return send(instance, request, true);
+    }
+
+    private ZapiSendResponseDTO send(WebInstance instance, ZapiSendRequest request, boolean manual) {
+        byte[] body;
+        try {
+            body = requestWriter.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new RestClientException("Erro ao serializar requisição para a Z-API", e);
+        }
+
+        String operation = operationOf(request.path());
+
+        // Circuito aberto falha antes de consumir ficha; a ficha vale para o envio todo (retries inclusos)
+        circuitBreaker.acquire(instance, operation);
+        if (manual) {
+            sendRateLimiter.acquireManual(instance);
+        } else {
+            sendRateLimiter.acquire(instance);
+        }
+
+        byte[] response = exchange(instance, operation, request.path(), HttpMethod.POST, body);
+        return read(sendResponseReader, response);
+    }
+
+    /**
+     * GET com resposta JSON convertida para o tipo pedido
+     */
+    public <T> T get(WebInstance instance, String path, TypeReference<T> responseType) {
+        byte[] response = exchange(instance, operationOf(path), path, HttpMethod.GET, null);
+        return read(objectMapper.readerFor(responseType), response);
+    }
+
+    /**
+     * DELETE (a Z-API responde 204 No Content)
+     */
+    public void delete(WebInstance instance, String path) {
+        exchange(instance, operationOf(path), path, HttpMethod.DELETE, null);
+    }
+
+    private byte[] exchange(WebInstance instance, String operation, String path, HttpMethod method, byte[] body) {
+        retryPolicy.onRequest();
+
+        long previousDelayMs = 0;
+        for (int attempt = 1; ; attempt++) {
+            circuitBreaker.acquire(instance, operation);
+            try {
+                byte[] response = attempt(instance, operation, path, method, body);
+                circuitBreaker.onSuccess(instance, operation);
+                return response;
+            } catch (RestClientException e) {
+                circuitBreaker.onFailure(instance, operation, e);
+                long delayMs = retryPolicy.nextDelay(method, e, attempt, previousDelayMs);
+                if (delayMs < 0) {
+                    throw e;
+                }
+
+                log.warn("🔁 Falha na Z-API ({} {}), tentativa {} - nova tentativa em {}ms: {}",
+                        method, operation, attempt, delayMs, e.getMessage());
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                previousDelayMs = delayMs;
+            }
+        }
+    }
+
+    private byte[] attempt(WebInstance instance, String operation, String path, HttpMethod method, byte[] body) {
+        String url = baseUrl + "/instances/" + instance.getSuaInstancia()
+                + "/token/" + instance.getSeuToken() + "/" + path;
+
+        HttpHeaders headers = new HttpHeaders();
+        if (instance.getClientToken() != null) {
+            headers.set("Client-Token", instance.getClientToken());
+        }
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(ACCEPT_JSON);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        String status = "none";
+        try {
+            ResponseEntity<byte[]> response = zapiHttpClient.forInstance(instance)
+                    .exchange(url, method, new HttpEntity<>(body, headers), byte[].class);
+            status = String.valueOf(response.getStatusCode().value());
+            outcome = "success";
+            return response.getBody();
+        } catch (RestClientResponseException e) {
+            status = String.valueOf(e.getStatusCode().value());
+            outcome = e.getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("zapi.requests")
+                    .description("Chamadas HTTP à Z-API")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .tag("status", status)
+                    .register(meterRegistry));
+        }
+    }
+
+    private <T> T read(ObjectReader reader, byte[] body) {
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        try {
+            return reader.readValue(body);
+        } catch (IOException e) {
+            throw new RestClientException("Resposta inválida da Z-API", e);
+        }
+    }
+
+    /**
+     * Nome da operação para a métrica, sem ids/parâmetros (ex.: "chats/5511..." → "chats")
+     */
+    private static String operationOf(String path) {
+        int end = path.length();
+        int slash = path.indexOf('/');
+        int query = path.indexOf('?');
+        if (slash >= 0) end = Math.min(end, slash);
+        if (query >= 0) end = Math.min(end, query);
+        return path.substring(0, end);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.loginauthapi.services.zapi;
+
+import com.example.loginauthapi.entities.WebInstance;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * ✅ NOVO: Cliente HTTP compartilhado para todas as chamadas à Z-API
+ *
+ * - Um pool de conexões keep-alive por instância Z-API (suaInstancia), com no máximo
+ *   zapi.http.max-connections-per-instance conexões: uma instância lenta não consome
+ *   as conexões das outras, e send-text/send-image/chats reutilizam a conexão TLS aberta
+ * - Conexões ociosas são fechadas após zapi.http.idle-evict-seconds
+ *
+ * Métricas (tag instance):
+ * - httpcomponents.httpclient.pool.*: conexões disponíveis/em uso/pendentes (binder do Micrometer)
+ * - zapi.http.pool.lease: tempo de espera por uma conexão do pool
+ * - zapi.http.connections.opened: conexões novas, ou seja, handshakes TCP/TLS
+ */
+@Component
+@Slf4j
+public class ZapiHttpClient {
+
+    private final RestTemplateBuilder restTemplateBuilder;
+    private final MeterRegistry meterRegistry;
+    private final int maxConnectionsPerInstance;
+    private final Timeout connectTimeout;
+    private final Timeout readTimeout;
+    private final TimeValue idleEvict;
+
+    private final Map<String, InstanceClient> clients = new ConcurrentHashMap<>();
+
+    private record InstanceClient(CloseableHttpClient httpClient, RestTemplate restTemplate) {
+    }
+
+    public ZapiHttpClient(RestTemplateBuilder restTemplateBuilder,
+                          MeterRegistry meterRegistry,
+                          @Value("${zapi.http.max-connections-per-instance:8}") int maxConnectionsPerInstance,
+                          @Value("${zapi.http.connect-timeout-ms:10000}") long connectTimeoutMs,
+                          @Value("${zapi.http.read-timeout-ms:30000}") long readTimeoutMs,
+                          @Value("${zapi.http.idle-evict-seconds:30}") long idleEvictSeconds) {
+        this.restTemplateBuilder = restTemplateBuilder;
+        this.meterRegistry = meterRegistry;
+        this.maxConnectionsPerInstance = maxConnectionsPerInstance;
+        this.connectTimeout = Timeout.ofMilliseconds(connectTimeoutMs);
+        this.readTimeout = Timeout.ofMilliseconds(readTimeoutMs);
+        this.idleEvict = TimeValue.ofSeconds(idleEvictSeconds);
+    }
+
+    /**
+     * RestTemplate ligado ao pool da instância
+     */
+    public RestTemplate forInstance(WebInstance instance) {
+        String key = instance.getSuaInstancia() != null ? instance.getSuaInstancia() : "unknown";
+        return clients.computeIfAbsent(key, this::createClient).restTemplate();
+    }
+
+    private InstanceClient createClient(String instanceKey) {
+        Counter opened = Counter.builder("zapi.http.connections.opened")
+                .description("Conexões novas com a Z-API (handshake TCP/TLS)")
+                .tag("instance", instanceKey)
+                .register(meterRegistry);
+        Timer lease = Timer.builder("zapi.http.pool.lease")
+                .description("Tempo de espera por uma conexão do pool da Z-API")
+                .tag("instance", instanceKey)
+                .register(meterRegistry);
+
+        PoolingHttpClientConnectionManager connectionManager = new InstrumentedConnectionManager(opened, lease);
+        connectionManager.setMaxTotal(maxConnectionsPerInstance);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerInstance);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                .setTimeToLive(TimeValue.ofMinutes(5))
+                .build());
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "zapi", "instance", instanceKey)
+                .bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectTimeout)
+                        .setResponseTimeout(readTimeout)
+                        .build())
+                .evictIdleConnections(idleEvict)
+                .evictExpiredConnections()
+                .disableAutomaticRetries()
+                .build();
+
+        RestTemplate restTemplate = restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+
+        log.info("🔌 Pool HTTP da Z-API criado - Instância: {}, Máx. conexões: {}", instanceKey, maxConnectionsPerInstance);
+        return new InstanceClient(httpClient, restTemplate);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.values().forEach(client -> client.httpClient().close(CloseMode.GRACEFUL));
+        clients.clear();
+    }
+
+    /**
+     * Pool que mede o tempo de lease e conta as conexões abertas
+     */
+    private static final class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        private final Timer leaseTimer;
+
+        private InstrumentedConnectionManager(Counter opened, Timer leaseTimer) {
+            super(RegistryBuilder.<ConnectionSocketFactory>create()
+                            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                            .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                            .build(),
+                    PoolConcurrencyPolicy.STRICT,
+                    PoolReusePolicy.LIFO,
+                    TimeValue.NEG_ONE_MILLISECOND,
+                    socket -> {
+                        opened.increment();
+                        return ManagedHttpClientConnectionFactory.INSTANCE.createConnection(socket);
+                    });
+            this.leaseTimer = leaseTimer;
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            LeaseRequest request = super.lease(id, route, requestTimeout, state);
+            long start = System.nanoTime();
+            return new LeaseRequest() {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout)
+                        throws InterruptedException, ExecutionException, TimeoutException {
+                    try {
+                        return request.get(timeout);
+                    } finally {
+                        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+}
@@ -1,502 +1,109 @@
 package com.example.loginauthapi.services.zapi;
 
+import com.example.loginauthapi.dto.zapi.ZapiSendRequest;
+import com.example.loginauthapi.dto.zapi.ZapiSendResponseDTO;
 import com.example.loginauthapi.entities.WebInstance;
 import com.example.loginauthapi.exceptions.RateLimitException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Envio de mensagens pela Z-API
+ *
+ * ✅ MODIFICADO: Cada método só monta o {@link ZapiSendRequest}; URL, headers, serialização
+ * e métricas ficam no {@link ZapiGateway}.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ZapiMessageService {
 
-    private static final String ZAPI_BASE_URL = "https://api.z-api.io";
-    private final RestTemplate restTemplate;
+    private final ZapiGateway zapiGateway;
 
     public boolean sendTextMessage(WebInstance instance, String phone, String message, boolean isAutomatedRoutine) {
-
-        int delayToSend = 1;
-
-        if (isAutomatedRoutine) {
-            delayToSend = ThreadLocalRandom.current().nextInt(10, 15);
-        }
-
-        try {
-            String url = String.format("%s/instances/%s/token/%s/send-text",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("📨 Enviando mensagem para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = Map.of(
-                    "phone", phone,
-                    "message", message,
-                    "delayTyping" , delayToSend,
-                    "delayMessage" , delayToSend
-            );
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            var response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            var result = response.getBody();
-            log.info("✅ Mensagem enviada com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-            return true;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar mensagem", e);
-            throw new RuntimeException("Erro ao enviar mensagem via Z-API: " + e.getMessage(), e);
-        }
+        sendTextMessageWithRetry(instance, phone, message, isAutomatedRoutine);
+        return true;
     }
 
-    public  Map<String, Object> sendTextMessageWithRetry(WebInstance instance, String phone, String message, boolean isAutomatedRoutine) {
-
-        int delayToSend = 1;
-
-        if (isAutomatedRoutine) {
-            delayToSend = ThreadLocalRandom.current().nextInt(10, 15);
-        }
-
-        try {
-            String url = String.format("%s/instances/%s/token/%s/send-text",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("📨 Enviando mensagem para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = Map.of(
-                    "phone", phone,
-                    "message", message,
-                    "delayTyping" , delayToSend,
-                    "delayMessage" , delayToSend
-            );
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            var response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            var result = response.getBody();
-            log.info("✅ Mensagem enviada com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar mensagem", e);
-            throw new RuntimeException("Erro ao enviar mensagem via Z-API: " + e.getMessage(), e);
-        }
+    public ZapiSendResponseDTO sendTextMessageWithRetry(WebInstance instance, String phone, String message, boolean isAutomatedRoutine) {
+        log.info("📨 Enviando mensagem para: {}", phone);
+        ZapiSendResponseDTO result = send(instance, textRequest(phone, message, isAutomatedRoutine), "mensagem");
+        log.info("✅ Mensagem enviada com sucesso - MessageId: {}", messageIdOf(result));
+        return result;
     }
 
     /**
      * ✅ NOVO: Enviar mensagem de texto com reply via Z-API
      */
-    public Map<String, Object> sendTextWithReply(WebInstance instance, String phone,
+    public ZapiSendResponseDTO sendTextWithReply(WebInstance instance, String phone,
                                                  String message, String messageId) {
-        try {
-            String url = String.format("%s/instances/%s/token/%s/send-text",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("💬 Enviando reply para: {} - ReferenceId: {}", phone, messageId);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("message", message);
-            body.put("messageId", messageId); // ID da mensagem que está sendo respondida
-
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Reply enviado com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar reply", e);
-            throw new RuntimeException("Erro ao enviar reply via Z-API: " + e.getMessage(), e);
-        }
+        log.info("💬 Enviando reply para: {} - ReferenceId: {}", phone, messageId);
+        ZapiSendResponseDTO result = send(instance, ZapiSendRequest.Text.reply(phone, message, messageId), "reply");
+        log.info("✅ Reply enviado com sucesso - MessageId: {}", messageIdOf(result));
+        return result;
     }
 
     /**
      * ✅ NOVO: Enviar áudio via Z-API
      */
-    public Map<String, Object> sendAudio(WebInstance instance, String phone, String audioBase64, Boolean waveform) {
-        try {
-            String url = String.format("%s/instances/%s/token/%s/send-audio",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("🎤 Enviando áudio para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("audio", audioBase64);
-            body.put("viewOnce", false);
-            body.put("waveform", waveform != null ? waveform : true);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Áudio enviado com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar áudio", e);
-            throw new RuntimeException("Erro ao enviar áudio via Z-API: " + e.getMessage(), e);
-        }
+    public ZapiSendResponseDTO sendAudio(WebInstance instance, String phone, String audioBase64, Boolean waveform) {
+        log.info("🎤 Enviando áudio para: {}", phone);
+        ZapiSendResponseDTO result = send(instance,
+                new ZapiSendRequest.Audio(phone, audioBase64, false, waveform == null || waveform), "áudio");
+        log.info("✅ Áudio enviado com sucesso - MessageId: {}", messageIdOf(result));
+        return result;
     }
 
     public void sendImage(WebInstance instance, String phone, String image, boolean isAutomatedRoutine) {
-        try {
-
-            int delayToSend = 1;
-
-            if (isAutomatedRoutine) {
-                delayToSend = ThreadLocalRandom.current().nextInt(10, 15);
-            }
-
-            String url = String.format("%s/instances/%s/token/%s/send-image",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("📷 Enviando imagem para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("image", image);
-            body.put("delayTyping" , delayToSend);
-            body.put("delayMessage" , delayToSend);
-            body.put("viewOnce", false);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Imagem enviada com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar imagem", e);
-            throw new RuntimeException("Erro ao enviar imagem via Z-API: " + e.getMessage(), e);
-        }
+        sendImageWithRetry(instance, phone, image, isAutomatedRoutine);
     }
 
-    public Map<String, Object> sendImageWithRetry(WebInstance instance, String phone, String image, boolean isAutomatedRoutine) {
-        try {
-
-            int delayToSend = 1;
-
-            if (isAutomatedRoutine) {
-                delayToSend = ThreadLocalRandom.current().nextInt(10, 15);
-            }
-
-            String url = String.format("%s/instances/%s/token/%s/send-image",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("📷 Enviando imagem para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("image", image);
-            body.put("delayTyping" , delayToSend);
-            body.put("delayMessage" , delayToSend);
-            body.put("viewOnce", false);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Imagem enviada com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar imagem", e);
-            throw new RuntimeException("Erro ao enviar imagem via Z-API: " + e.getMessage(), e);
-        }
+    public ZapiSendResponseDTO sendImageWithRetry(WebInstance instance, String phone, String image, boolean isAutomatedRoutine) {
+        log.info("📷 Enviando imagem para: {}", phone);
+        ZapiSendResponseDTO result = send(instance, imageRequest(phone, image, isAutomatedRoutine), "imagem");
+        log.info("✅ Imagem enviada com sucesso - MessageId: {}", messageIdOf(result));
+        return result;
     }
 
-
     public void sendVideo(WebInstance instance, String phone, String video, boolean isAutomatedRoutine) {
-        try {
-
-            int delayToSend = 1;
-
-            if (isAutomatedRoutine) {
-                delayToSend = ThreadLocalRandom.current().nextInt(10, 15);
-            }
-
-            String url = String.format("%s/instances/%s/token/%s/send-video",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("🎥 Enviando vídeo para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("video", video);
-            body.put("delayTyping" , delayToSend);
-            body.put("delayMessage" , delayToSend);
-            body.put("viewOnce", false);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Vídeo enviado com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar vídeo", e);
-            throw new RuntimeException("Erro ao enviar vídeo via Z-API: " + e.getMessage(), e);
-        }
+        sendVideoWithRetry(instance, phone, video, isAutomatedRoutine);
     }
 
-    public Map<String, Object> sendVideoWithRetry(WebInstance instance, String phone, String video, boolean isAutomatedRoutine) {
-        try {
-
-            int delayToSend = 1;
-
-            if (isAutomatedRoutine) {
-                delayToSend = ThreadLocalRandom.current().nextInt(10, 15);
-            }
-
-            String url = String.format("%s/instances/%s/token/%s/send-video",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("🎥 Enviando vídeo para: {}", phone);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("video", video);
-            body.put("delayTyping" , delayToSend);
-            body.put("delayMessage" , delayToSend);
-            body.put("viewOnce", false);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Vídeo enviado com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar vídeo", e);
-            throw new RuntimeException("Erro ao enviar vídeo via Z-API: " + e.getMessage(), e);
-        }
+    public ZapiSendResponseDTO sendVideoWithRetry(WebInstance instance, String phone, String video, boolean isAutomatedRoutine) {
+        log.info("🎥 Enviando vídeo para: {}", phone);
+        ZapiSendResponseDTO result = send(instance, videoRequest(phone, video, isAutomatedRoutine), "vídeo");
+        log.info("✅ Vídeo enviado com sucesso - MessageId: {}", messageIdOf(result));
+        return result;
     }
 
     /**
      * Editar mensagem via Z-API
      */
-    public Map<String, Object> editMessage(WebInstance instance, String phone,
+    public ZapiSendResponseDTO editMessage(WebInstance instance, String phone,
                                            String editMessageId, String newMessage) {
-        try {
-            String url = String.format("%s/instances/%s/token/%s/send-text",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken());
-
-            log.info("📝 Editando mensagem: {}", editMessageId);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, String> body = Map.of(
-                    "phone", phone,
-                    "message", newMessage,
-                    "editMessageId", editMessageId
-            );
-
-            HttpEntity<Map<String, String>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            log.info("✅ Mensagem editada com sucesso");
-            return response.getBody();
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao editar mensagem", e);
-            throw new RuntimeException("Erro ao editar mensagem via Z-API: " + e.getMessage(), e);
-        }
+        log.info("📝 Editando mensagem: {}", editMessageId);
+        ZapiSendResponseDTO result = send(instance,
+                ZapiSendRequest.Text.edit(phone, newMessage, editMessageId), "edição de mensagem");
+        log.info("✅ Mensagem editada com sucesso");
+        return result;
     }
 
     /**
      * ✅ NOVO: Enviar documento via Z-API
      */
-    public Map<String, Object> sendDocument(WebInstance instance, String phone,
+    public ZapiSendResponseDTO sendDocument(WebInstance instance, String phone,
                                             String document, String fileName,
                                             String caption, String extension) {
-        try {
-            String url = String.format("%s/instances/%s/token/%s/send-document/%s",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken(),
-                    extension);
-
-            log.info("📄 Enviando documento para: {} - Extension: {}", phone, extension);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("phone", phone);
-            body.put("document", document);
-
-            if (fileName != null && !fileName.isEmpty()) {
-                body.put("fileName", fileName);
-            }
-
-            if (caption != null && !caption.isEmpty()) {
-                body.put("caption", caption);
-            }
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            Map<String, Object> result = response.getBody();
-            log.info("✅ Documento enviado com sucesso - MessageId: {}",
-                    result != null ? result.get("messageId") : "N/A");
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("❌ Erro ao enviar documento", e);
-            throw new RuntimeException("Erro ao enviar documento via Z-API: " + e.getMessage(), e);
-        }
+        log.info("📄 Enviando documento para: {} - Extension: {}", phone, extension);
+        ZapiSendResponseDTO result = send(instance, new ZapiSendRequest.Document(phone, document,
+                fileName != null && !fileName.isEmpty() ? fileName : null,
+                caption != null && !caption.isEmpty() ? caption : null,
+                extension), "documento");
+        log.info("✅ Documento enviado com sucesso - MessageId: {}", messageIdOf(result));
+        return result;
     }
 
     /**
@@ -504,44 +111,59 @@ public class ZapiMessageService {
      * DELETE https://api.z-api.io/instances/SUA_INSTANCIA/token/SEU_TOKEN/messages
      */
     public void deleteMessage(WebInstance instance, String messageId, String phone, boolean owner) {
+        log.info("🗑️ Excluindo mensagem - MessageId: {}, Phone: {}, Owner: {}",
+                messageId, phone, owner);
         try {
-            String url = String.format("%s/instances/%s/token/%s/messages?messageId=%s&phone=%s&owner=%s",
-                    ZAPI_BASE_URL,
-                    instance.getSuaInstancia(),
-                    instance.getSeuToken(),
-                    messageId,
-                    phone,
-                    owner);
-
-            log.info("🗑️ Excluindo mensagem - MessageId: {}, Phone: {}, Owner: {}",
-                    messageId, phone, owner);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Client-Token", instance.getClientToken());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+            // A Z-API retorna 204 No Content em caso de sucesso
+            zapiGateway.delete(instance,
+                    "messages?messageId=" + messageId + "&phone=" + phone + "&owner=" + owner);
+            log.info("✅ Mensagem excluída com sucesso da Z-API - MessageId: {}", messageId);
+        } catch (Exception e) {
+            log.error("❌ Erro ao excluir mensagem da Z-API", e);
+            throw new RuntimeException("Erro ao excluir mensagem via Z-API: " + e.getMessage(), e);
+        }
+    }
 
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
+    /**
+     * ✅ NOVO: Requisições de envio montadas sem chamar a Z-API (gravadas no outbox)
+     */
+    public ZapiSendRequest.Text textRequest(String phone, String message, boolean isAutomatedRoutine) {
+        return ZapiSendRequest.Text.of(phone, message, delayFor(isAutomatedRoutine));
+    }
 
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.DELETE,
-                    entity,
-                    Map.class
-            );
+    public ZapiSendRequest.Image imageRequest(String phone, String image, boolean isAutomatedRoutine) {
+        int delay = delayFor(isAutomatedRoutine);
+        return new ZapiSendRequest.Image(phone, image, delay, delay, false);
+    }
 
-            // A Z-API retorna 204 No Content em caso de sucesso
-            if (response.getStatusCode() == HttpStatus.NO_CONTENT ||
-                    response.getStatusCode() == HttpStatus.OK) {
-                log.info("✅ Mensagem excluída com sucesso da Z-API - MessageId: {}", messageId);
-            } else {
-                log.warn("⚠️ Resposta inesperada da Z-API - Status: {}", response.getStatusCode());
-            }
+    public ZapiSendRequest.Video videoRequest(String phone, String video, boolean isAutomatedRoutine) {
+        int delay = delayFor(isAutomatedRoutine);
+        return new ZapiSendRequest.Video(phone, video, delay, delay, false);
+    }
 
+    /**
+     * Envios deste serviço partem dos controllers (thread da requisição HTTP): espera curta pelo limite de envios
+     */
+    private ZapiSendResponseDTO send(WebInstance instance, ZapiSendRequest request, String description) {
+        try {
+            return zapiGateway.sendManual(instance, request);
+        } catch (RateLimitException e) {
+            // ✅ NOVO: Propagada sem embrulhar para o controller responder 429
+            throw e;
         } catch (Exception e) {
-            log.error("❌ Erro ao excluir mensagem da Z-API", e);
-            throw new RuntimeException("Erro ao excluir mensagem via Z-API: " + e.getMessage(), e);
+            log.error("❌ Erro ao enviar {}", description, e);
+            throw new RuntimeException("Erro ao enviar " + description + " via Z-API: " + e.getMessage(), e);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Rotinas automáticas simulam digitação (10 a 14 segundos); envios manuais saem em 1 segundo
+     */
+    private int delayFor(boolean isAutomatedRoutine) {
+        return isAutomatedRoutine ? ThreadLocalRandom.current().nextInt(10, 15) : 1;
+    }
+
+    private String messageIdOf(ZapiSendResponseDTO result) {
+        return result != null && result.getMessageId() != null ? result.getMessageId() : "N/A";
+    }
+}
@@ -3,13 +3,10 @@ package com.example.loginauthapi.services.zapi;
 import com.example.loginauthapi.entities.User;
 import com.example.loginauthapi.entities.WebInstance;
 import com.example.loginauthapi.repositories.WebInstanceRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.List;
@@ -21,10 +18,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ZapiQRCodeService {
 
-    @Value("${zapi.base-url:https://api.z-api.io}")
-    private String zapiBaseUrl;
-
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final ZapiGateway zapiGateway;
     private final WebInstanceRepository webInstanceRepository;
 
     /**
@@ -69,29 +63,13 @@ public class ZapiQRCodeService {
         }
 
         // 2. Caso não esteja conectado, busca QR Code
-        String url = String.format("%s/instances/%s/token/%s/qr-code/image",
-                zapiBaseUrl, instance.getSuaInstancia(), instance.getSeuToken());
-
         try {
             log.info("Buscando QR Code da Z-API para usuário {} - Instância: {}",
                     user.getId(), instance.getSuaInstancia());
 
-            HttpHeaders headers = new HttpHeaders();
-            if (instance.getClientToken() != null) {
-                headers.set("client-token", instance.getClientToken());
-            }
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    new ParameterizedTypeReference<>() {}
-            );
+            Map<String, Object> body = zapiGateway.get(instance, "qr-code/image", new TypeReference<>() {});
 
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> body = response.getBody();
+            if (body != null) {
 
                 if (body.containsKey("value")) {
                     result.put("qrCode", body.get("value"));
@@ -141,7 +119,17 @@ public class ZapiQRCodeService {
             return result;
         }
 
-        WebInstance instance = activeInstanceOpt.get();
+        return getConnectionStatus(activeInstanceOpt.get());
+    }
+
+    /**
+     * ✅ NOVO: Verifica o status da conexão de uma instância específica
+     * Também usado pela sonda do circuit breaker ({@link ZapiCircuitProbe})
+     * @param instance Instância Z-API
+     * @return Mapa com informações do status
+     */
+    public Map<String, Object> getConnectionStatus(WebInstance instance) {
+        Map<String, Object> result = new HashMap<>();
 
         // Valida dados da instância
         if (instance.getSuaInstancia() == null || instance.getSeuToken() == null) {
@@ -151,47 +139,29 @@ public class ZapiQRCodeService {
             return result;
         }
 
-        String url = String.format("%s/instances/%s/token/%s/status",
-                zapiBaseUrl, instance.getSuaInstancia(), instance.getSeuToken());
-
         try {
-            log.info("Verificando status da conexão Z-API para usuário {} - Instância: {}",
-                    user.getId(), instance.getSuaInstancia());
-
-            HttpHeaders headers = new HttpHeaders();
-            if (instance.getClientToken() != null) {
-                headers.set("client-token", instance.getClientToken());
-            }
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
+            log.info("Verificando status da conexão Z-API - Instância: {}", instance.getSuaInstancia());
 
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    entity,
-                    new ParameterizedTypeReference<>() {}
-            );
+            Map<String, Object> body = zapiGateway.get(instance, "status", new TypeReference<>() {});
 
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> body = response.getBody();
+            if (body != null) {
                 result.put("connected", body.getOrDefault("connected", false));
                 result.put("status", body.getOrDefault("status", "disconnected"));
                 result.put("success", true);
                 result.put("instanceId", instance.getId());
                 result.put("instanceName", instance.getSuaInstancia());
-                log.info("Status obtido para usuário {}: {}", user.getId(), body);
+                log.info("Status obtido para instância {}: {}", instance.getSuaInstancia(), body);
             } else {
                 result.put("connected", false);
                 result.put("success", false);
                 result.put("message", "Erro ao obter status");
-                log.error("Resposta inválida da Z-API para usuário {}: status={}",
-                        user.getId(), response.getStatusCode());
+                log.error("Resposta vazia da Z-API para instância {}", instance.getSuaInstancia());
             }
 
             return result;
 
         } catch (Exception e) {
-            log.error("Erro ao verificar status da conexão para usuário {}", user.getId(), e);
+            log.error("Erro ao verificar status da conexão da instância {}", instance.getSuaInstancia(), e);
 
             result.put("connected", false);
             result.put("success", false);
@@ -0,0 +1,193 @@
+package com.example.loginauthapi.services.zapi;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ✅ NOVO: Política de retry das chamadas à Z-API (usada pelo {@link ZapiGateway})
+ *
+ * - Retriável: 429, 503 e falhas de conexão (a requisição nem saiu ou não foi aceita)
+ * - Só para GET/DELETE: 500, 502, 504 e timeout de leitura. Num POST de envio a mensagem pode
+ *   já ter sido entregue (502/504 vêm de um proxy que pode ter repassado a requisição), e repetir
+ *   causaria mensagem duplicada no WhatsApp do cliente
+ * - Demais 4xx são fatais
+ * - Retry-After é respeitado; se passar de zapi.retry.max-delay-ms, desiste na hora
+ * - Backoff "decorrelated jitter": espera = aleatório entre base e 3x a espera anterior, limitado ao máximo
+ * - Orçamento de retries: cada requisição deposita zapi.retry.budget-ratio e cada retry consome 1,
+ *   com uma reserva mínima de zapi.retry.budget-min-per-second. Durante uma queda da Z-API os
+ *   retries ficam limitados a ~10% do tráfego em vez de multiplicá-lo
+ */
+@Component
+@Slf4j
+public class ZapiRetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final double budgetRatio;
+    private final double budgetMinPerSecond;
+    private final double budgetMax;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter budgetExhaustedCounter;
+
+    // Orçamento de retries (protegido por this)
+    private double budgetBalance;
+    private long budgetRefilledAtNanos = System.nanoTime();
+
+    public ZapiRetryPolicy(MeterRegistry meterRegistry,
+                           @Value("${zapi.retry.max-attempts:3}") int maxAttempts,
+                           @Value("${zapi.retry.base-delay-ms:500}") long baseDelayMs,
+                           @Value("${zapi.retry.max-delay-ms:10000}") long maxDelayMs,
+                           @Value("${zapi.retry.budget-ratio:0.1}") double budgetRatio,
+                           @Value("${zapi.retry.budget-min-per-second:1}") double budgetMinPerSecond) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.budgetRatio = budgetRatio;
+        this.budgetMinPerSecond = budgetMinPerSecond;
+        this.budgetMax = Math.max(10, budgetMinPerSecond * 10);
+        this.budgetBalance = budgetMax;
+        this.budgetExhaustedCounter = Counter.builder("zapi.retry.budget.exhausted")
+                .description("Retries da Z-API negados por falta de orçamento")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registrar uma nova requisição (deposita no orçamento de retries)
+     */
+    public synchronized void onRequest() {
+        refillBudget();
+        budgetBalance = Math.min(budgetMax, budgetBalance + budgetRatio);
+    }
+
+    /**
+     * Decidir se a falha deve ser repetida
+     *
+     * @param attempt         tentativa que acabou de falhar (1 = primeira)
+     * @param previousDelayMs espera usada antes desta tentativa (0 na primeira)
+     * @return espera em ms antes da próxima tentativa, ou -1 para desistir
+     */
+    public long nextDelay(HttpMethod method, RestClientException error, int attempt, long previousDelayMs) {
+        if (attempt >= maxAttempts) {
+            return -1;
+        }
+
+        String reason = retryReason(method, error);
+        if (reason == null) {
+            return -1;
+        }
+
+        long retryAfterMs = retryAfterMs(error);
+        if (retryAfterMs > maxDelayMs) {
+            log.warn("⚠️ Z-API pediu Retry-After de {}ms (acima do limite de {}ms), sem retry", retryAfterMs, maxDelayMs);
+            return -1;
+        }
+
+        if (!withdrawBudget()) {
+            budgetExhaustedCounter.increment();
+            log.warn("⚠️ Orçamento de retries da Z-API esgotado, desistindo após {} tentativa(s)", attempt);
+            return -1;
+        }
+
+        long upper = Math.max(baseDelayMs, previousDelayMs * 3);
+        long jitter = Math.min(maxDelayMs, ThreadLocalRandom.current().nextLong(baseDelayMs, upper + 1));
+        long delay = Math.max(jitter, retryAfterMs);
+
+        Counter.builder("zapi.retry.scheduled")
+                .description("Retries agendados para chamadas à Z-API")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return delay;
+    }
+
+    /**
+     * @return motivo do retry (tag da métrica) ou null se a falha for fatal
+     */
+    private String retryReason(HttpMethod method, RestClientException error) {
+        boolean idempotent = method != HttpMethod.POST;
+
+        if (error instanceof RestClientResponseException responseError) {
+            HttpStatusCode status = responseError.getStatusCode();
+            int code = status.value();
+            if (code == 429 || code == 503) {
+                return String.valueOf(code);
+            }
+            if ((code == 500 || code == 502 || code == 504) && idempotent) {
+                return String.valueOf(code);
+            }
+            return null;
+        }
+
+        if (error instanceof ResourceAccessException) {
+            Throwable cause = error.getCause();
+            if (cause instanceof ConnectException
+                    || cause instanceof ConnectTimeoutException
+                    || cause instanceof UnknownHostException) {
+                return "connect";
+            }
+            if (cause instanceof SocketTimeoutException && idempotent) {
+                return "timeout";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retry-After em segundos ou data HTTP (RFC 1123); 0 se ausente/inválido
+     */
+    private long retryAfterMs(RestClientException error) {
+        if (!(error instanceof RestClientResponseException responseError) || responseError.getResponseHeaders() == null) {
+            return 0;
+        }
+        String value = responseError.getResponseHeaders().getFirst("Retry-After");
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+            } catch (Exception ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private synchronized boolean withdrawBudget() {
+        refillBudget();
+        if (budgetBalance >= 1) {
+            budgetBalance -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refillBudget() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - budgetRefilledAtNanos) / 1_000_000_000.0;
+        budgetRefilledAtNanos = now;
+        budgetBalance = Math.min(budgetMax, budgetBalance + elapsedSeconds * budgetMinPerSecond);
+    }
+}
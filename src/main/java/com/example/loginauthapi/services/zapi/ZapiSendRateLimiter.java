@@ -0,0 +1,145 @@
+package com.example.loginauthapi.services.zapi;
+
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.exceptions.RateLimitException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ NOVO: Limite de envios por instância Z-API (token bucket)
+ *
+ * Todo envio (campanha, rotina, tarefa e envio manual) passa pelo {@link ZapiGateway#send},
+ * que pede uma ficha aqui antes de chamar a Z-API. Cada número de WhatsApp tem um balde com
+ * zapi.send.rate-per-minute fichas por minuto e rajada de até zapi.send.burst envios.
+ *
+ * - Sem ficha disponível a thread reserva a próxima e espera a sua vez (ordem de chegada)
+ * - Se a espera passar de zapi.send.max-wait-ms, o envio falha com {@link RateLimitException}
+ *   em vez de prender a thread indefinidamente
+ * - ✅ NOVO: Envios manuais ({@link #acquireManual}) rodam na thread da requisição HTTP e esperam no máximo
+ *   zapi.send.manual-max-wait-ms; acima disso falham na hora (o chamador responde 429 ou deixa na fila)
+ *
+ * Métricas (tag instance): zapi.send.queue.depth (envios aguardando ficha) e zapi.send.wait
+ * (tempo de espera por ficha).
+ */
+@Component
+@Slf4j
+public class ZapiSendRateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final long maxWaitNanos;
+    private final long manualMaxWaitNanos;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public ZapiSendRateLimiter(MeterRegistry meterRegistry,
+                               @Value("${zapi.send.rate-per-minute:30}") double ratePerMinute,
+                               @Value("${zapi.send.burst:5}") int burst,
+                               @Value("${zapi.send.max-wait-ms:120000}") long maxWaitMs,
+                               @Value("${zapi.send.manual-max-wait-ms:2000}") long manualMaxWaitMs) {
+        this.meterRegistry = meterRegistry;
+        this.permitsPerNano = ratePerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.manualMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(manualMaxWaitMs);
+    }
+
+    /**
+     * Bloqueia até haver ficha para um envio pela instância
+     *
+     * @throws RateLimitException se a espera passaria de zapi.send.max-wait-ms
+     */
+    public void acquire(WebInstance instance) {
+        acquire(instance, maxWaitNanos);
+    }
+
+    /**
+     * ✅ NOVO: Ficha para um envio manual (thread da requisição HTTP)
+     *
+     * @throws RateLimitException se a espera passaria de zapi.send.manual-max-wait-ms
+     */
+    public void acquireManual(WebInstance instance) {
+        acquire(instance, manualMaxWaitNanos);
+    }
+
+    private void acquire(WebInstance instance, long maxWaitNanos) {
+        String key = instance.getSuaInstancia() != null ? instance.getSuaInstancia() : "unknown";
+        Bucket bucket = buckets.computeIfAbsent(key, this::createBucket);
+
+        long waitNanos = bucket.reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            log.warn("⏳ Limite de envios da instância Z-API {} excedido (fila acima de {}ms)",
+                    key, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            throw new RateLimitException("Limite de envios da instância Z-API " + key + " excedido");
+        }
+
+        if (waitNanos > 0) {
+            bucket.waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RateLimitException("Envio interrompido aguardando o limite da instância Z-API " + key);
+            } finally {
+                bucket.waiting.decrementAndGet();
+            }
+        }
+        bucket.waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Bucket createBucket(String instanceKey) {
+        Bucket bucket = new Bucket(Timer.builder("zapi.send.wait")
+                .description("Espera por ficha do limite de envios da Z-API")
+                .tag("instance", instanceKey)
+                .register(meterRegistry));
+        Gauge.builder("zapi.send.queue.depth", bucket.waiting, AtomicInteger::get)
+                .description("Envios aguardando ficha do limite da instância Z-API")
+                .tag("instance", instanceKey)
+                .register(meterRegistry);
+        return bucket;
+    }
+
+    private final class Bucket {
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Timer waitTimer;
+
+        // Protegidos por this. tokens pode ficar negativo: são fichas já reservadas por quem está esperando
+        private double tokens = burst;
+        private long refilledAtNanos = System.nanoTime();
+
+        private Bucket(Timer waitTimer) {
+            this.waitTimer = waitTimer;
+        }
+
+        /**
+         * @return espera em nanos até a ficha reservada (0 = imediato), ou -1 se passaria do limite
+         */
+        private synchronized long reserve(long maxWaitNanos) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAtNanos) * permitsPerNano);
+            refilledAtNanos = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+
+            long waitNanos = (long) Math.ceil((1 - tokens) / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+    }
+}
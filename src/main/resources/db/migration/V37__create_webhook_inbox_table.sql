@@ -0,0 +1,38 @@
+-- ================================================
+-- Migration: Caixa de entrada de webhooks (ingestão assíncrona)
+-- Versão: V37__create_webhook_inbox_table.sql
+-- Descrição: Persiste o payload bruto recebido da Z-API antes do processamento,
+--            permitindo responder 202 imediatamente e reprocessar após falhas/restart
+-- ================================================
+
+CREATE TABLE IF NOT EXISTS webhook_inbox (
+                                             id VARCHAR(36) NOT NULL,
+                                             instance_id VARCHAR(255),
+                                             connected_phone VARCHAR(50),
+                                             phone VARCHAR(255),
+                                             chat_lid VARCHAR(255),
+                                             message_id VARCHAR(255),
+                                             momment BIGINT,
+                                             payload TEXT NOT NULL,
+                                             status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+                                             attempts INTEGER NOT NULL DEFAULT 0,
+                                             last_error TEXT,
+                                             received_at TIMESTAMP(6) NOT NULL,
+                                             processed_at TIMESTAMP(6),
+                                             CONSTRAINT webhook_inbox_pkey PRIMARY KEY (id),
+                                             CONSTRAINT chk_webhook_inbox_status
+                                                 CHECK (status IN ('PENDING', 'PROCESSING', 'DONE', 'FAILED'))
+);
+
+-- Fila de recuperação: apenas linhas ainda não concluídas, na ordem de chegada
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_pending
+    ON webhook_inbox (status, received_at)
+    WHERE status IN ('PENDING', 'PROCESSING');
+
+-- Limpeza periódica das linhas já processadas
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_processed_at
+    ON webhook_inbox (processed_at)
+    WHERE status = 'DONE';
+
+COMMENT ON TABLE webhook_inbox IS 'Payloads de webhook da Z-API aguardando ou já processados (append-only)';
+COMMENT ON COLUMN webhook_inbox.status IS 'PENDING, PROCESSING, DONE ou FAILED (excedeu o número máximo de tentativas)';
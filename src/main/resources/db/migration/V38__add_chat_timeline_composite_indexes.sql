@@ -0,0 +1,44 @@
+-- ================================================
+-- Migration: Índices compostos para a timeline dos chats
+-- Versão: V38__add_chat_timeline_composite_indexes.sql
+-- Descrição: Substitui os índices de coluna única em chat_id por (chat_id, timestamp DESC, id DESC)
+--            nas tabelas de conteúdo do chat. Atende com um único Index Scan (sem Sort):
+--            - findTopByChatIdOrderByTimestampDescIdDesc        → primeira entrada do índice
+--            - findByChatIdOrderByTimestampAscIdAsc             → Index Scan Backward
+--            - findTimelineFirstPage / findTimelinePageBefore   → keyset sobre (timestamp, id)
+--            CONCURRENTLY: não bloqueia escritas nas tabelas durante a criação. Roda fora de
+--            transação (V38__add_chat_timeline_composite_indexes.sql.conf). Os índices antigos
+--            de chat_id são removidos em uma migration separada (V45)
+--            Se a criação falhar no meio, o índice fica INVALID: removê-lo antes de repetir
+-- ================================================
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_chat_timestamp
+    ON messages (chat_id, timestamp DESC, id DESC);
+
+-- Rotinas automáticas: última mensagem enviada pelo sistema (findFirstByChatIdAndFromMeTrue...)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_chat_timestamp_from_me
+    ON messages (chat_id, timestamp DESC, id DESC)
+    WHERE from_me = true;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_audios_chat_timestamp
+    ON audios (chat_id, timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_photos_chat_timestamp
+    ON photos (chat_id, timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_videos_chat_timestamp
+    ON videos (chat_id, timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_documents_chat_timestamp
+    ON documents (chat_id, timestamp DESC, id DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_replies_chat_timestamp
+    ON replies (chat_id, timestamp DESC, id DESC);
+
+-- Atualiza as estatísticas para o planner escolher os novos índices imediatamente
+ANALYZE messages;
+ANALYZE audios;
+ANALYZE photos;
+ANALYZE videos;
+ANALYZE documents;
+ANALYZE replies;
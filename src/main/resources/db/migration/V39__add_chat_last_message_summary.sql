@@ -0,0 +1,13 @@
+-- ================================================
+-- Migration: Resumo da última mensagem do chat
+-- Versão: V39__add_chat_last_message_summary.sql
+-- Descrição: Tipo e autoria da última mensagem passam a ser gravados no próprio chat
+--            pelos fluxos de escrita, dispensando as consultas às tabelas de conteúdo na listagem.
+--            Chats existentes (last_message_type NULL) são preenchidos pelo ChatSummaryBackfillJob
+-- ================================================
+
+ALTER TABLE chats ADD COLUMN IF NOT EXISTS last_message_type VARCHAR(20);
+ALTER TABLE chats ADD COLUMN IF NOT EXISTS last_message_from_me BOOLEAN;
+
+COMMENT ON COLUMN chats.last_message_type IS 'text, audio, image, video, document ou none (chat sem mensagens); NULL = ainda não calculado';
+COMMENT ON COLUMN chats.last_message_from_me IS 'Se a última mensagem foi enviada pelo sistema/usuário';
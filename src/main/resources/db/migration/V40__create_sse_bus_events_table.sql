@@ -0,0 +1,19 @@
+-- ================================================
+-- Migration: Payloads grandes do barramento SSE entre réplicas
+-- Versão: V40__create_sse_bus_events_table.sql
+-- Descrição: O NOTIFY do Postgres aceita no máximo 8000 bytes; eventos maiores são
+--            gravados aqui e o NOTIFY leva apenas o id (ver PostgresNotificationBus).
+--            Linhas com mais de 10 minutos são removidas periodicamente
+-- ================================================
+
+CREATE TABLE IF NOT EXISTS sse_bus_events (
+                                              id BIGSERIAL NOT NULL,
+                                              payload TEXT NOT NULL,
+                                              created_at TIMESTAMP(6) NOT NULL DEFAULT NOW(),
+                                              CONSTRAINT sse_bus_events_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_sse_bus_events_created_at
+    ON sse_bus_events (created_at);
+
+COMMENT ON TABLE sse_bus_events IS 'Payloads de notificações SSE grandes demais para o NOTIFY (temporários)';
@@ -0,0 +1,49 @@
+-- ================================================
+-- Migration: Destinatários de campanha com status por linha
+-- Versão: V41__create_campaign_recipients_table.sql
+-- Descrição: Substitui campaign_dispatched_chats. Os chats elegíveis são materializados
+--            uma vez por anti-join (só entram chats ainda sem linha) e cada envio é
+--            reivindicado com um UPDATE ... RETURNING de uma linha (FOR UPDATE SKIP LOCKED).
+--            Os chats já disparados são migrados como SENT
+-- ================================================
+
+CREATE TABLE IF NOT EXISTS campaign_recipients (
+                                                   id BIGSERIAL NOT NULL,
+                                                   campaign_id VARCHAR(255) NOT NULL,
+                                                   chat_id VARCHAR(255) NOT NULL,
+                                                   status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+                                                   attempts INTEGER NOT NULL DEFAULT 0,
+                                                   last_error TEXT,
+                                                   created_at TIMESTAMP(6) NOT NULL DEFAULT NOW(),
+                                                   claimed_at TIMESTAMP(6),
+                                                   sent_at TIMESTAMP(6),
+                                                   CONSTRAINT campaign_recipients_pkey PRIMARY KEY (id),
+                                                   CONSTRAINT uk_campaign_recipients_campaign_chat UNIQUE (campaign_id, chat_id),
+                                                   CONSTRAINT fk_campaign_recipients_campaign FOREIGN KEY (campaign_id) REFERENCES campaigns(id) ON DELETE CASCADE,
+                                                   CONSTRAINT fk_campaign_recipients_chat FOREIGN KEY (chat_id) REFERENCES chats(id) ON DELETE CASCADE,
+                                                   CONSTRAINT chk_campaign_recipients_status
+                                                       CHECK (status IN ('PENDING', 'CLAIMED', 'SENT', 'FAILED'))
+);
+
+-- Fila de envio: próximos pendentes da campanha (menos tentativas primeiro)
+CREATE INDEX IF NOT EXISTS idx_campaign_recipients_pending
+    ON campaign_recipients (campaign_id, attempts, id)
+    WHERE status = 'PENDING';
+
+-- Contagem de disparados por campanha
+CREATE INDEX IF NOT EXISTS idx_campaign_recipients_campaign_status
+    ON campaign_recipients (campaign_id, status);
+
+-- Chats já disparados pelo modelo antigo
+INSERT INTO campaign_recipients (campaign_id, chat_id, status, attempts, claimed_at, sent_at)
+SELECT campaign_id, chat_id, 'SENT', 1, NOW(), NOW()
+FROM campaign_dispatched_chats
+ON CONFLICT (campaign_id, chat_id) DO NOTHING;
+
+UPDATE campaigns c
+SET dispatched_chats = (SELECT COUNT(*) FROM campaign_recipients r WHERE r.campaign_id = c.id);
+
+DROP TABLE IF EXISTS campaign_dispatched_chats;
+
+COMMENT ON TABLE campaign_recipients IS 'Chats destinatários de cada campanha e o status do envio';
+COMMENT ON COLUMN campaign_recipients.status IS 'PENDING, CLAIMED (envio em andamento ou resultado incerto), SENT ou FAILED (excedeu o número máximo de tentativas)';
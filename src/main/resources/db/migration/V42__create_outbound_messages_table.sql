@@ -0,0 +1,60 @@
+-- ================================================
+-- Migration: Outbox de envios para a Z-API
+-- Versão: V42__create_outbound_messages_table.sql
+-- Descrição: Cada envio (campanha, rotina, tarefa e manual) é gravado aqui na mesma
+--            transação que salva a mensagem local. O relay drena a fila por instância
+--            (em ordem, no ritmo do limite de envios), grava o messageId real e o
+--            devolve para messages/photos/videos. Linhas que ficaram em SENDING após
+--            um restart viram UNKNOWN e não são reenviadas
+-- ================================================
+
+CREATE TABLE IF NOT EXISTS outbound_messages (
+                                                 id BIGSERIAL NOT NULL,
+                                                 web_instance_id VARCHAR(255) NOT NULL,
+                                                 chat_id VARCHAR(255),
+                                                 kind VARCHAR(20) NOT NULL,
+                                                 payload TEXT NOT NULL,
+                                                 local_message_id VARCHAR(255),
+                                                 source VARCHAR(20) NOT NULL,
+                                                 dedup_key VARCHAR(255),
+                                                 status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+                                                 attempts INTEGER NOT NULL DEFAULT 0,
+                                                 next_attempt_at TIMESTAMP(6) NOT NULL DEFAULT NOW(),
+                                                 zapi_message_id VARCHAR(255),
+                                                 last_error TEXT,
+                                                 created_at TIMESTAMP(6) NOT NULL DEFAULT NOW(),
+                                                 claimed_at TIMESTAMP(6),
+                                                 completed_at TIMESTAMP(6),
+                                                 reconciled_at TIMESTAMP(6),
+                                                 CONSTRAINT outbound_messages_pkey PRIMARY KEY (id),
+                                                 CONSTRAINT uk_outbound_messages_dedup_key UNIQUE (dedup_key),
+                                                 CONSTRAINT fk_outbound_messages_web_instance FOREIGN KEY (web_instance_id) REFERENCES web_instances(id) ON DELETE CASCADE,
+                                                 CONSTRAINT chk_outbound_messages_kind
+                                                     CHECK (kind IN ('TEXT', 'IMAGE', 'VIDEO')),
+                                                 CONSTRAINT chk_outbound_messages_source
+                                                     CHECK (source IN ('CAMPAIGN', 'ROUTINE', 'TASK', 'MANUAL')),
+                                                 CONSTRAINT chk_outbound_messages_status
+                                                     CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'FAILED', 'UNKNOWN'))
+);
+
+-- Fila de envio: próximo pendente de cada instância (ordem de gravação)
+CREATE INDEX IF NOT EXISTS idx_outbound_messages_pending
+    ON outbound_messages (web_instance_id, id)
+    WHERE status = 'PENDING';
+
+-- Envios em andamento (um por instância) e recuperação após restart
+CREATE INDEX IF NOT EXISTS idx_outbound_messages_sending
+    ON outbound_messages (web_instance_id, claimed_at)
+    WHERE status = 'SENDING';
+
+-- Concluídos cujo messageId ainda não voltou para a mensagem local
+CREATE INDEX IF NOT EXISTS idx_outbound_messages_unreconciled
+    ON outbound_messages (completed_at)
+    WHERE reconciled_at IS NULL AND local_message_id IS NOT NULL;
+
+COMMENT ON TABLE outbound_messages IS 'Outbox de envios para a Z-API, drenado pelo OutboxRelay';
+COMMENT ON COLUMN outbound_messages.payload IS 'Corpo da requisição de envio (ZapiSendRequest serializado)';
+COMMENT ON COLUMN outbound_messages.local_message_id IS 'messageId temporário da mensagem/foto/vídeo local, substituído pelo zapi_message_id após o envio';
+COMMENT ON COLUMN outbound_messages.dedup_key IS 'Chave de idempotência do enfileiramento (ex.: campanha + chat + item)';
+COMMENT ON COLUMN outbound_messages.status IS 'PENDING, SENDING, SENT, FAILED ou UNKNOWN (restart durante o envio; não é reenviado)';
+COMMENT ON COLUMN campaign_recipients.status IS 'PENDING, CLAIMED (passo do lote em andamento), SENT (gravado no outbox de envios) ou FAILED (excedeu o número máximo de tentativas)';
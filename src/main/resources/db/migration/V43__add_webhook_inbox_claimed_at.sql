@@ -0,0 +1,19 @@
+-- ================================================
+-- Migration: Reivindicação de webhooks da inbox com prazo (lease)
+-- Versão: V43__add_webhook_inbox_claimed_at.sql
+-- Descrição: Cada worker reivindica a linha com um UPDATE condicional (PENDING → PROCESSING)
+--            e grava claimed_at. Só linhas em PROCESSING com o prazo vencido voltam para
+--            PENDING, para uma réplica não tomar webhooks que outra ainda está processando
+-- ================================================
+
+ALTER TABLE webhook_inbox ADD COLUMN IF NOT EXISTS claimed_at TIMESTAMP(6);
+
+-- Linhas antigas em PROCESSING passam a ter o prazo contado a partir da migração
+UPDATE webhook_inbox SET claimed_at = NOW() WHERE status = 'PROCESSING' AND claimed_at IS NULL;
+
+-- Recuperação de reivindicações vencidas
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_processing_claimed_at
+    ON webhook_inbox (claimed_at)
+    WHERE status = 'PROCESSING';
+
+COMMENT ON COLUMN webhook_inbox.claimed_at IS 'Momento em que um worker reivindicou a linha (PROCESSING); vencido o prazo, volta para PENDING';
@@ -0,0 +1,11 @@
+-- ================================================
+-- Migration: Ordem por chat na inbox de webhooks
+-- Versão: V44__add_webhook_inbox_chat_order_index.sql
+-- Descrição: Antes de processar um webhook, o worker verifica se há um webhook mais antigo
+--            do mesmo chat (instância + phone) ainda não concluído; se houver, o mais novo
+--            espera. Índice parcial para essa verificação
+-- ================================================
+
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_chat_unfinished
+    ON webhook_inbox (instance_id, phone, received_at)
+    WHERE status IN ('PENDING', 'PROCESSING');
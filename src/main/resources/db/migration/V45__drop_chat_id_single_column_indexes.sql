@@ -0,0 +1,15 @@
+-- ================================================
+-- Migration: Remover os índices de coluna única em chat_id
+-- Versão: V45__drop_chat_id_single_column_indexes.sql
+-- Descrição: chat_id sozinho passou a ser prefixo dos índices compostos da V38 (FK, DELETE em
+--            cascata e buscas por chat). Etapa separada da criação, para os índices antigos
+--            só saírem depois que os novos existem. CONCURRENTLY, fora de transação
+--            (V45__drop_chat_id_single_column_indexes.sql.conf)
+-- ================================================
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_audio_chat_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_photo_chat_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_video_chat_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_document_chat_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_reply_chat_id;
@@ -0,0 +1,14 @@
+-- ================================================
+-- Migration: Envios manuais à frente da fila do outbox
+-- Versão: V46__prioritize_manual_outbound_messages.sql
+-- Descrição: OutboundMessageRepository.claimNext passou a ordenar por (source = 'MANUAL') DESC, id.
+--            Índice parcial na mesma ordem, para o próximo envio da instância sair do índice
+--            sem ordenar a fila inteira. CONCURRENTLY, fora de transação
+--            (V46__prioritize_manual_outbound_messages.sql.conf)
+-- ================================================
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_outbound_messages_pending_manual_first
+    ON outbound_messages (web_instance_id, (source = 'MANUAL') DESC, id)
+    WHERE status = 'PENDING';
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_outbound_messages_pending;
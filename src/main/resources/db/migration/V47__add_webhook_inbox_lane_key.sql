@@ -0,0 +1,26 @@
+-- ================================================
+-- Migration: Chave da lane gravada na inbox de webhooks
+-- Versão: V47__add_webhook_inbox_lane_key.sql
+-- Descrição: A verificação de "evento mais antigo do mesmo chat ainda não concluído" passa a usar
+--            a mesma chave das lanes em memória (instância ou connectedPhone + phone ou chatLid),
+--            gravada em lane_key no accept(). Antes só cobria eventos com instanceId e phone.
+--            A ordem dentro do chat é a de chegada (received_at, id), a mesma da varredura;
+--            o momment da Z-API não é usado (relógio do remetente, ausente em alguns eventos).
+--            Índice criado CONCURRENTLY, fora de transação (V47__add_webhook_inbox_lane_key.sql.conf)
+-- ================================================
+
+ALTER TABLE webhook_inbox ADD COLUMN IF NOT EXISTS lane_key TEXT;
+
+-- Linhas ainda não concluídas recebem a chave calculada como em WebhookInboxService.laneKey
+UPDATE webhook_inbox
+SET lane_key = COALESCE(instance_id, connected_phone, 'null') || '|' ||
+               COALESCE(NULLIF(BTRIM(phone), ''), chat_lid, 'null')
+WHERE lane_key IS NULL AND status IN ('PENDING', 'PROCESSING');
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_webhook_inbox_lane_unfinished
+    ON webhook_inbox (lane_key, received_at, id)
+    WHERE status IN ('PENDING', 'PROCESSING');
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_webhook_inbox_chat_unfinished;
+
+COMMENT ON COLUMN webhook_inbox.lane_key IS 'Chave de ordenação do chat (instância|chat), igual à da lane em memória';
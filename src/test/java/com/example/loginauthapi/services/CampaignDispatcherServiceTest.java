@@ -0,0 +1,169 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.entities.Campaign;
+import com.example.loginauthapi.entities.User;
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.repositories.CampaignRecipientRepository;
+import com.example.loginauthapi.repositories.CampaignRecipientRepository.ClaimedRecipient;
+import com.example.loginauthapi.repositories.CampaignRepository;
+import com.example.loginauthapi.repositories.PhotoRepository;
+import com.example.loginauthapi.repositories.VideoRepository;
+import com.example.loginauthapi.repositories.WebInstanceRepository;
+import com.example.loginauthapi.services.CampaignDispatcherService.CampaignBatch;
+import com.example.loginauthapi.services.outbox.OutboxService;
+import com.example.loginauthapi.services.zapi.ZapiCircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Escalonamento das lanes do disparo de campanhas
+ *
+ * O banco e o outbox são simulados: enqueueCampaignChat (o ponto em que o envio sai do dispatcher)
+ * só registra a campanha e a instância de cada envio.
+ */
+class CampaignDispatcherServiceTest {
+
+    private CampaignRepository campaignRepository;
+    private CampaignRecipientRepository campaignRecipientRepository;
+    private CampaignDispatcherService dispatcher;
+    private CampaignDispatcherService self;
+
+    private final Map<String, CampaignBatch> batches = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        campaignRepository = mock(CampaignRepository.class);
+        campaignRecipientRepository = mock(CampaignRecipientRepository.class);
+        ZapiCircuitBreaker zapiCircuitBreaker = mock(ZapiCircuitBreaker.class);
+
+        dispatcher = new CampaignDispatcherService(campaignRepository, campaignRecipientRepository,
+                mock(WebInstanceRepository.class), zapiCircuitBreaker, mock(OutboxService.class),
+                mock(PhotoRepository.class), mock(VideoRepository.class), new SimpleMeterRegistry(), 4, 20);
+
+        // Proxy "transacional": o preparo devolve lotes montados no teste
+        self = spy(dispatcher);
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(CampaignDispatcherService.class)).thenReturn(self);
+        ReflectionTestUtils.setField(dispatcher, "applicationContext", applicationContext);
+
+        doAnswer(invocation -> batches.get(invocation.<String>getArgument(0)))
+                .when(self).prepareCampaignBatch(anyString());
+        doNothing().when(self).completeCampaignBatch(anyString());
+
+        when(campaignRepository.findStatusById(anyString())).thenReturn(Optional.of("EM_ANDAMENTO"));
+        when(campaignRecipientRepository.claimNext(anyString())).thenAnswer(invocation -> Optional.of(recipient()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void lanesOfDifferentInstancesRunInParallel() throws Exception {
+        addBatch("campaign-a", "instance-a", 3);
+        addBatch("campaign-b", "instance-b", 3);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(6);
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(150);
+            running.decrementAndGet();
+            done.countDown();
+            return null;
+        }).when(self).enqueueCampaignChat(any(), anyString(), anyString());
+
+        dispatcher.processCampaigns();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(2);
+    }
+
+    @Test
+    void campaignsOnTheSameLaneAlternate() throws Exception {
+        addBatch("campaign-1", "instance-a", 3);
+        addBatch("campaign-2", "instance-a", 3);
+
+        // O primeiro envio espera os dois lotes entrarem na lane
+        CountDownLatch enqueued = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            enqueued.await(5, TimeUnit.SECONDS);
+            order.add(invocation.<CampaignBatch>getArgument(0).campaignId());
+            running.decrementAndGet();
+            done.countDown();
+            return null;
+        }).when(self).enqueueCampaignChat(any(), anyString(), anyString());
+
+        dispatcher.processCampaigns();
+        enqueued.countDown();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly(
+                "campaign-1", "campaign-2", "campaign-1", "campaign-2", "campaign-1", "campaign-2");
+        // Uma lane por instância: nunca dois envios da mesma instância ao mesmo tempo
+        assertThat(maxRunning.get()).isEqualTo(1);
+    }
+
+    private void addBatch(String campaignId, String suaInstancia, int size) {
+        WebInstance instance = new WebInstance();
+        instance.setSuaInstancia(suaInstancia);
+        batches.put(campaignId, new CampaignBatch(campaignId, new User(), instance, "Olá", size, List.of(), List.of()));
+
+        List<Campaign> ready = new ArrayList<>();
+        for (String id : batches.keySet().stream().sorted().toList()) {
+            Campaign campaign = new Campaign();
+            campaign.setId(id);
+            ready.add(campaign);
+        }
+        when(campaignRepository.findCampaignsReadyForDispatch(any())).thenReturn(ready);
+    }
+
+    private static ClaimedRecipient recipient() {
+        return new ClaimedRecipient() {
+            @Override
+            public String getChatId() {
+                return "chat";
+            }
+
+            @Override
+            public String getName() {
+                return "Contato";
+            }
+
+            @Override
+            public String getPhone() {
+                return "5511999990000";
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.loginauthapi.services;
+
+import com.example.loginauthapi.dto.ChatsListResponseDTO;
+import com.example.loginauthapi.entities.Chat;
+import com.example.loginauthapi.entities.Tag;
+import com.example.loginauthapi.entities.User;
+import com.example.loginauthapi.entities.WebInstance;
+import com.example.loginauthapi.repositories.ChatRepository;
+import com.example.loginauthapi.services.zapi.ZapiChatService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lista de chats sem N+1: o número de SELECTs não depende de quantos chats/tags existem
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(ChatService.class)
+class ChatListStatementCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private ChatService chatService;
+
+    @MockBean
+    private ZapiChatService zapiChatService;
+
+    private Statistics statistics;
+    private User user;
+    private WebInstance instance;
+    private Tag urgent;
+    private Tag lead;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+
+        user = new User();
+        user.setName("Teste");
+        user.setEmail("teste@example.com");
+        user.setPassword("x");
+        user.setRole("USER");
+        entityManager.persist(user);
+
+        instance = new WebInstance();
+        instance.setUser(user);
+        instance.setStatus("ACTIVE");
+        instance.setClientToken("client-token");
+        instance.setSeuToken("seu-token");
+        instance.setSuaInstancia("instancia");
+        instance.setConnectedPhone("5511999990000");
+        entityManager.persist(instance);
+
+        urgent = tag("Urgente", "#FF0000");
+        lead = tag("Lead", "#00FF00");
+    }
+
+    @Test
+    void findActiveChatTagsByWebInstanceIdRunsOneStatement() {
+        createChats(10);
+
+        statistics.clear();
+        List<ChatRepository.ChatTagRow> rows = chatRepository.findActiveChatTagsByWebInstanceId(instance.getId());
+
+        assertThat(rows).hasSize(15);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void chatListStatementCountDoesNotGrowWithChats() {
+        createChats(3);
+        long fewChats = countStatementsForChatList(3);
+
+        createChats(30);
+        long manyChats = countStatementsForChatList(33);
+
+        // instâncias do usuário + chats ativos + tags dos chats ativos
+        assertThat(fewChats).isEqualTo(3);
+        assertThat(manyChats).isEqualTo(fewChats);
+    }
+
+    private long countStatementsForChatList(int expectedChats) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        ChatsListResponseDTO response = chatService.getChatsFromDatabase(user);
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getChats()).hasSize(expectedChats);
+        long statements = statistics.getPrepareStatementCount();
+
+        // Recarregar as entidades desanexadas pelo clear() para as próximas inserções
+        user = entityManager.find(User.class, user.getId());
+        instance = entityManager.find(WebInstance.class, instance.getId());
+        urgent = entityManager.find(Tag.class, urgent.getId());
+        lead = entityManager.find(Tag.class, lead.getId());
+        return statements;
+    }
+
+    /**
+     * Chats ativos (metade com duas tags, metade com uma) e um inativo que não entra na lista
+     */
+    private void createChats(int count) {
+        for (int i = 0; i < count; i++) {
+            Chat chat = chat("55119" + System.nanoTime(), true);
+            chat.getTags().add(urgent);
+            if (i % 2 == 0) {
+                chat.getTags().add(lead);
+            }
+            entityManager.persist(chat);
+        }
+        entityManager.persist(chat("55118" + System.nanoTime(), false));
+        entityManager.flush();
+    }
+
+    private Chat chat(String phone, boolean active) {
+        Chat chat = new Chat();
+        chat.setWebInstance(instance);
+        chat.setPhone(phone);
+        chat.setName(phone);
+        chat.setActiveInZapi(active);
+        return chat;
+    }
+
+    private Tag tag(String name, String color) {
+        Tag tag = new Tag();
+        tag.setName(name);
+        tag.setColor(color);
+        tag.setUser(user);
+        return entityManager.persist(tag);
+    }
+}